@@ -1,22 +1,61 @@
 package de.hpi.ddm.actors;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.stream.IntStream;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.ActorSelection;
+import akka.actor.Address;
+import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.pattern.Patterns;
+import akka.stream.javadsl.Keep;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
 import akka.japi.function.Creator;
 import akka.stream.ActorMaterializer;
+import akka.stream.KillSwitches;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.UniqueKillSwitch;
+import akka.util.ByteString;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.serialization.ChunkInputStream;
+import de.hpi.ddm.serialization.ChunkOutputStream;
+import de.hpi.ddm.serialization.Crc32c;
+import de.hpi.ddm.serialization.TransferBuffer;
+import de.hpi.ddm.serialization.TransferCodec;
 import de.hpi.ddm.structures.KryoPoolSingleton;
+import de.hpi.ddm.structures.LinkEstimate;
+import de.hpi.ddm.structures.PayloadStore;
+import de.hpi.ddm.structures.TransferSlots;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
 public class LargeMessageProxy extends AbstractLoggingActor {
 
@@ -25,10 +64,17 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 	////////////////////////
 
 	public static final String DEFAULT_NAME = "largeMessageProxy";
-	private ActorRef masterField_worker_receiver_url;
-	private ActorRef master_largeMessageProxy;
-	private List<Byte> requestIncoming = new ArrayList<Byte>();
-	private byte[] messageOutgoing = new byte[0];  //Whole message that is going to be sent
+	public static final int CHUNK_SIZE = 128 * 1024; //Number of bytes per stream element until the link to the receiver is measured; below artery's maximum-large-frame-size
+	public static final int RECEIVE_WINDOW = 16; //Number of chunks of a transfer that a receiving proxy lets be in flight or wait for the deserialization
+	public static final int UNKNOWN_LENGTH = -1; //Announced length of streamed serializations, whose size is known only at the end
+	public static final String SERIALIZER = "large-message-proxy-serializer"; //Runs the stream serializations, which block while they wait for the receiver's credit; its pool size bounds the streamed transfers that an actor system sends at once
+	public static final String DESERIALIZER = "large-message-proxy-deserializer"; //Runs the stream deserializations, which block while they wait for chunks; apart from the serializations, so that neither waits for a thread that the other holds
+	public static final int BROADCAST_FANOUT = 2; //Number of proxies that a proxy sends a broadcast payload to; each of them relays it to its share of the remaining receivers
+	public static final int BROADCAST_CACHE_SIZE = 4; //Number of serialized broadcast payloads that a proxy keeps for repeated broadcasts
+	public static final long TRANSFER_TIMEOUT = 30000; //Milliseconds without progress after which a receiving proxy resumes a transfer
+	public static final int MAX_RESUMES = 10; //Number of times that a transfer is resumed before the receiving proxy gives up
+	private static final long TRANSFER_CHECK_INTERVAL = 5000; //Milliseconds between two checks for stalled transfers
+	private static final long INQUIRY_INTERVAL = 5000; //Milliseconds until an unanswered MasterInquiryMessage is sent again; doubles with every retry
 
 	public static Props props() {
 		return Props.create(LargeMessageProxy.class);
@@ -38,18 +84,32 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 	// Actor Messages //
 	////////////////////
 
+	//Every message of a transfer carries the ID of its transfer, so that a proxy can send and receive many transfers at once
+
 	@Data
 	@NoArgsConstructor
-	private static class StreamCompletedMessage implements Serializable{}
+	@AllArgsConstructor
+	private static class StreamCompletedMessage implements Serializable {
+		private long transferID;
+		private int attempt; //the stream of a transfer that is resumed gets a new attempt number
+		private byte[] contentHash; //SHA-256 of a message that was digested while it was serialized into the stream; null otherwise
+	}
 
+	//Sent to the proxy itself when the local stream that produces the chunks of an outgoing transfer starts
 	@Data
 	@NoArgsConstructor
-	private static class StreamInitializedMessage implements Serializable {}
+	@AllArgsConstructor
+	private static class StreamInitializedMessage implements Serializable {
+		private long transferID;
+		private int attempt;
+	}
 
 	@Data
 	@NoArgsConstructor
 	@AllArgsConstructor
 	private static class StreamFailureMessage implements Serializable {
+		private long transferID;
+		private int attempt;
 		private Throwable cause;
 	}
 
@@ -61,13 +121,25 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 		private ActorRef message_receiver_worker_master;
 	}
 
+	//Sends the same message to many receivers; the message is serialized once and relayed from receiver proxy to receiver proxy
+	@Data @NoArgsConstructor @AllArgsConstructor
+	public static class BroadcastMessage<T> implements Serializable {
+		private static final long serialVersionUID = 4526497360118523917L;
+		private T message;
+		private List<ActorRef> receivers;
+	}
+
 	@Data
 	@NoArgsConstructor
 	@AllArgsConstructor
 	private static class MasterInquiryMessage implements Serializable { //Send message asking if worker can receive a message
+		private long transferID;
 		private ActorRef master; //master
 		private ActorRef master_largeMessageProxy_url; //largeMessageProxy from master
 		private ActorRef receiver_worker; //worker
+		private int length; //number of bytes that will be streamed, or UNKNOWN_LENGTH if the message is serialized while it is streamed; the bytes start with the header of their TransferCodec
+		private byte[] contentHash; //SHA-256 of the serialized message; null if payloads are not shared or the message is streamed without announcing its digest
+		private List<ActorRef> relays; //receivers to which the receiving proxy relays the message of a broadcast
 	}
 
 
@@ -79,12 +151,112 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 		private ActorRef receiver;
 	}
 
+	//One element of the stream of a transfer
+	@Data @NoArgsConstructor @AllArgsConstructor
+	public static class BytesChunk implements Serializable {
+		private static final long serialVersionUID = -3391722946451340286L;
+		private long transferID;
+		private int attempt; //the stream of the transfer that the chunk belongs to
+		private int sequenceNumber; //position of the chunk in its transfer
+		private int checksum; //CRC-32C of the bytes
+		private ByteString bytes;
+	}
+
 
 	@Data
 	@NoArgsConstructor
 	@AllArgsConstructor
 	private  static class ConfigurationMessage implements Serializable {
+		private long transferID;
 		private ActorRef sender;
+		private boolean cached; //the receiver's actor system holds or receives the message already, so no chunks are needed unless the receiver asks for them later
+		private int credit; //number of chunks that the sender may send before it gets more credit
+	}
+
+	//Sent by a receiving proxy for every chunk that it has taken off the link, so that the sending proxy may send another one
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class CreditMessage implements Serializable {
+		private long transferID;
+		private int attempt;
+		private int sequenceNumber; //the chunk that was taken
+		private int length; //the number of bytes of that chunk
+	}
+
+	//Sent by a receiving proxy to get the chunks of a transfer from the given sequence number on in a new stream, e.g., because a chunk was corrupted or the stream stalled or failed
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class ResumeMessage implements Serializable {
+		private long transferID;
+		private int sequenceNumber;
+		private int attempt;
+		private ActorRef receiver; //the receiving proxy
+		private int credit; //number of chunks of the new stream that the sender may send before it gets more credit
+	}
+
+	//Sent by a receiving proxy when it needs no more chunks of a transfer, or got its message from its actor system, so that the sending proxy can drop the transfer's bytes
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class TransferFinishedMessage implements Serializable {
+		private long transferID;
+	}
+
+	//Sent to the proxy itself by the local stream that produces the chunks of an outgoing transfer; the proxy passes a chunk on when the receiver's credit allows
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class OutboundChunkMessage implements Serializable {
+		private long transferID;
+		private int attempt;
+		private BytesChunk chunk;
+	}
+
+	//Sent to the proxy itself when the local stream that produces the chunks of an outgoing transfer has ended
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class OutboundCompletedMessage implements Serializable {
+		private long transferID;
+		private int attempt;
+		private Throwable cause; //null if the stream did not fail
+	}
+
+	//Sent to the proxy itself periodically to resume stalled transfers
+	@Data
+	private static class CheckTransfersMessage implements Serializable {
+	}
+
+	//Sent to the proxy itself when a streamed transfer got its slot among the TransferSlots of the actor system
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class SlotGrantedMessage implements Serializable {
+		private long transferID;
+	}
+
+	//Sent to the proxy itself when the digest of a message that is streamed with an announced digest is computed
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class DigestedMessage implements Serializable {
+		private ActorRef receiver;
+		private Object message;
+		private ActorRef sender; //the original sender of the message
+		private byte[] contentHash;
+		private Throwable cause; //null if the serialization did not fail
+	}
+
+	//Sent to the proxy itself when the stream deserialization of a transfer has finished
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	private static class DeserializedMessage implements Serializable {
+		private long transferID;
+		private Object message; //the received message
+		private Throwable cause; //null if the deserialization did not fail
 	}
 
 
@@ -97,45 +269,175 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 		INSTANCE
 	}
 
+	//The message of a transfer that waits for the receiver to be ready or, if it is already serialized, until the receiver has it
+	private static class OutgoingTransfer {
+		private final Object message; //Message that is going to be serialized while it is streamed, again for every resumed stream; null if it is already serialized
+		private final TransferBuffer bytes; //Whole serialized and encoded message that is going to be sent, starting with the codec header
+		private final byte[] contentHash; //SHA-256 of the serialized message; null if payloads are not shared or the message is streamed without announcing its digest
+		private final List<ActorRef> relays; //Receivers to which the receiving proxy relays the message of a broadcast
+		private final ActorRef sender; //the original sender of the message
+		private ActorSelection inquired; //the proxy of the receiver, which the transfer was announced to
+		private MasterInquiryMessage inquiry; //the announcement, which is sent again until the receiver answers it
+		private int inquiries = 0; //Number of times the announcement was sent again
+		private long inquiredAt; //When the announcement was last sent
+		private CompletableFuture<Void> slot; //The slot of a streamed transfer among the TransferSlots of the actor system; null if the message is already serialized
+		private boolean queued = false; //Whether the transfer waits for its slot before it is announced
+		private UniqueKillSwitch stream; //Stops the current stream of the transfer when the receiver resumes it
+		private ChunkOutputStream chunks; //The current stream that the message is serialized into; null if it is already serialized
+		private volatile byte[] streamedHash; //SHA-256 of the message, digested by its serialization into the stream if no digest was announced
+		private boolean producing = false; //Whether the current stream still produces chunks
+		private boolean completing = false; //Whether the current stream has ended and its end waits for the chunks in flight
+		private int attempt = -1; //Attempt number of the current stream
+		private boolean parked = false; //Whether the receiver waits for the message from another transfer to its actor system and may still ask for the chunks
+		private long lastActivity = System.currentTimeMillis(); //When the transfer was announced, its receiver last granted credit, confirmed that it still waits, or its last stream terminated
+		private ActorRef receiverProxy; //the proxy that receives the chunks
+		private LinkEstimate link; //the link to the receiving proxy
+		private int chunkSize = CHUNK_SIZE; //Number of bytes per chunk, chosen when the transfer starts
+		private int credit = 0; //Number of chunks that may be sent before the receiving proxy grants more
+		private int inFlight = 0; //Number of chunks that were sent but not credited yet
+		private final long[] sentAt = new long[RECEIVE_WINDOW]; //When the chunks in flight were sent, by sequence number modulo RECEIVE_WINDOW
+		private OutboundChunkMessage pending; //The chunk that waits for credit; the stream produces the next one when it is sent
+		private ActorRef producer; //The local stream that waits for the pending chunk to be sent
+
+		private OutgoingTransfer(Object message, TransferBuffer bytes, byte[] contentHash, List<ActorRef> relays, ActorRef sender) {
+			this.message = message;
+			this.bytes = bytes;
+			this.contentHash = contentHash;
+			this.relays = relays;
+			this.sender = sender;
+		}
+	}
+
+	//The state of a transfer that this proxy receives
+	private static class IncomingTransfer {
+		private final ActorRef sender; //the original sender of the message
+		private final ActorRef receiver; //the actor the message is for
+		private TransferBuffer bytes; //Receive buffer, preallocated with the length announced in the MasterInquiryMessage; null if the length is unknown
+		private int length = 0; //Number of bytes received so far
+		private ChunkInputStream chunks; //Chunks that wait for the stream deserialization; null if the length is known
+		private boolean completed = false; //Whether all chunks arrived
+		private volatile boolean deserializing = false; //Whether the stream deserialization got its thread
+		private boolean deserialized = false; //Whether the stream deserialization finished
+		private int announcedLength = UNKNOWN_LENGTH; //Number of bytes announced in the MasterInquiryMessage
+		private final byte[] contentHash; //Identifies the serialized message; null if payloads are not shared or the message is streamed without announcing its digest
+		private List<ActorRef> relays; //Receivers to which this proxy relays the payload of a broadcast
+		private boolean claimed = false; //Whether this proxy receives the message for the PayloadStore of its actor system
+		private boolean waiting = false; //Whether this proxy waits for the message that another proxy of its actor system has claimed
+		private final ActorRef senderProxy; //the proxy that sends the chunks
+		private int nextSequenceNumber = 0; //Sequence number of the next chunk; all chunks before it are received and intact
+		private int attempt = 0; //Attempt number of the stream whose chunks are expected
+		private int resumes = 0; //Number of times the transfer was resumed
+		private long lastProgress = System.currentTimeMillis(); //When the last intact chunk arrived or the transfer was (re)started
+		private byte[] streamedHash; //SHA-256 that the sender digested while it streamed the message; null if it was not digested (yet)
+		private Object message; //The deserialized message, kept until the streamedHash arrives so that both go into the PayloadStore
+
+		private IncomingTransfer(ActorRef sender, ActorRef receiver, byte[] contentHash, List<ActorRef> relays, ActorRef senderProxy) {
+			this.sender = sender;
+			this.receiver = receiver;
+			this.contentHash = contentHash;
+			this.relays = relays;
+			this.senderProxy = senderProxy;
+		}
+	}
+
+	private final Map<Long, OutgoingTransfer> outgoingTransfers = new HashMap<>();
+	private final Map<Long, IncomingTransfer> incomingTransfers = new HashMap<>();
+
+	//Encoded broadcast payloads by the content hash of their serialization, least recently broadcast first
+	private final Map<ByteBuffer, ByteString> broadcastCache = new LinkedHashMap<ByteBuffer, ByteString>(16, 0.75f, true) {
+		private static final long serialVersionUID = -1587340617265718373L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteBuffer, ByteString> eldest) {
+			return this.size() > BROADCAST_CACHE_SIZE;
+		}
+	};
+
+	private Materializer materializer;
+	private Executor serializer;
+	private Executor deserializer;
+	private PayloadStore payloadStore;
+	private TransferSlots slots;
+	private Cancellable transferChecks;
+	private final Map<Address, LinkEstimate> links = new HashMap<>(); //Estimates of the links to the actor systems that this proxy sends to
+
 
 	/////////////////////
 	// Actor Lifecycle //
 	/////////////////////
 
+	@Override
+	public void preStart() {
+		this.materializer = ActorMaterializer.create(this.context());
+		this.serializer = this.context().system().dispatchers().lookup(SERIALIZER);
+		this.deserializer = this.context().system().dispatchers().lookup(DESERIALIZER);
+		this.payloadStore = PayloadStore.get(this.context().system());
+		this.slots = TransferSlots.get(this.context().system());
+
+		FiniteDuration interval = Duration.create(TRANSFER_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+		this.transferChecks = this.context().system().scheduler().schedule(interval, interval, this.self(), new CheckTransfersMessage(), this.context().dispatcher(), this.self());
+	}
+
+	@Override
+	public void postStop() {
+		this.transferChecks.cancel();
+
+		//Proxies that wait for a message that this proxy was receiving must not wait forever
+		for (IncomingTransfer transfer : this.incomingTransfers.values())
+			if (transfer.claimed)
+				this.payloadStore.abandon(transfer.contentHash, new IllegalStateException("The receiving proxy stopped."));
+
+		//Other proxies must not wait for the slots of our transfers
+		for (OutgoingTransfer transfer : this.outgoingTransfers.values())
+			this.release(transfer);
+	}
+
 	////////////////////
 	// Actor Behavior //
 	////////////////////
 
 
-	private class Creator2 implements Creator {
+	private static class Creator2 implements Creator<Iterator<ByteString>> {
 
-		Iterator2 iterator = new Iterator2();
+		private final TransferBuffer message;
+		private final int chunkSize;
+		private final int firstChunk; //a resumed transfer starts with the first chunk that the receiver is missing
+
+		private Creator2(TransferBuffer message, int chunkSize, int firstChunk) {
+			this.message = message;
+			this.chunkSize = chunkSize;
+			this.firstChunk = firstChunk;
+		}
 
 		@Override
-		public Object create()  {
-			return iterator;
+		public Iterator<ByteString> create()  {
+			return new Iterator2(this.message, this.chunkSize, this.firstChunk);
 		}
 	}
 
-	private class Iterator2 implements Iterator<Byte[]> {
+	private static class Iterator2 implements Iterator<ByteString> {
 
-		private int temp = 0;
-		private final int iteratorsize = 150000;
+		private final TransferBuffer message; //the serialized message is never modified, so chunks can share it
+		private final int chunkSize;
+		private int chunkstart; //chunk of data starting point
+
+		private Iterator2(TransferBuffer message, int chunkSize, int firstChunk) {
+			this.message = message;
+			this.chunkSize = chunkSize;
+			this.chunkstart = firstChunk * chunkSize;
+		}
 
 		@Override
 		public boolean hasNext() {
-			return messageOutgoing.length > temp * iteratorsize;
+			return this.message.size() > this.chunkstart;
 		}
 
 		@Override
-		public Byte[] next() {
-			int chunkstart = temp * iteratorsize; //chunk of data starting point
-			int chunkend = chunkstart + iteratorsize; //data chunk ending point
-			if (chunkend > messageOutgoing.length) {
-				chunkend = messageOutgoing.length;
-			}
-			temp++;
-			return IntStream.range(chunkstart, chunkend).mapToObj(k -> Byte.valueOf(messageOutgoing[k])).toArray(Byte[]::new);
+		public ByteString next() {
+			int chunklength = Math.min(this.chunkSize, this.message.size() - this.chunkstart); //data chunk length
+			ByteString chunk = this.message.slice(this.chunkstart, this.chunkstart + chunklength); //a view on the array, no copy, unless the message was spilled to disk
+			this.chunkstart += chunklength;
+			return chunk;
 		}
 	}
 
@@ -144,13 +446,23 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 	public Receive createReceive() {
 		return receiveBuilder()
 				.match(LargeMessage.class, this::handle)
+				.match(BroadcastMessage.class, this::handle)
 				.match(MasterInquiryMessage.class, this::handle)
 				.match(ConfigurationMessage.class, this::handle)
 				.match(StreamInitializedMessage.class, this::handle)
 				.match(BytesMessage.class, this::handle)
-				.match(Byte[].class, this::handle)
+				.match(BytesChunk.class, this::handle)
+				.match(SlotGrantedMessage.class, this::handle)
+				.match(DigestedMessage.class, this::handle)
+				.match(DeserializedMessage.class, this::handle)
 				.match(StreamCompletedMessage.class, this::handle)
 				.match(StreamFailureMessage.class, this::handle)
+				.match(ResumeMessage.class, this::handle)
+				.match(TransferFinishedMessage.class, this::handle)
+				.match(CreditMessage.class, this::handle)
+				.match(OutboundChunkMessage.class, this::handle)
+				.match(OutboundCompletedMessage.class, this::handle)
+				.match(CheckTransfersMessage.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
 	}
@@ -162,10 +474,11 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 
 	//This handler is from the master/largeMessageProxy!
 	private void handle(LargeMessage<?> message) { // 7. Master sends (sender) a LargeMessage to the master/largeMessageProxy (and get received by this handler). Message contains message_info and the url to the worker (receiver) in the LargeMessage message
-		this.masterField_worker_receiver_url = message.getMessage_receiver_worker_master(); //this is the worker url which was sent in the message LargeMessage
-		ActorSelection receiverProxy = this.context().actorSelection(masterField_worker_receiver_url.path().child(DEFAULT_NAME)); //Here we get worker url
-
-
+		ActorRef receiver = message.getMessage_receiver_worker_master(); //this is the worker url which was sent in the message LargeMessage
+		if (this.isLocal(receiver)) {
+			this.handOver(message.getMessage(), receiver, this.sender());
+			return;
+		}
 
 		// This will definitely fail in a distributed setting if the serialized message is large!
 		// Solution options:
@@ -178,34 +491,420 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 		//Serialization Kryo documentation: https://github.com/twitter/chill
 		//Official Streaming documentation: https://doc.akka.io/docs/akka/2.5.22/stream/stream-quickstart.html
 		//Streaming documentation: https://en.wikibooks.org/wiki/Java_Akka_Streams/Sources
-		this.messageOutgoing = KryoPoolSingleton.get().toBytesWithClass(message.getMessage()); //Serialization: converting data into bytes and saving to array
+		if (ConfigurationSingleton.get().isStreamSerialization()) {
+			//The message is serialized chunk by chunk once the receiver is ready; the codec is chosen on the first chunk
+			if (ConfigurationSingleton.get().isPayloadSharing() && ConfigurationSingleton.get().isStreamedPayloadSharing()) {
+				//An announced digest takes a serialization of its own, which must not block this proxy
+				final Object payload = message.getMessage();
+				final ActorRef sender = this.sender();
+				CompletableFuture<DigestedMessage> digest = CompletableFuture
+						.supplyAsync(() -> contentHash(payload), this.serializer)
+						.handle((contentHash, cause) -> new DigestedMessage(receiver, payload, sender, contentHash, cause));
+				Patterns.pipe(digest, this.context().dispatcher()).to(this.self());
+				return;
+			}
+			this.send(receiver, new OutgoingTransfer(message.getMessage(), null, null, new ArrayList<>(), this.sender()));
+			return;
+		}
+
+		byte[] serialized = KryoPoolSingleton.get().toBytesWithClass(message.getMessage()); //Serialization: converting data into bytes
+		ByteString bytes = this.encode(serialized);
+		byte[] contentHash = ConfigurationSingleton.get().isPayloadSharing() ? contentHash(serialized) : null;
+		if (bytes != null)
+			this.send(receiver, new OutgoingTransfer(null, TransferBuffer.of(bytes), contentHash, new ArrayList<>(), this.sender()));
+	}
+
+	private void handle(DigestedMessage message) {
+		if (message.getCause() != null) {
+			this.log().error(message.getCause(), "Serialization of a message for {} failed; dropping the message", message.getReceiver());
+			return;
+		}
+		this.send(message.getReceiver(), new OutgoingTransfer(message.getMessage(), null, message.getContentHash(), new ArrayList<>(), message.getSender()));
+	}
+
+	private void handle(BroadcastMessage<?> message) {
+		//Receivers in our actor system get the message itself; only the others need its serialization
+		List<ActorRef> receivers = new ArrayList<>();
+		for (ActorRef receiver : message.getReceivers()) {
+			if (this.isLocal(receiver))
+				this.handOver(message.getMessage(), receiver, this.sender());
+			else
+				receivers.add(receiver);
+		}
+		if (receivers.isEmpty())
+			return;
+
+		//Serialize once; the encoding of a payload that was broadcast before is taken from the cache
+		byte[] serialized = KryoPoolSingleton.get().toBytesWithClass(message.getMessage()); //Serialization: converting data into bytes
+		byte[] contentHash = contentHash(serialized);
+		ByteString bytes = this.broadcastCache.get(ByteBuffer.wrap(contentHash));
+		if (bytes == null) {
+			bytes = this.encode(serialized);
+			if (bytes == null)
+				return;
+			this.broadcastCache.put(ByteBuffer.wrap(contentHash), bytes);
+		}
+
+		this.relay(TransferBuffer.of(bytes), contentHash, receivers, this.sender());
+	}
+
+	//Whether the receiver lives in our actor system, which is the case if the address of its path has no host
+	private boolean isLocal(ActorRef receiver) {
+		return ConfigurationSingleton.get().isLocalHandOver() && receiver.path().address().hasLocalScope();
+	}
+
+	//Hand the message itself to a receiver in our actor system; like a shared payload, it must not be modified afterwards
+	private void handOver(Object message, ActorRef receiver, ActorRef sender) {
+		if (ConfigurationSingleton.get().isVerifySerializability()) {
+			try {
+				KryoPoolSingleton.get().fromBytes(KryoPoolSingleton.get().toBytesWithClass(message));
+			} catch (RuntimeException e) {
+				this.log().error(e, "Message of type {} for {} could not be sent to another actor system", message.getClass().getName(), receiver);
+			}
+		}
+		receiver.tell(message, sender);
+	}
+
+	//Send the payload to at most BROADCAST_FANOUT receivers, each of which relays it to a share of the remaining receivers; so the egress of every proxy stays constant
+	private void relay(TransferBuffer bytes, byte[] contentHash, List<ActorRef> receivers, ActorRef sender) {
+		int subtrees = Math.min(BROADCAST_FANOUT, receivers.size());
+		for (int i = 0; i < subtrees; i++) {
+			int from = i * receivers.size() / subtrees;
+			int to = (i + 1) * receivers.size() / subtrees;
+			this.send(receivers.get(from), new OutgoingTransfer(null, bytes, contentHash, new ArrayList<>(receivers.subList(from + 1, to)), sender));
+		}
+	}
+
+	//Announce a transfer to the proxy of the receiver; the transfer starts when that proxy is ready
+	private void send(ActorRef receiver, OutgoingTransfer transfer) {
+		ActorSelection receiverProxy = this.context().actorSelection(receiver.path().child(DEFAULT_NAME)); //Here we get worker url
+
+		//Each transfer gets its own ID; random IDs keep transfers from different proxies apart at the receiver
+		long transferID = ThreadLocalRandom.current().nextLong();
+		this.outgoingTransfers.put(transferID, transfer);
+
+		int length = (transfer.bytes == null) ? UNKNOWN_LENGTH : transfer.bytes.size();
 
 		//Send from worker to master: sender = master, receiver = worker
-		receiverProxy.tell(new MasterInquiryMessage(this.sender(), this.self(), this.masterField_worker_receiver_url), this.self());
+		transfer.inquired = receiverProxy;
+		transfer.inquiry = new MasterInquiryMessage(transferID, transfer.sender, this.self(), receiver, length, transfer.contentHash, transfer.relays);
+
+		//A streamed transfer is announced once it has a slot, so that its serialization gets a thread as soon as the receiver is ready
+		if (transfer.bytes == null) {
+			transfer.slot = this.slots.acquire();
+			if (!transfer.slot.isDone()) {
+				final ActorRef self = this.self();
+				transfer.queued = true;
+				transfer.slot.thenRun(() -> self.tell(new SlotGrantedMessage(transferID), ActorRef.noSender()));
+				return;
+			}
+		}
+		this.inquire(transfer);
+	}
 
+	private void inquire(OutgoingTransfer transfer) {
+		transfer.inquiredAt = transfer.lastActivity = System.currentTimeMillis();
+		transfer.inquired.tell(transfer.inquiry, this.self());
+	}
+
+	private void handle(SlotGrantedMessage slotGrantedMessage) {
+		OutgoingTransfer transfer = this.outgoingTransfers.get(slotGrantedMessage.getTransferID());
+		if (transfer == null || !transfer.queued)
+			return; //the transfer was dropped, which released its slot
+
+		transfer.queued = false;
+		this.inquire(transfer);
+	}
+
+	//Drop an outgoing transfer and pass its slot on
+	private void remove(long transferID) {
+		OutgoingTransfer transfer = this.outgoingTransfers.remove(transferID);
+		if (transfer != null)
+			this.release(transfer);
+	}
+
+	private void release(OutgoingTransfer transfer) {
+		if (transfer.slot != null && !transfer.slot.cancel(false))
+			this.slots.release(); //the transfer had its slot already
+		transfer.slot = null;
+	}
+
+	//Encode a serialized message for a transfer; returns null if the encoding failed
+	private ByteString encode(byte[] serialized) {
+		TransferCodec codec = ConfigurationSingleton.get().isCompression()
+				? TransferCodec.probe(serialized, 0, Math.min(CHUNK_SIZE, serialized.length)) : TransferCodec.RAW;
+		try {
+			return ByteString.fromArrayUnsafe(new byte[] { codec.getHeader() }).concat(ByteString.fromArrayUnsafe(codec.encode(serialized)));
+		} catch (IOException e) {
+			this.log().error(e, "Encoding of a serialized message failed; dropping the message");
+			return null;
+		}
+	}
+
+	private static byte[] contentHash(byte[] bytes) {
+		return sha256().digest(bytes);
+	}
+
+	//Digests a serialization that is not kept; the bytes are the same as those of a serialization into a stream
+	private static byte[] contentHash(Object message) {
+		MessageDigest digest = sha256();
+		serialize(message, new OutputStream() {
+			@Override
+			public void write(int b) {
+				digest.update((byte) b);
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) {
+				digest.update(bytes, offset, length);
+			}
+		});
+		return digest.digest();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 	private void handle(MasterInquiryMessage masterInquiryMessage) { //8. Master/largeMessageProxy sent a MasterInquiry message asking for (permission?) to send large message
-		this.masterField_worker_receiver_url = masterInquiryMessage.getReceiver_worker();
-		this.master_largeMessageProxy = masterInquiryMessage.getMaster();
-		masterInquiryMessage.getMaster_largeMessageProxy_url().tell(new ConfigurationMessage(this.self()), this.self()); //this.self is the LargeMessageProxy
+		//if the header tells us the size, the chunks are copied only once; otherwise, they are deserialized as they arrive
+		final long transferID = masterInquiryMessage.getTransferID();
+		final ActorRef senderProxy = masterInquiryMessage.getMaster_largeMessageProxy_url();
+
+		//The sender repeats an inquiry whose answer did not reach it; the sender ignores the answer if it has started the transfer in the meantime
+		IncomingTransfer known = this.incomingTransfers.get(transferID);
+		if (known != null) {
+			senderProxy.tell(new ConfigurationMessage(transferID, this.self(), known.waiting, known.waiting ? 0 : RECEIVE_WINDOW), this.self());
+			return;
+		}
+
+		IncomingTransfer transfer = new IncomingTransfer(masterInquiryMessage.getMaster(), masterInquiryMessage.getReceiver_worker(),
+				masterInquiryMessage.getContentHash(), masterInquiryMessage.getRelays(), senderProxy);
+		transfer.announcedLength = masterInquiryMessage.getLength();
+		this.incomingTransfers.put(transferID, transfer);
+
+		if (transfer.contentHash != null && ConfigurationSingleton.get().isPayloadSharing()) {
+			CompletableFuture<Object> payload = this.payloadStore.offer(transfer.contentHash);
+			if (payload != null) {
+				//Our actor system holds or receives the message already, so we skip the chunks and share its instance;
+				//the sender keeps the transfer and relays the broadcast itself, in case the other transfer fails and we need the chunks after all
+				transfer.completed = true;
+				transfer.waiting = true;
+				transfer.relays = new ArrayList<>();
+				Patterns.pipe(payload.handle((object, cause) -> new DeserializedMessage(transferID, object, cause)), this.context().dispatcher()).to(this.self());
+				senderProxy.tell(new ConfigurationMessage(transferID, this.self(), true, 0), this.self());
+				return;
+			}
+			transfer.claimed = true;
+		}
+
+		this.receive(transferID, transfer);
+	}
+
+	//Prepare the transfer for its chunks and ask the sender for them
+	private void receive(long transferID, IncomingTransfer transfer) {
+		if (transfer.announcedLength == UNKNOWN_LENGTH) {
+			transfer.chunks = new ChunkInputStream();
+
+			CompletableFuture<DeserializedMessage> deserialization = CompletableFuture
+					.supplyAsync(() -> {
+						transfer.deserializing = true;
+						return deserialize(transfer.chunks);
+					}, this.deserializer)
+					.handle((object, cause) -> new DeserializedMessage(transferID, object, cause));
+			Patterns.pipe(deserialization, this.context().dispatcher()).to(this.self());
+		} else {
+			transfer.bytes = this.allocate(transferID, transfer.announcedLength);
+		}
+
+		transfer.senderProxy.tell(new ConfigurationMessage(transferID, this.self(), false, RECEIVE_WINDOW), this.self()); //this.self is the LargeMessageProxy
+	}
+
+	//Receive buffers of messages above the spill threshold are memory-mapped temporary files, so that the heap does not limit the message size
+	private TransferBuffer allocate(long transferID, int length) {
+		long spillThreshold = ConfigurationSingleton.get().getSpillThreshold() * 1024L * 1024L;
+		try {
+			return TransferBuffer.allocate(length, spillThreshold);
+		} catch (IOException e) {
+			this.log().warning("Cannot spill transfer {} to disk ({}); receiving it into the heap", transferID, e);
+			try {
+				return TransferBuffer.allocate(length, Long.MAX_VALUE);
+			} catch (IOException impossible) {
+				throw new UncheckedIOException(impossible);
+			}
+		}
 	}
 
 	private void handle(ConfigurationMessage configurationMessage) {
 		//see also: https://en.wikibooks.org/wiki/Java_Akka_Streams/Sources
+		final long transferID = configurationMessage.getTransferID();
+		OutgoingTransfer transfer = this.outgoingTransfers.get(transferID);
+		if (transfer == null) {
+			this.log().error("Unknown transfer {} requested by {}", transferID, configurationMessage.getSender());
+			return;
+		}
+
+		if (transfer.attempt >= 0) {
+			//The transfer has started already; the receiver repeats its answer while its deserialization waits for a thread
+			transfer.lastActivity = System.currentTimeMillis();
+			return;
+		}
 
-		Creator2 creator = new Creator2();
+		if (configurationMessage.isCached()) {
+			//The receiver needs no chunks for now, but the receivers that it should have relayed the message to might
+			transfer.lastActivity = System.currentTimeMillis();
+			if (transfer.parked)
+				return; //the receiver still waits
+			transfer.parked = true;
+			if (!transfer.relays.isEmpty())
+				this.relay(transfer.bytes, transfer.contentHash, transfer.relays, transfer.sender);
+			return;
+		}
 
+		transfer.parked = false;
 
-		Sink sink = Sink.actorRefWithAck(
-				configurationMessage.getSender(),
-				new StreamInitializedMessage(),
-				Ack.INSTANCE,
-				new StreamCompletedMessage(),
-				err -> new StreamFailureMessage(err)
-		);
-		Source.fromIterator(creator).runWith(sink, ActorMaterializer.create(this.context()));
+		//Chunks grow with the throughput of the link; their size is fixed for the transfer, so that a resumed stream can find its first chunk
+		transfer.receiverProxy = configurationMessage.getSender();
+		transfer.link = this.links.computeIfAbsent(transfer.receiverProxy.path().address(), address -> new LinkEstimate());
+		transfer.chunkSize = transfer.link.chunkSize(CHUNK_SIZE);
+		transfer.credit = configurationMessage.getCredit();
+		transfer.attempt = 0;
+		transfer.producing = true;
 
+		if (transfer.bytes != null) {
+			//The bytes are kept until the receiver has them all, so that it can resume the transfer
+			transfer.stream = this.produce(transferID, 0, 0, Source.fromIterator(new Creator2(transfer.bytes, transfer.chunkSize, 0))
+					.viaMat(KillSwitches.single(), Keep.right()));
+			return;
+		}
+
+		this.stream(transferID, transfer, 0);
+	}
+
+	//Kryo fills one chunk at a time and waits for the stream to take it, so only a few chunks exist at once; a resumed stream serializes the message again and skips the chunks that the receiver has
+	private void stream(long transferID, OutgoingTransfer transfer, int firstChunk) {
+		ChunkOutputStream chunks = transfer.chunks = new ChunkOutputStream(
+				this.produce(transferID, firstChunk, transfer.attempt, Source.queue(1, OverflowStrategy.backpressure())), transfer.chunkSize, firstChunk);
+		boolean compress = ConfigurationSingleton.get().isCompression();
+		boolean digest = transfer.contentHash == null && ConfigurationSingleton.get().isPayloadSharing();
+		CompletableFuture
+				.runAsync(() -> serialize(transfer.message, digest ? digest(TransferCodec.encoder(chunks, compress), transfer) : TransferCodec.encoder(chunks, compress)), this.serializer)
+				.exceptionally(cause -> {
+					chunks.fail(cause);
+					return null;
+				});
+	}
+
+	//Digest the serialization on its way into the stream; the digest is set before the stream ends, so it can go with the end of the stream
+	private static OutputStream digest(OutputStream out, OutgoingTransfer transfer) {
+		MessageDigest digest = sha256();
+		return new DigestOutputStream(out, digest) {
+			@Override
+			public void close() throws IOException {
+				transfer.streamedHash = digest.digest();
+				super.close();
+			}
+		};
+	}
+
+	//Run a stream that numbers the chunks of a transfer and hands them to this proxy, which sends them as the receiver's credit allows
+	private <M> M produce(long transferID, int firstChunk, int attempt, Source<ByteString, M> chunks) {
+		return chunks
+				.zipWithIndex()
+				.map(chunk -> new OutboundChunkMessage(transferID, attempt, chunk(transferID, attempt, firstChunk + chunk.second().intValue(), chunk.first())))
+				.to(Sink.actorRefWithAck(
+						this.self(),
+						new StreamInitializedMessage(transferID, attempt),
+						Ack.INSTANCE,
+						new OutboundCompletedMessage(transferID, attempt, null),
+						err -> new OutboundCompletedMessage(transferID, attempt, err)))
+				.run(this.materializer);
+	}
+
+	private void handle(OutboundChunkMessage outboundChunkMessage) {
+		OutgoingTransfer transfer = this.outgoingTransfers.get(outboundChunkMessage.getTransferID());
+		if (transfer == null || transfer.attempt != outboundChunkMessage.getAttempt()) {
+			this.sender().tell(Ack.INSTANCE, this.self()); //let a replaced stream run into its kill switch
+			return;
+		}
+
+		transfer.pending = outboundChunkMessage;
+		transfer.producer = this.sender();
+		this.sendPending(transfer);
+	}
+
+	//Send the pending chunk of a transfer if the receiver has granted credit for it and the window of the link is not full
+	private void sendPending(OutgoingTransfer transfer) {
+		if (transfer.pending == null || transfer.credit == 0 || transfer.inFlight >= transfer.link.window(transfer.chunkSize, RECEIVE_WINDOW))
+			return;
+
+		BytesChunk chunk = transfer.pending.getChunk();
+		transfer.sentAt[chunk.getSequenceNumber() % RECEIVE_WINDOW] = System.nanoTime();
+		transfer.credit--;
+		transfer.inFlight++;
+		transfer.receiverProxy.tell(chunk, this.self());
+
+		transfer.pending = null;
+		if (transfer.producer != null)
+			transfer.producer.tell(Ack.INSTANCE, this.self());
+	}
+
+	private void handle(CreditMessage creditMessage) {
+		OutgoingTransfer transfer = this.outgoingTransfers.get(creditMessage.getTransferID());
+		if (transfer == null || transfer.attempt != creditMessage.getAttempt())
+			return;
+
+		long now = System.nanoTime();
+		transfer.link.credited(creditMessage.getLength(), now - transfer.sentAt[creditMessage.getSequenceNumber() % RECEIVE_WINDOW], now);
+		transfer.credit++;
+		transfer.inFlight--;
+		transfer.lastActivity = System.currentTimeMillis();
+		this.sendPending(transfer);
+		this.complete(creditMessage.getTransferID(), transfer);
+	}
+
+	private void handle(OutboundCompletedMessage outboundCompletedMessage) {
+		final long transferID = outboundCompletedMessage.getTransferID();
+		OutgoingTransfer transfer = this.outgoingTransfers.get(transferID);
+		if (transfer == null || transfer.attempt != outboundCompletedMessage.getAttempt())
+			return;
+
+		transfer.stream = null;
+		transfer.producing = false;
+		transfer.producer = null; //the stream may end while its last chunk still waits for credit
+		transfer.lastActivity = System.currentTimeMillis();
+
+		if (outboundCompletedMessage.getCause() != null) {
+			transfer.pending = null;
+			transfer.receiverProxy.tell(new StreamFailureMessage(transferID, transfer.attempt, outboundCompletedMessage.getCause()), this.self());
+			if (transfer.bytes == null)
+				this.remove(transferID);
+			return;
+		}
+
+		transfer.completing = true;
+		this.complete(transferID, transfer);
+	}
+
+	//Chunks travel on artery's large message stream and may be overtaken by other messages, so a stream's end is announced once all of its chunks are credited
+	private void complete(long transferID, OutgoingTransfer transfer) {
+		if (!transfer.completing || transfer.pending != null || transfer.inFlight > 0)
+			return;
+
+		transfer.completing = false;
+		transfer.receiverProxy.tell(new StreamCompletedMessage(transferID, transfer.attempt, transfer.streamedHash), this.self());
+
+		//The receiver has all chunks of a message that is serialized while it is streamed, so it cannot resume the transfer any more
+		if (transfer.bytes == null)
+			this.remove(transferID);
+	}
+
+	private static BytesChunk chunk(long transferID, int attempt, int sequenceNumber, ByteString bytes) {
+		return new BytesChunk(transferID, attempt, sequenceNumber, Crc32c.of(bytes), bytes);
 	}
 
 	private void handle(StreamInitializedMessage streamInitializedMessage) {
@@ -218,27 +917,294 @@ public class LargeMessageProxy extends AbstractLoggingActor {
 		message.getReceiver().tell(KryoPoolSingleton.get().fromBytes(message.getBytes()), message.getSender()); //Deserialization: de-converting bytes
 	}
 
-	private void handle(Byte[] bytes) {
-		// Rebuilding the requestIncoming
-		for(Byte temp : bytes){
-			this.requestIncoming.add(temp);
+	private void handle(BytesChunk chunk) {
+		// Rebuilding the message of the chunk's transfer
+		IncomingTransfer transfer = this.incomingTransfers.get(chunk.getTransferID());
+		if (transfer == null) {
+			this.log().error("Received a chunk of unknown transfer {}", chunk.getTransferID());
+			return;
 		}
-		sender().tell(Ack.INSTANCE, self());
+
+		//Chunks of a stream that a resumed one replaced are skipped; a gap in the current stream means that a chunk got lost
+		ByteString bytes = chunk.getBytes();
+		if (chunk.getAttempt() != transfer.attempt)
+			return;
+		if (chunk.getSequenceNumber() != transfer.nextSequenceNumber) {
+			this.resume(chunk.getTransferID(), transfer, "lost chunk " + transfer.nextSequenceNumber);
+			return;
+		}
+		if (transfer.bytes != null && bytes.size() > transfer.bytes.size() - transfer.length) {
+			this.resume(chunk.getTransferID(), transfer, "received an oversized chunk " + chunk.getSequenceNumber());
+			return;
+		}
+		if (Crc32c.of(bytes) != chunk.getChecksum()) {
+			this.resume(chunk.getTransferID(), transfer, "received a corrupted chunk " + chunk.getSequenceNumber());
+			return;
+		}
+
+		if (transfer.chunks != null) {
+			transfer.nextSequenceNumber++;
+			transfer.lastProgress = System.currentTimeMillis();
+
+			//The deserialization grants the credit for the chunk when it starts reading it
+			final CreditMessage credit = new CreditMessage(chunk.getTransferID(), chunk.getAttempt(), chunk.getSequenceNumber(), bytes.size());
+			final ActorRef senderProxy = transfer.senderProxy;
+			final ActorRef self = this.self();
+			transfer.chunks.add(bytes, () -> senderProxy.tell(credit, self));
+			return;
+		}
+
+		transfer.bytes.put(transfer.length, bytes);
+
+		transfer.length += bytes.size();
+		transfer.nextSequenceNumber++;
+		transfer.lastProgress = System.currentTimeMillis();
+		transfer.senderProxy.tell(new CreditMessage(chunk.getTransferID(), chunk.getAttempt(), chunk.getSequenceNumber(), bytes.size()), this.self());
+	}
+
+	//Ask the sending proxy to stream the chunks from the first missing one on again
+	private void resume(long transferID, IncomingTransfer transfer, String reason) {
+		if (transfer.resumes == MAX_RESUMES) {
+			this.log().error("Transfer {} {}; giving up after {} resumes", transferID, reason, MAX_RESUMES);
+			this.incomingTransfers.remove(transferID);
+			if (transfer.chunks != null)
+				transfer.chunks.fail(new IOException("Transfer " + transferID + " failed."));
+			if (transfer.claimed)
+				this.payloadStore.abandon(transfer.contentHash, new IllegalStateException("Transfer " + transferID + " failed."));
+			transfer.senderProxy.tell(new TransferFinishedMessage(transferID), this.self());
+			return;
+		}
+
+		transfer.resumes++;
+		transfer.attempt++;
+		transfer.lastProgress = System.currentTimeMillis();
+		this.log().warning("Transfer {} {}; resuming it from chunk {}", transferID, reason, transfer.nextSequenceNumber);
+		transfer.senderProxy.tell(new ResumeMessage(transferID, transfer.nextSequenceNumber, transfer.attempt, this.self(), RECEIVE_WINDOW), this.self());
 	}
 
 	private void handle(StreamCompletedMessage streamCompletedMessage) {
+		IncomingTransfer transfer = this.incomingTransfers.get(streamCompletedMessage.getTransferID());
+		if (transfer == null)
+			return;
+
+		if (streamCompletedMessage.getAttempt() != transfer.attempt)
+			return; //the end of a stream that a resumed one replaced
+
+		if (transfer.chunks != null) {
+			//The deserialization delivers the message
+			transfer.completed = true;
+			transfer.chunks.complete();
+			transfer.streamedHash = streamCompletedMessage.getContentHash();
+			if (transfer.deserialized) {
+				this.incomingTransfers.remove(streamCompletedMessage.getTransferID());
+				this.share(transfer);
+			}
+			return;
+		}
+		if (transfer.length != transfer.bytes.size()) {
+			this.resume(streamCompletedMessage.getTransferID(), transfer, "ended after " + transfer.length + " of " + transfer.bytes.size() + " bytes");
+			return;
+		}
+
+		//All chunks are intact, so the sending proxy can drop the bytes
+		this.incomingTransfers.remove(streamCompletedMessage.getTransferID());
+		transfer.senderProxy.tell(new TransferFinishedMessage(streamCompletedMessage.getTransferID()), this.self());
+
+		//The payload of a broadcast goes on to the receivers that this proxy is responsible for
+		if (transfer.relays != null && !transfer.relays.isEmpty())
+			this.relay(transfer.bytes, transfer.contentHash, transfer.relays, transfer.sender);
+
+		Object message;
+		try {
+			message = deserialize(transfer.bytes);
+		} catch (IOException | RuntimeException e) {
+			this.log().error(e, "Deserialization of transfer {} failed; dropping the message", streamCompletedMessage.getTransferID());
+			if (transfer.claimed)
+				this.payloadStore.abandon(transfer.contentHash, e);
+			return;
+		}
+		if (transfer.claimed)
+			this.payloadStore.put(transfer.contentHash, message);
+		transfer.receiver.tell(message, transfer.sender);
+	}
+
+	private static void serialize(Object message, OutputStream out) {
+		Output output = new Output(out, CHUNK_SIZE);
+		KryoPoolSingleton.getStreamKryo().writeClassAndObject(output, message); //Serialization: converting data into chunks
+		output.close();
+	}
+
+	private static Object deserialize(InputStream chunks) {
+		try (Input input = new Input(TransferCodec.decoder(chunks), CHUNK_SIZE)) {
+			return KryoPoolSingleton.getStreamKryo().readClassAndObject(input); //Deserialization: de-converting chunks
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Object deserialize(TransferBuffer bytes) throws IOException {
+		TransferCodec codec = TransferCodec.of(bytes.get(0));
+		Input input = (codec == TransferCodec.RAW)
+				? bytes.input(1)
+				: new Input(codec.wrap(bytes.inputStream(1)), CHUNK_SIZE);
+		try {
+			return KryoPoolSingleton.getStreamKryo().readClassAndObject(input); //Deserialization: de-converting bytes
+		} finally {
+			input.close();
+		}
+	}
+
+	private void handle(DeserializedMessage deserializedMessage) {
+		IncomingTransfer transfer = this.incomingTransfers.get(deserializedMessage.getTransferID());
+		if (transfer == null)
+			return; //the stream failed, which also failed the deserialization
+
+		if (deserializedMessage.getCause() != null && transfer.waiting) {
+			//The proxy that received the message for our actor system gave up, so we receive a copy of our own
+			this.log().warning("Shared payload of transfer {} failed ({}); receiving the transfer itself", deserializedMessage.getTransferID(), deserializedMessage.getCause());
+			transfer.waiting = false;
+			transfer.completed = false;
+			transfer.lastProgress = System.currentTimeMillis();
+			this.receive(deserializedMessage.getTransferID(), transfer);
+			return;
+		}
 
-		byte[] bytes = new byte[this.requestIncoming.size()];
-		int temp = 0;
-		while (temp < this.requestIncoming.size()) {
-			bytes[temp] = this.requestIncoming.get(temp);
-			temp++;
+		//Drop (but acknowledge) whatever the deserialization did not read, so that the sender's stream can finish
+		transfer.deserialized = true;
+		if (transfer.chunks != null)
+			transfer.chunks.close();
+		if (transfer.completed)
+			this.incomingTransfers.remove(deserializedMessage.getTransferID());
+		if (deserializedMessage.getCause() != null) {
+			this.log().error(deserializedMessage.getCause(), "Deserialization of transfer {} failed; dropping the message", deserializedMessage.getTransferID());
+			if (transfer.claimed)
+				this.payloadStore.abandon(transfer.contentHash, deserializedMessage.getCause());
+			return;
+		}
+		if (transfer.waiting) {
+			transfer.senderProxy.tell(new TransferFinishedMessage(deserializedMessage.getTransferID()), this.self());
+		} else if (transfer.claimed) {
+			this.payloadStore.put(transfer.contentHash, deserializedMessage.getMessage());
+		} else if (transfer.chunks != null) {
+			transfer.message = deserializedMessage.getMessage();
+			if (transfer.completed)
+				this.share(transfer);
 		}
-		this.masterField_worker_receiver_url.tell(KryoPoolSingleton.get().fromBytes(bytes), this.master_largeMessageProxy); //Deserialization: de-converting bytes
+		transfer.receiver.tell(deserializedMessage.getMessage(), transfer.sender);
+	}
+
+	//A message that was digested while it was streamed goes into the PayloadStore once it is complete, so that later transfers of it are shared
+	private void share(IncomingTransfer transfer) {
+		if (transfer.streamedHash != null && transfer.message != null && this.payloadStore.offer(transfer.streamedHash) == null)
+			this.payloadStore.put(transfer.streamedHash, transfer.message);
+		transfer.message = null;
 	}
 
 	private void handle(StreamFailureMessage streamFailureMessage) {
+		IncomingTransfer transfer = this.incomingTransfers.get(streamFailureMessage.getTransferID());
+		if (transfer == null || streamFailureMessage.getAttempt() != transfer.attempt)
+			return;
+
+		if (transfer.bytes != null) {
+			this.resume(streamFailureMessage.getTransferID(), transfer, "failed with " + streamFailureMessage.getCause());
+			return;
+		}
+
+		this.incomingTransfers.remove(streamFailureMessage.getTransferID());
+		if (transfer.chunks != null)
+			transfer.chunks.fail(streamFailureMessage.getCause());
+		if (transfer.claimed)
+			this.payloadStore.abandon(transfer.contentHash, streamFailureMessage.getCause());
 		this.log().error(streamFailureMessage.toString());
 	}
 
+	private void handle(ResumeMessage resumeMessage) {
+		OutgoingTransfer transfer = this.outgoingTransfers.get(resumeMessage.getTransferID());
+		if (transfer == null) {
+			this.log().error("Cannot resume unknown transfer {} for {}", resumeMessage.getTransferID(), resumeMessage.getReceiver());
+			return;
+		}
+
+		//Replace the current stream, which is broken or stalled, by one that starts with the first missing chunk; the credit starts afresh
+		if (transfer.stream != null)
+			transfer.stream.shutdown();
+		if (transfer.chunks != null)
+			transfer.chunks.fail(new IOException("Transfer " + resumeMessage.getTransferID() + " is resumed."));
+		transfer.receiverProxy = resumeMessage.getReceiver();
+		transfer.attempt = resumeMessage.getAttempt();
+		transfer.credit = resumeMessage.getCredit();
+		transfer.inFlight = 0;
+		transfer.pending = null;
+		transfer.producing = true;
+		transfer.completing = false;
+		transfer.lastActivity = System.currentTimeMillis();
+
+		if (transfer.bytes == null) {
+			this.stream(resumeMessage.getTransferID(), transfer, resumeMessage.getSequenceNumber());
+			return;
+		}
+		transfer.stream = this.produce(resumeMessage.getTransferID(), resumeMessage.getSequenceNumber(), resumeMessage.getAttempt(),
+				Source.fromIterator(new Creator2(transfer.bytes, transfer.chunkSize, resumeMessage.getSequenceNumber())).viaMat(KillSwitches.single(), Keep.right()));
+	}
+
+	private void handle(TransferFinishedMessage transferFinishedMessage) {
+		this.remove(transferFinishedMessage.getTransferID());
+	}
+
+	private void handle(CheckTransfersMessage checkTransfersMessage) {
+		long now = System.currentTimeMillis();
+
+		for (Map.Entry<Long, IncomingTransfer> entry : new ArrayList<>(this.incomingTransfers.entrySet())) {
+			IncomingTransfer transfer = entry.getValue();
+			if (transfer.waiting) {
+				//Keep the sender from dropping the transfer, which we may still need
+				transfer.senderProxy.tell(new ConfigurationMessage(entry.getKey(), this.self(), true, 0), this.self());
+				continue;
+			}
+			if (transfer.chunks != null && !transfer.completed && !transfer.deserializing) {
+				//A transfer does not stall while its deserialization waits for a thread; the sender must not drop it either
+				transfer.lastProgress = now;
+				transfer.senderProxy.tell(new ConfigurationMessage(entry.getKey(), this.self(), false, RECEIVE_WINDOW), this.self());
+				continue;
+			}
+			if (transfer.completed || now - transfer.lastProgress < TRANSFER_TIMEOUT)
+				continue;
+
+			this.resume(entry.getKey(), transfer, "stalled");
+		}
+
+		//Transfers whose receiver neither answered, granted credit, finished, resumed nor waited for them in time are dropped
+		for (Map.Entry<Long, OutgoingTransfer> entry : new ArrayList<>(this.outgoingTransfers.entrySet())) {
+			OutgoingTransfer transfer = entry.getValue();
+			if (transfer.queued)
+				continue; //not announced yet
+			boolean unanswered = transfer.attempt < 0 && !transfer.parked;
+			if (unanswered && now - transfer.lastActivity <= 2 * TRANSFER_TIMEOUT && now - transfer.inquiredAt >= INQUIRY_INTERVAL << transfer.inquiries) {
+				//The receiver's proxy may not have existed yet, or the inquiry or its answer got lost
+				transfer.inquiries++;
+				transfer.inquiredAt = now;
+				transfer.inquired.tell(transfer.inquiry, this.self());
+				continue;
+			}
+			if (now - transfer.lastActivity <= 2 * TRANSFER_TIMEOUT)
+				continue;
+
+			this.remove(entry.getKey());
+			if (unanswered)
+				this.log().error("Transfer {} to {} was not answered after {} inquiries; dropping the message", entry.getKey(), transfer.inquired, transfer.inquiries + 1);
+			if (transfer.producing || transfer.completing)
+				this.log().warning("Transfer {} to {} stalled; dropping the message", entry.getKey(), transfer.receiverProxy);
+			if (transfer.parked)
+				this.log().warning("Receiver of transfer {} stopped waiting for its shared payload; dropping the message", entry.getKey());
+
+			//A serialization that waits for the receiver must give up its thread of the dispatcher
+			if (transfer.stream != null)
+				transfer.stream.shutdown();
+			if (transfer.chunks != null)
+				transfer.chunks.fail(new IOException("Transfer " + entry.getKey() + " stalled."));
+			if (transfer.pending != null && transfer.producer != null)
+				transfer.producer.tell(Ack.INSTANCE, this.self());
+		}
+	}
+
 }
@@ -3,14 +3,19 @@ package de.hpi.ddm.actors;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.PoisonPill;
 import akka.actor.Props;
 import akka.actor.Terminated;
+import de.hpi.ddm.structures.BitSet;
 import de.hpi.ddm.structures.BloomFilter;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+import scala.concurrent.duration.Duration;
 
 public class Master extends AbstractLoggingActor {
 
@@ -19,6 +24,9 @@ public class Master extends AbstractLoggingActor {
 	////////////////////////
 	
 	public static final String DEFAULT_NAME = "master";
+	
+	private static final long DATA_BROADCAST_DELAY = 200; // Milliseconds during which worker registrations are collected for one broadcast of the data
+	private static final long DATA_DELTA_DELAY = 200; // Milliseconds during which changes of the data are collected for one delta
 
 	public static Props props() {
 		return Props.create(Master.class);
@@ -38,15 +46,36 @@ public class Master extends AbstractLoggingActor {
 		private static final long serialVersionUID = 3303081601659723997L;
 	}
 	
+	@Data @NoArgsConstructor @AllArgsConstructor
+	public static class AddDataMessage implements Serializable {
+		private static final long serialVersionUID = 8436184960452174337L;
+		private List<BitSet> elements;
+	}
+	
+	// Sent by the master to itself when the data should be broadcast to the recently registered workers
+	@Data
+	private static class BroadcastDataMessage implements Serializable {
+		private static final long serialVersionUID = -2136476358237447391L;
+	}
+	
+	// Sent by the master to itself when the changes of the data should be sent to the workers that have the data
+	@Data
+	private static class PublishDeltaMessage implements Serializable {
+		private static final long serialVersionUID = 4730251861306338954L;
+	}
+	
 	/////////////////
 	// Actor State //
 	/////////////////
 
 	private final List<ActorRef> workers = new ArrayList<>();
+	private final List<ActorRef> dataReceivers = new ArrayList<>(); // Registered workers that wait for the data
+	private final List<ActorRef> dataSubscribers = new ArrayList<>(); // Workers that got the data and get its deltas
 	private final ActorRef largeMessageProxy = this.context().actorOf(LargeMessageProxy.props(), LargeMessageProxy.DEFAULT_NAME);
 	private final BloomFilter data = new BloomFilter(BloomFilter.DEFAULT_SIZE, true); //Reminder if element is in or not
 	
 	private boolean isEnded = false;
+	private boolean isDeltaScheduled = false;
 	
 	/////////////////////
 	// Actor Lifecycle //
@@ -55,6 +84,8 @@ public class Master extends AbstractLoggingActor {
 	@Override
 	public void preStart() {
 		Reaper.watchWithDefaultReaper(this);
+		
+		this.data.trackChanges();
 	}
 
 	////////////////////
@@ -67,6 +98,9 @@ public class Master extends AbstractLoggingActor {
 				.match(EndMessage.class, this::handle)
 				.match(Terminated.class, this::handle)
 				.match(RegistrationMessage.class, this::handle)
+				.match(BroadcastDataMessage.class, this::handle)
+				.match(AddDataMessage.class, this::handle)
+				.match(PublishDeltaMessage.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
 	}
@@ -91,14 +125,56 @@ public class Master extends AbstractLoggingActor {
 		this.workers.add(this.sender());
 		this.log().info("Registered {}", this.sender());
 
-		this.largeMessageProxy.tell(new LargeMessageProxy.LargeMessage<>(this.data, this.sender()), this.self()); // 6. And responds by sending a LargeMessageProxy.LargeMessage to the sender (which is a worker)
-		//System.out.println("MASTER IMPORTANT* : " + this.largeMessageProxy+this.sender()+this.self());
-		//Here the master (this.self()) is sending a message to the master/largeMessageProxy (this.largeMessageProxy), which sends it then to the worker which is (this.sender())
+		// 6. And responds by sending the data to the sender (which is a worker); workers that register at about the same time share one broadcast
+		this.dataReceivers.add(this.sender());
+		if (this.dataReceivers.size() == 1)
+			this.context().system().scheduler().scheduleOnce(Duration.create(DATA_BROADCAST_DELAY, TimeUnit.MILLISECONDS),
+					this.self(), new BroadcastDataMessage(), this.context().dispatcher(), this.self());
+	}
+	
+	protected void handle(BroadcastDataMessage message) {
+		if (this.dataReceivers.isEmpty())
+			return;
+		
+		// The proxy serializes the data after this handler, so it gets a snapshot that later changes do not tear; the
+		// changes so far go to the previous receivers as a delta first, so that the snapshot is exactly one version
+		this.publishDelta();
+		
+		//Here the master (this.self()) is sending a message to the master/largeMessageProxy (this.largeMessageProxy), which serializes it once and relays it to the workers
+		this.largeMessageProxy.tell(new LargeMessageProxy.BroadcastMessage<>(this.data.snapshot(), new ArrayList<>(this.dataReceivers)), this.self());
+		this.dataSubscribers.addAll(this.dataReceivers);
+		this.dataReceivers.clear();
+	}
+	
+	protected void handle(AddDataMessage message) {
+		this.data.addAll(message.getElements());
+		
+		if (!this.isDeltaScheduled) {
+			this.isDeltaScheduled = true;
+			this.context().system().scheduler().scheduleOnce(Duration.create(DATA_DELTA_DELAY, TimeUnit.MILLISECONDS),
+					this.self(), new PublishDeltaMessage(), this.context().dispatcher(), this.self());
+		}
+	}
+	
+	protected void handle(PublishDeltaMessage message) {
+		this.isDeltaScheduled = false;
+		this.publishDelta();
+	}
+	
+	private void publishDelta() {
+		BloomFilter.Delta delta = this.data.delta();
+		if (delta == null || this.dataSubscribers.isEmpty())
+			return;
+		
+		this.log().info("Publishing {} changed words of the data as version {}", delta.size(), delta.getToVersion());
+		this.largeMessageProxy.tell(new LargeMessageProxy.BroadcastMessage<>(delta, new ArrayList<>(this.dataSubscribers)), this.self());
 	}
 	
 	protected void handle(Terminated message) {
 		this.context().unwatch(message.getActor());
 		this.workers.remove(message.getActor());
+		this.dataReceivers.remove(message.getActor());
+		this.dataSubscribers.remove(message.getActor());
 		
 		if (this.workers.isEmpty())
 			this.self().tell(PoisonPill.getInstance(), this.self());
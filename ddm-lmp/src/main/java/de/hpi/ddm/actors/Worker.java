@@ -1,5 +1,7 @@
 package de.hpi.ddm.actors;
 
+import java.util.TreeMap;
+
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.PoisonPill;
@@ -11,6 +13,7 @@ import akka.cluster.ClusterEvent.MemberUp;
 import akka.cluster.Member;
 import akka.cluster.MemberStatus;
 import de.hpi.ddm.MasterSystem;
+import de.hpi.ddm.structures.BloomFilter;
 
 public class Worker extends AbstractLoggingActor {
 
@@ -39,6 +42,9 @@ public class Worker extends AbstractLoggingActor {
 	
 	private long registrationTime;
 	
+	private BloomFilter data;
+	private final TreeMap<Long, BloomFilter.Delta> deltas = new TreeMap<>(); // Deltas of the data that arrived before the data or before an earlier delta
+	
 	/////////////////////
 	// Actor Lifecycle //
 	/////////////////////
@@ -65,6 +71,8 @@ public class Worker extends AbstractLoggingActor {
 				.match(CurrentClusterState.class, this::handle)
 				.match(MemberUp.class, this::handle)
 				.match(MemberRemoved.class, this::handle)
+				.match(BloomFilter.class, this::handle)
+				.match(BloomFilter.Delta.class, this::handle)
 				.match(Object.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
@@ -98,6 +106,28 @@ public class Worker extends AbstractLoggingActor {
 			this.self().tell(PoisonPill.getInstance(), ActorRef.noSender());
 	}
 	
+	private void handle(BloomFilter message) {
+		final long transmissionTime = System.currentTimeMillis() - this.registrationTime;
+		this.log().info("Data received in " + transmissionTime + " ms.");
+		
+		this.data = message;
+		this.applyDeltas();
+	}
+	
+	// The proxy does not keep the order of messages, so deltas are applied in the order of their versions
+	private void handle(BloomFilter.Delta message) {
+		this.deltas.put(message.getFromVersion(), message);
+		this.applyDeltas();
+	}
+	
+	private void applyDeltas() {
+		if (this.data == null)
+			return;
+		
+		while (!this.deltas.isEmpty() && this.data.apply(this.deltas.firstEntry().getValue()))
+			this.deltas.pollFirstEntry();
+	}
+	
 	private void handle(Object message) {
 		final long transmissionTime = System.currentTimeMillis() - this.registrationTime;
 		this.log().info("Data received in " + transmissionTime + " ms.");
@@ -14,5 +14,26 @@ public abstract class Command {
 
 	@Parameter(names = { "-w", "--numWorkers" }, description = "The number of workers (indexers/validators) to start locally; should be at least one if the algorithm is started standalone (otherwise there are no workers to run the discovery)", required = false)
 	int numWorkers = ConfigurationSingleton.get().getNumWorkers();
+
+	@Parameter(names = { "-ss", "--streamSerialization" }, arity = 1, description = "Serialize large messages directly into the chunks of their transfer (true) or into one byte array before the transfer (false)", required = false)
+	boolean streamSerialization = ConfigurationSingleton.get().isStreamSerialization();
+
+	@Parameter(names = { "-c", "--compression" }, arity = 1, description = "Compress large message transfers if an entropy probe of their first bytes promises that compression pays off", required = false)
+	boolean compression = ConfigurationSingleton.get().isCompression();
+
+	@Parameter(names = { "-ps", "--payloadSharing" }, arity = 1, description = "Receive large messages with identical content only once per actor system and hand the same (read-only) instance to all receivers", required = false)
+	boolean payloadSharing = ConfigurationSingleton.get().isPayloadSharing();
+	
+	@Parameter(names = { "-sps", "--streamedPayloadSharing" }, arity = 1, description = "Digest streamed large messages before their transfer (true), so that they are shared while they are received, or while they are serialized into the transfer (false), so that only later transfers of them are shared", required = false)
+	boolean streamedPayloadSharing = ConfigurationSingleton.get().isStreamedPayloadSharing();
+	
+	@Parameter(names = { "-st", "--spillThreshold" }, description = "Size (in MB) above which received large messages are buffered in memory-mapped temporary files instead of the heap", required = false)
+	int spillThreshold = ConfigurationSingleton.get().getSpillThreshold();
+	
+	@Parameter(names = { "-lh", "--localHandOver" }, arity = 1, description = "Hand large messages to receivers in the same actor system as they are (true) or transfer them like to remote receivers (false)", required = false)
+	boolean localHandOver = ConfigurationSingleton.get().isLocalHandOver();
+	
+	@Parameter(names = { "-vs", "--verifySerializability" }, arity = 1, description = "Debug mode: serialize and deserialize large messages that are handed over locally to detect messages that could not be sent to other actor systems", required = false)
+	boolean verifySerializability = ConfigurationSingleton.get().isVerifySerializability();
 	
 }
@@ -23,6 +23,20 @@ public class Configuration {
 	
 	private int dataSize = 20; 						// Size of the data message (in MB) with which each worker should be initialized
 	
+	private boolean streamSerialization = true;		// Serialize large messages directly into the chunks of their transfer instead of into one byte array first
+	
+	private boolean compression = true;				// Compress the transfers of large messages whose first bytes promise that compression pays off
+	
+	private boolean payloadSharing = true;			// Receive large messages whose content is known in advance once per actor system and share the deserialized instance
+	
+	private boolean streamedPayloadSharing = false;	// Digest streamed large messages before their transfer, so that they are shared while they are received; costs another serialization
+	
+	private int spillThreshold = 256;				// Size (in MB) above which received large messages are buffered in memory-mapped temporary files instead of the heap
+	
+	private boolean localHandOver = true;			// Hand large messages to receivers in the same actor system as they are instead of serializing them
+	
+	private boolean verifySerializability = false;	// Debug mode: check that large messages that are handed over locally would also survive a transfer
+	
 	private static String getDefaultHost() {
         try {
             return InetAddress.getLocalHost().getHostAddress();
@@ -36,6 +50,13 @@ public class Configuration {
 		this.port = commandMaster.port;
 		this.numWorkers = commandMaster.numWorkers;
 		this.dataSize = commandMaster.dataSize;
+		this.streamSerialization = commandMaster.streamSerialization;
+		this.compression = commandMaster.compression;
+		this.payloadSharing = commandMaster.payloadSharing;
+		this.streamedPayloadSharing = commandMaster.streamedPayloadSharing;
+		this.spillThreshold = commandMaster.spillThreshold;
+		this.localHandOver = commandMaster.localHandOver;
+		this.verifySerializability = commandMaster.verifySerializability;
 	}
 
 	public void update(CommandSlave commandSlave) {
@@ -44,5 +65,12 @@ public class Configuration {
 		this.masterHost = commandSlave.masterhost;
 		this.masterPort = commandSlave.masterport;
 		this.numWorkers = commandSlave.numWorkers;
+		this.streamSerialization = commandSlave.streamSerialization;
+		this.compression = commandSlave.compression;
+		this.payloadSharing = commandSlave.payloadSharing;
+		this.streamedPayloadSharing = commandSlave.streamedPayloadSharing;
+		this.spillThreshold = commandSlave.spillThreshold;
+		this.localHandOver = commandSlave.localHandOver;
+		this.verifySerializability = commandSlave.verifySerializability;
 	}
 }
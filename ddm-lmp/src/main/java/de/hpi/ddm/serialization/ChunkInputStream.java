@@ -0,0 +1,132 @@
+package de.hpi.ddm.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import akka.util.ByteIterator;
+import akka.util.ByteString;
+
+/**
+ * An input stream over a queue of chunks that arrive while the stream is read.
+ * The chunks are added by one thread, e.g., an actor that receives them, and read by another thread that may block,
+ * e.g., a Kryo {@code Input} that deserializes them. Each chunk carries a callback that runs as soon as the reader takes
+ * the chunk, so that the sender of the chunks can be acknowledged only once the reader keeps up; this way, only a few
+ * chunks are queued at any time.
+ */
+public class ChunkInputStream extends InputStream {
+
+	private static final Object END = new Object();
+
+	private static class Chunk {
+		private final ByteString bytes;
+		private final Runnable onTaken;
+
+		private Chunk(ByteString bytes, Runnable onTaken) {
+			this.bytes = bytes;
+			this.onTaken = onTaken;
+		}
+	}
+
+	private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>(); // Chunks, END, or the Throwable that failed the stream
+	private boolean closed = false;
+
+	private ByteIterator current = null; // The chunk that is read
+	private boolean ended = false;
+
+	/**
+	 * Append a chunk to the stream.
+	 * @param bytes the bytes of the chunk
+	 * @param onTaken runs when the reader takes the chunk, or at once if the stream is already closed
+	 */
+	public synchronized void add(ByteString bytes, Runnable onTaken) {
+		if (this.closed)
+			onTaken.run();
+		else
+			this.chunks.add(new Chunk(bytes, onTaken));
+	}
+
+	/**
+	 * End the stream after the chunks added so far.
+	 */
+	public void complete() {
+		this.chunks.add(END);
+	}
+
+	/**
+	 * End the stream with an error after the chunks added so far; the reader gets an {@link IOException}.
+	 * @param cause the reason of the failure
+	 */
+	public void fail(Throwable cause) {
+		this.chunks.add(cause);
+	}
+
+	/**
+	 * Close the stream, e.g., because the reader is done with it. Chunks that are still queued or added later are
+	 * dropped, but their callbacks run anyway.
+	 */
+	@Override
+	public synchronized void close() {
+		this.closed = true;
+		for (Object element = this.chunks.poll(); element != null; element = this.chunks.poll())
+			if (element instanceof Chunk)
+				((Chunk) element).onTaken.run();
+	}
+
+	@Override
+	public int read() throws IOException {
+		ByteIterator iterator = this.next();
+		return (iterator == null) ? -1 : (iterator.next() & 0xff);
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0)
+			return 0;
+
+		// Kryo's Input copes with short reads, so we never wait for more than the current chunk
+		ByteIterator iterator = this.next();
+		if (iterator == null)
+			return -1;
+
+		int n = Math.min(length, iterator.len());
+		iterator.getBytes(bytes, offset, n);
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return (this.current == null) ? 0 : this.current.len();
+	}
+
+	private ByteIterator next() throws IOException {
+		while (this.current == null || !this.current.hasNext()) {
+			if (this.ended)
+				return null;
+
+			Object element;
+			try {
+				element = this.chunks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the next chunk.");
+			}
+
+			if (element == END) {
+				this.ended = true;
+				return null;
+			}
+			if (element instanceof Throwable) {
+				this.ended = true;
+				throw new IOException("The stream of chunks failed.", (Throwable) element);
+			}
+
+			Chunk chunk = (Chunk) element;
+			chunk.onTaken.run();
+			this.current = chunk.bytes.iterator();
+		}
+		return this.current;
+	}
+}
@@ -0,0 +1,114 @@
+package de.hpi.ddm.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import akka.stream.QueueOfferResult;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import akka.util.ByteString;
+
+/**
+ * An output stream that hands everything written to it as chunks of a fixed size to a stream.
+ * The written bytes are collected in a chunk buffer, which is handed over whenever it is full, so the chunks do not
+ * depend on how the writer, e.g., a Kryo {@code Output} or a compressor, splits its writes. Handing over a chunk blocks
+ * until the stream accepts it, which lets a slow receiver throttle the writer; the writer should therefore run on a
+ * thread that may block. Failing the stream with {@link #fail(Throwable)} releases a writer that waits, e.g., for a
+ * receiver that is gone. Because the chunks depend only on the written bytes, writing the same bytes again and skipping
+ * the chunks that the receiver already has resumes a stream.
+ */
+public class ChunkOutputStream extends OutputStream {
+
+	private final SourceQueueWithComplete<ByteString> chunks;
+	private final int chunkSize;
+	private int skip; // The number of chunks that are dropped instead of handed over
+	private final CompletableFuture<Object> failure = new CompletableFuture<>(); // Completed exceptionally when the stream is failed
+
+	private byte[] chunk; // The chunk that is filled
+	private int position = 0;
+
+	/**
+	 * Construct a new {@code ChunkOutputStream}.
+	 * @param chunks the queue of the stream that receives the chunks; it must backpressure
+	 * @param chunkSize the number of bytes per chunk; only the last chunk may be smaller
+	 */
+	public ChunkOutputStream(SourceQueueWithComplete<ByteString> chunks, int chunkSize) {
+		this(chunks, chunkSize, 0);
+	}
+
+	/**
+	 * Construct a new {@code ChunkOutputStream} that hands over the chunks from a certain one on.
+	 * @param chunks the queue of the stream that receives the chunks; it must backpressure
+	 * @param chunkSize the number of bytes per chunk; only the last chunk may be smaller
+	 * @param firstChunk the number of leading chunks that are dropped, e.g., because the receiver has them already
+	 */
+	public ChunkOutputStream(SourceQueueWithComplete<ByteString> chunks, int chunkSize, int firstChunk) {
+		this.chunks = chunks;
+		this.chunkSize = chunkSize;
+		this.skip = firstChunk;
+		this.chunk = new byte[chunkSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		this.write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			int n = Math.min(length, this.chunkSize - this.position);
+			System.arraycopy(bytes, offset, this.chunk, this.position, n);
+			this.position += n;
+			offset += n;
+			length -= n;
+
+			if (this.position == this.chunkSize)
+				this.emit();
+		}
+	}
+
+	private void emit() throws IOException {
+		if (this.skip > 0) {
+			this.skip--;
+			this.position = 0;
+			return;
+		}
+
+		// The stream owns the handed over chunk, so the next one gets a new buffer
+		ByteString bytes = ByteString.fromArrayUnsafe(this.chunk, 0, this.position);
+		this.chunk = new byte[this.chunkSize];
+		this.position = 0;
+
+		Object result;
+		try {
+			result = CompletableFuture.anyOf(this.chunks.offer(bytes).toCompletableFuture(), this.failure).join();
+		} catch (CompletionException e) {
+			throw new IOException("The stream failed while writing a chunk.", e.getCause());
+		}
+		if (result != QueueOfferResult.enqueued())
+			throw new IOException("The stream did not accept a chunk: " + result);
+	}
+
+	/**
+	 * Hand over the last, possibly smaller chunk and complete the stream.
+	 * @throws IOException if the stream does not accept the last chunk
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.position > 0)
+			this.emit();
+		this.chunks.complete();
+	}
+
+	/**
+	 * Fail the stream instead of completing it, e.g., because the writer failed or the receiver is gone. A writer that
+	 * waits for the stream to take a chunk gets an {@code IOException}.
+	 * @param cause the reason of the failure
+	 */
+	public void fail(Throwable cause) {
+		this.failure.completeExceptionally(cause);
+		this.chunks.fail(cause);
+	}
+}
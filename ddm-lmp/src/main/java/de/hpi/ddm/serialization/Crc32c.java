@@ -0,0 +1,83 @@
+package de.hpi.ddm.serialization;
+
+import java.nio.ByteBuffer;
+
+import akka.util.ByteString;
+import scala.collection.Iterator;
+
+/**
+ * The CRC-32C (Castagnoli) checksum, which protects the chunks of large message transfers.
+ * Java 8 lacks {@code java.util.zip.CRC32C}, so this is a table driven implementation that processes eight bytes per
+ * step ("slicing-by-8").
+ */
+public class Crc32c {
+
+	private static final int POLYNOMIAL = 0x82F63B78; // Reversed Castagnoli polynomial
+
+	private static final int[][] TABLES = new int[8][256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			int crc = i;
+			for (int bit = 0; bit < 8; bit++)
+				crc = ((crc & 1) != 0) ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+			TABLES[0][i] = crc;
+		}
+		for (int i = 0; i < 256; i++)
+			for (int t = 1; t < 8; t++)
+				TABLES[t][i] = (TABLES[t - 1][i] >>> 8) ^ TABLES[0][TABLES[t - 1][i] & 0xff];
+	}
+
+	private static final int SCRATCH_SIZE = 8 * 1024;
+
+	/**
+	 * Calculate the checksum of a part of an array.
+	 * @param bytes the array
+	 * @param offset the start of the part
+	 * @param length the length of the part
+	 * @return the checksum
+	 */
+	public static int of(byte[] bytes, int offset, int length) {
+		return ~update(~0, bytes, offset, length);
+	}
+
+	/**
+	 * Calculate the checksum of a ByteString without copying it as a whole.
+	 * @param bytes the ByteString
+	 * @return the checksum
+	 */
+	public static int of(ByteString bytes) {
+		int crc = ~0;
+		byte[] scratch = null;
+		Iterator<ByteBuffer> buffers = bytes.asByteBuffers().iterator();
+		while (buffers.hasNext()) {
+			ByteBuffer buffer = buffers.next();
+			if (buffer.hasArray()) {
+				crc = update(crc, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				continue;
+			}
+
+			// The buffers of a ByteString are read-only, which hides their arrays
+			if (scratch == null)
+				scratch = new byte[Math.min(SCRATCH_SIZE, bytes.size())];
+			while (buffer.hasRemaining()) {
+				int n = Math.min(scratch.length, buffer.remaining());
+				buffer.get(scratch, 0, n);
+				crc = update(crc, scratch, 0, n);
+			}
+		}
+		return ~crc;
+	}
+
+	private static int update(int crc, byte[] bytes, int offset, int length) {
+		int end = offset + length;
+		for (; offset + 8 <= end; offset += 8) {
+			int low = crc ^ ((bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24);
+			crc = TABLES[7][low & 0xff] ^ TABLES[6][(low >>> 8) & 0xff] ^ TABLES[5][(low >>> 16) & 0xff] ^ TABLES[4][low >>> 24]
+					^ TABLES[3][bytes[offset + 4] & 0xff] ^ TABLES[2][bytes[offset + 5] & 0xff] ^ TABLES[1][bytes[offset + 6] & 0xff] ^ TABLES[0][bytes[offset + 7] & 0xff];
+		}
+		for (; offset < end; offset++)
+			crc = (crc >>> 8) ^ TABLES[0][(crc ^ bytes[offset]) & 0xff];
+		return crc;
+	}
+}
@@ -0,0 +1,61 @@
+package de.hpi.ddm.serialization;
+
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+
+import akka.serialization.SerializerWithStringManifest;
+import akka.util.ByteString;
+import de.hpi.ddm.actors.LargeMessageProxy;
+
+/**
+ * A binary serializer for the chunks that {@link LargeMessageProxy}s stream to each other.
+ * A chunk is written as its header fields followed by its raw bytes; on deserialization, the bytes stay a view on the
+ * received array, so a chunk is not copied again before it lands in the receive buffer of its transfer.
+ * The bindings of the chunk classes to this serializer are configured in the application.conf.
+ */
+public class LargeMessageProxySerializer extends SerializerWithStringManifest {
+
+	public static final int IDENTIFIER = 1734;
+
+	private static final String BYTES_CHUNK = "C";
+
+	private static final int BYTES_CHUNK_HEADER = 20;
+
+	@Override
+	public int identifier() {
+		return IDENTIFIER;
+	}
+
+	@Override
+	public String manifest(Object object) {
+		if (object instanceof LargeMessageProxy.BytesChunk)
+			return BYTES_CHUNK;
+		throw new IllegalArgumentException("Cannot serialize " + object.getClass().getName() + " with " + LargeMessageProxySerializer.class.getSimpleName());
+	}
+
+	@Override
+	public byte[] toBinary(Object object) {
+		if (object instanceof LargeMessageProxy.BytesChunk) {
+			LargeMessageProxy.BytesChunk chunk = (LargeMessageProxy.BytesChunk) object;
+			ByteBuffer buffer = ByteBuffer.allocate(BYTES_CHUNK_HEADER + chunk.getBytes().size());
+			buffer.putLong(chunk.getTransferID());
+			buffer.putInt(chunk.getAttempt());
+			buffer.putInt(chunk.getSequenceNumber());
+			buffer.putInt(chunk.getChecksum());
+			chunk.getBytes().copyToBuffer(buffer);
+			return buffer.array();
+		}
+		throw new IllegalArgumentException("Cannot serialize " + object.getClass().getName() + " with " + LargeMessageProxySerializer.class.getSimpleName());
+	}
+
+	@Override
+	public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		switch (manifest) {
+			case BYTES_CHUNK:
+				return new LargeMessageProxy.BytesChunk(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt(), ByteString.fromArrayUnsafe(bytes, BYTES_CHUNK_HEADER, bytes.length - BYTES_CHUNK_HEADER));
+			default:
+				throw new NotSerializableException("Unknown manifest " + manifest + " for " + LargeMessageProxySerializer.class.getSimpleName());
+		}
+	}
+}
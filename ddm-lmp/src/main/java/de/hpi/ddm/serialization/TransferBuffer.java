@@ -0,0 +1,217 @@
+package de.hpi.ddm.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferInputStream;
+import com.esotericsoftware.kryo.io.Input;
+
+import akka.util.ByteString;
+
+/**
+ * The serialized and encoded message of a transfer, which a large message proxy sends chunk by chunk or receives into.
+ * A message that a proxy serialized itself is held as a {@link ByteString}. A received message is written into a byte
+ * array or, if it is larger than the spill threshold, into a memory-mapped temporary file, so that the size of the
+ * messages that a proxy can receive is not limited by its heap. The temporary file is deleted right after it is mapped;
+ * its pages stay available until the mapping is garbage collected.
+ */
+public abstract class TransferBuffer {
+
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Wrap the bytes of a message that is going to be sent.
+	 * @param bytes the serialized and encoded message
+	 * @return a read-only buffer
+	 */
+	public static TransferBuffer of(ByteString bytes) {
+		return new Bytes(bytes);
+	}
+
+	/**
+	 * Allocate a buffer for a message that is going to be received.
+	 * @param length the number of bytes of the message
+	 * @param spillThreshold the number of bytes above which the buffer is a memory-mapped file instead of a byte array
+	 * @return a buffer of the given length
+	 * @throws IOException if the temporary file cannot be created or mapped
+	 */
+	public static TransferBuffer allocate(int length, long spillThreshold) throws IOException {
+		if (length <= spillThreshold)
+			return new Array(new byte[length]);
+
+		Path file = Files.createTempFile("ddm-transfer-", ".bin");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return new Mapped(channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+		} finally {
+			try {
+				Files.delete(file);
+			} catch (IOException e) {
+				file.toFile().deleteOnExit(); // e.g., on file systems that do not delete mapped files
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes of the message
+	 */
+	public abstract int size();
+
+	/**
+	 * @param index the position of a byte
+	 * @return the byte at the given position
+	 */
+	public abstract byte get(int index);
+
+	/**
+	 * Take a part of the message, e.g., a chunk that is going to be sent.
+	 * @param from the first position of the part
+	 * @param to the position after the part
+	 * @return a view on the part if the buffer is on the heap; a copy of the part otherwise
+	 */
+	public abstract ByteString slice(int from, int to);
+
+	/**
+	 * Write received bytes into the buffer.
+	 * @param offset the position of the first byte
+	 * @param bytes the bytes to write
+	 */
+	public void put(int offset, ByteString bytes) {
+		throw new UnsupportedOperationException("The buffer is read-only.");
+	}
+
+	/**
+	 * @param offset the position of the first byte to read
+	 * @return a stream over the message from the given position on
+	 */
+	public abstract InputStream inputStream(int offset);
+
+	/**
+	 * @param offset the position of the first byte to read
+	 * @return a Kryo input that reads the message from the given position on without copying it first
+	 */
+	public Input input(int offset) {
+		return new Input(this.inputStream(offset), STREAM_BUFFER_SIZE);
+	}
+
+	private static class Bytes extends TransferBuffer {
+
+		private final ByteString bytes;
+
+		private Bytes(ByteString bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int size() {
+			return this.bytes.size();
+		}
+
+		@Override
+		public byte get(int index) {
+			return this.bytes.apply(index);
+		}
+
+		@Override
+		public ByteString slice(int from, int to) {
+			return this.bytes.slice(from, to);
+		}
+
+		@Override
+		public InputStream inputStream(int offset) {
+			return this.bytes.drop(offset).iterator().asInputStream();
+		}
+	}
+
+	private static class Array extends TransferBuffer {
+
+		private final byte[] bytes;
+
+		private Array(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int size() {
+			return this.bytes.length;
+		}
+
+		@Override
+		public byte get(int index) {
+			return this.bytes[index];
+		}
+
+		@Override
+		public ByteString slice(int from, int to) {
+			return ByteString.fromArrayUnsafe(this.bytes, from, to - from); // the received bytes are never modified, so chunks can share them
+		}
+
+		@Override
+		public void put(int offset, ByteString bytes) {
+			bytes.copyToBuffer(ByteBuffer.wrap(this.bytes, offset, bytes.size()));
+		}
+
+		@Override
+		public InputStream inputStream(int offset) {
+			return new ByteArrayInputStream(this.bytes, offset, this.bytes.length - offset);
+		}
+
+		@Override
+		public Input input(int offset) {
+			return new Input(this.bytes, offset, this.bytes.length - offset);
+		}
+	}
+
+	private static class Mapped extends TransferBuffer {
+
+		private final MappedByteBuffer buffer;
+
+		private Mapped(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int size() {
+			return this.buffer.capacity();
+		}
+
+		@Override
+		public byte get(int index) {
+			return this.buffer.get(index);
+		}
+
+		@Override
+		public ByteString slice(int from, int to) {
+			return ByteString.fromByteBuffer(this.region(from, to));
+		}
+
+		@Override
+		public void put(int offset, ByteString bytes) {
+			bytes.copyToBuffer(this.region(offset, offset + bytes.size()));
+		}
+
+		@Override
+		public InputStream inputStream(int offset) {
+			return new ByteBufferInputStream(this.region(offset, this.size()));
+		}
+
+		@Override
+		public Input input(int offset) {
+			return new ByteBufferInput(this.region(offset, this.size()));
+		}
+
+		// The position and limit of the mapped buffer itself are never changed, so that regions can be taken concurrently
+		private ByteBuffer region(int from, int to) {
+			ByteBuffer region = this.buffer.duplicate();
+			region.limit(to).position(from);
+			return region.slice();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package de.hpi.ddm.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The codecs for the bytes of a large message transfer.
+ * The bytes of a transfer start with a one byte header that names the codec of the remaining bytes. The sender picks
+ * the codec with {@link #probe(byte[], int, int)} on the first bytes of the serialized message: a byte histogram whose
+ * entropy is well below eight bits per byte promises that compression pays off, whereas random payloads, such as a
+ * randomized BloomFilter, are sent raw so that they do not pay for a compressor that cannot shrink them.
+ */
+public enum TransferCodec {
+
+	RAW((byte) 0),
+	DEFLATE((byte) 1);
+
+	private static final double COMPRESSIBLE_ENTROPY = 7.0;	// Bits per byte below which we compress
+	private static final int PROBE_SIZE = 64 * 1024;		// The maximum number of bytes that the probe looks at
+	private static final int BUFFER_SIZE = 64 * 1024;		// The buffer size of the (de)compressing streams
+
+	private final byte header;
+
+	TransferCodec(byte header) {
+		this.header = header;
+	}
+
+	/**
+	 * @return the header byte that announces this codec
+	 */
+	public byte getHeader() {
+		return this.header;
+	}
+
+	/**
+	 * Resolve the codec that a header byte announces.
+	 * @param header the first byte of a transfer
+	 * @return the codec of the transfer
+	 * @throws IOException if the header names no known codec
+	 */
+	public static TransferCodec of(int header) throws IOException {
+		for (TransferCodec codec : values())
+			if (codec.header == header)
+				return codec;
+		throw new IOException("Unknown transfer codec " + header);
+	}
+
+	/**
+	 * Choose the codec for a transfer from a sample of its bytes.
+	 * @param bytes the array that holds the sample
+	 * @param offset the start of the sample
+	 * @param length the length of the sample
+	 * @return {@link #DEFLATE} if the sample's byte entropy is low, {@link #RAW} otherwise
+	 */
+	public static TransferCodec probe(byte[] bytes, int offset, int length) {
+		length = Math.min(length, PROBE_SIZE);
+		if (length == 0)
+			return RAW;
+
+		int[] counts = new int[256];
+		for (int i = offset; i < offset + length; i++)
+			counts[bytes[i] & 0xff]++;
+
+		double entropy = 0;
+		for (int count : counts) {
+			if (count == 0)
+				continue;
+			double p = (double) count / length;
+			entropy -= p * Math.log(p);
+		}
+		entropy /= Math.log(2);
+
+		return (entropy < COMPRESSIBLE_ENTROPY) ? DEFLATE : RAW;
+	}
+
+	/**
+	 * Encode a whole message; the header is not included.
+	 * @param bytes the message bytes
+	 * @return the encoded bytes; the given array if this codec is {@link #RAW}
+	 * @throws IOException if the encoding fails
+	 */
+	public byte[] encode(byte[] bytes) throws IOException {
+		if (this == RAW)
+			return bytes;
+
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(bytes.length / 2 + 64);
+		try (OutputStream out = this.wrap(encoded)) {
+			out.write(bytes);
+		}
+		return encoded.toByteArray();
+	}
+
+	/**
+	 * Wrap a stream, so that the bytes written to the wrapper get encoded; the header is not written.
+	 * Closing the wrapper finishes the encoding and closes the stream.
+	 * @param out the stream that receives the encoded bytes
+	 * @return the stream to write the message bytes to
+	 */
+	public OutputStream wrap(OutputStream out) {
+		switch (this) {
+			case DEFLATE:
+				final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+				return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							deflater.end();
+						}
+					}
+				};
+			default:
+				return out;
+		}
+	}
+
+	/**
+	 * Wrap a stream, so that reading the wrapper yields the decoded bytes; the header must already be read.
+	 * @param in the stream of encoded bytes
+	 * @return the stream to read the message bytes from
+	 */
+	public InputStream wrap(InputStream in) {
+		switch (this) {
+			case DEFLATE:
+				final Inflater inflater = new Inflater();
+				return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							inflater.end();
+						}
+					}
+				};
+			default:
+				return in;
+		}
+	}
+
+	/**
+	 * Wrap the stream of a transfer, so that the header and the encoded message bytes are written to it.
+	 * The codec is {@link #RAW} or, if compression is enabled, chosen by probing the first write to the wrapper.
+	 * Closing the wrapper finishes the encoding and closes the stream.
+	 * @param out the stream of the transfer
+	 * @param compress whether the codec may compress
+	 * @return the stream to write the message bytes to
+	 */
+	public static OutputStream encoder(OutputStream out, boolean compress) {
+		return new AdaptiveOutputStream(out, compress);
+	}
+
+	/**
+	 * Read the header of a transfer and wrap its stream, so that reading the wrapper yields the message bytes.
+	 * @param in the stream of the transfer
+	 * @return the stream to read the message bytes from
+	 * @throws IOException if the header cannot be read or names no known codec
+	 */
+	public static InputStream decoder(InputStream in) throws IOException {
+		int header = in.read();
+		if (header < 0)
+			throw new EOFException("The transfer is empty.");
+		return of(header).wrap(in);
+	}
+
+	private static class AdaptiveOutputStream extends OutputStream {
+
+		private final OutputStream out;
+		private final boolean compress;
+		private OutputStream encoder = null; // Chosen on the first write
+
+		private AdaptiveOutputStream(OutputStream out, boolean compress) {
+			this.out = out;
+			this.compress = compress;
+		}
+
+		private void choose(TransferCodec codec) throws IOException {
+			this.out.write(codec.header);
+			this.encoder = codec.wrap(this.out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (this.encoder == null)
+				this.choose(this.compress ? probe(bytes, offset, length) : RAW);
+			this.encoder.write(bytes, offset, length);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (this.encoder != null)
+				this.encoder.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.encoder == null)
+				this.choose(RAW);
+			this.encoder.close();
+		}
+	}
+}
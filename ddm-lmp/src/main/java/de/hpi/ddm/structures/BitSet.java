@@ -5,7 +5,7 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
-public class BitSet implements Cloneable, Serializable {
+public class BitSet implements Bits, Cloneable, Serializable {
 
 	private static final long serialVersionUID = 3988558361682959287L;
 	
@@ -55,26 +55,24 @@ public class BitSet implements Cloneable, Serializable {
 	}
 
 	public static BitSet fromBinary(ByteBuffer buffer) {
-		long[] words = new long[buffer.getInt()];
-		for (int i = 0; i < words.length; i++)
-			words[i] = buffer.getLong();
-		return new BitSet(words);
+		BitSet set = new BitSet();
+		set.words = new long[buffer.getInt()];
+		buffer.asLongBuffer().get(set.words); // A bulk copy instead of one getLong per word
+		buffer.position(buffer.position() + set.words.length * BYTES_PER_WORD);
+		return set;
 	}
 
 	public byte[] toBinary() {
 		byte[] bytes = new byte[this.binarySize()];
-		ByteBuffer buffer = ByteBuffer.wrap(bytes);
-		
-		buffer.putInt(this.words.length);
-		for (int i = 0; i < this.words.length; i++)
-			buffer.putLong(this.words[i]);
+		this.toBinary(ByteBuffer.wrap(bytes));
 		return bytes;
 	}
 	
+	@Override
 	public void toBinary(ByteBuffer buffer) {
 		buffer.putInt(this.words.length);
-		for (int i = 0; i < this.words.length; i++)
-			buffer.putLong(this.words[i]);
+		buffer.asLongBuffer().put(this.words); // A bulk copy instead of one putLong per word
+		buffer.position(buffer.position() + this.words.length * BYTES_PER_WORD);
 	}
 	
 	/**
@@ -82,6 +80,7 @@ public class BitSet implements Cloneable, Serializable {
 	 * The byte size is a 4 byte integer to encode the number of words in this {@code BitSet} plus 8 bytes per word.
 	 * @return the binary size of this object
 	 */
+	@Override
 	public int binarySize() {
 		return 4 + this.words.length * BYTES_PER_WORD;
 	}
@@ -100,6 +99,7 @@ public class BitSet implements Cloneable, Serializable {
 	 * Set the bit at the specified index to {@code true}.
 	 * @param bitIndex to be set
 	 */
+	@Override
 	public void set(int bitIndex) {
 		int wordIndex = wordIndex(bitIndex);
 		
@@ -148,15 +148,22 @@ public class BitSet implements Cloneable, Serializable {
 	 * Set the bit at the specified index to {@code false}.
 	 * @param bitIndex to be cleared
 	 */
+	@Override
 	public void clear(int bitIndex) {
 		int wordIndex = wordIndex(bitIndex);
 		
 		this.words[wordIndex] &= ~(1L << bitIndex);
 	}
 
+	@Override
+	public void xorWord(int wordIndex, long word) {
+		this.words[wordIndex] ^= word;
+	}
+
 	/**
 	 * Set all the bits in this BitSet to {@code false}.
 	 */
+	@Override
 	public void clear() {
 		for (int i = 0; i < this.words.length; i++)
 			this.words[i] = 0;
@@ -168,6 +175,7 @@ public class BitSet implements Cloneable, Serializable {
 	 * @param bitIndex to be checked
 	 * @return the value of the bit with the specified index
 	 */
+	@Override
 	public boolean get(int bitIndex) {
 		int wordIndex = wordIndex(bitIndex);
 		
@@ -321,14 +329,21 @@ public class BitSet implements Cloneable, Serializable {
 	 * Calculate the "physical length" of this {@code BitSet}, which is the length of the internal words array.
 	 * @return length of the internal words array
 	 */
+	@Override
 	public int physicalLength() {
 		return this.words.length;
 	}
+
+	@Override
+	public long getWord(int wordIndex) {
+		return this.words[wordIndex];
+	}
 	
 	/**
 	 * Calculate the number of bits set to {@code true} in this {@code BitSet}.
 	 * @return the number of bits set to {@code true} in this {@code BitSet}
 	 */
+	@Override
 	public int cardinality() {
 		int cardinality = 0;
 		for (int i = 0; i < this.words.length; i++)
@@ -393,6 +408,19 @@ public class BitSet implements Cloneable, Serializable {
 			this.words[i] |= set.words[i];
 	}
 
+	@Override
+	public void or(Bits bits) {
+		if (bits instanceof BitSet) {
+			this.or((BitSet) bits);
+			return;
+		}
+		if (this.words.length != bits.physicalLength())
+			throw new RuntimeException(BitSet.class.getName() + " can operate only with " + Bits.class.getName() + " of same size.\n This words length was " + this.words.length + " while the other's word length was " + bits.physicalLength() + ".");
+
+		for (int i = 0; i < this.words.length; i++)
+			this.words[i] |= bits.getWord(i);
+	}
+
 	/**
 	 * Perform a logical <b>XOR</b> of this target {@code BitSet} with the argument {@code BitSet}.
 	 * This {@code BitSet} is modified so that each bit in it has the value {@code true} if either its initial value or the value of the corresponding bit in the specified {@code BitSet} was {@code true} and one of the two bits was {@code false}.
@@ -424,12 +452,43 @@ public class BitSet implements Cloneable, Serializable {
 			this.words[i] &= ~set.words[i];
 	}
 
+	@Override
 	public void randomize() {
 		Random rand = new Random();
 		for (int i = 0; i < this.words.length; i++)
 			this.words[i] = rand.nextLong();
 	}
 	
+	/**
+	 * Calculate a 64 bit hash of this {@code BitSet} whose bits are all well mixed, e.g., to derive the probes of a {@link BloomFilter}.
+	 * The words are mixed like the blocks of MurmurHash3; unlike {@link #hashCode()}, this hash does not cancel out equal words.
+	 * @return the 64 bit hash of this {@code BitSet}
+	 */
+	public long longHashCode() {
+		long h = 0x9e3779b97f4a7c15L;
+		for (int i = 0; i < this.words.length; i++) {
+			long k = this.words[i] * 0x87c37b91114253d5L;
+			k = Long.rotateLeft(k, 31) * 0x4cf5ad432745937fL;
+			h ^= k;
+			h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+		}
+		return mix(h ^ this.words.length);
+	}
+
+	/**
+	 * Spread the bits of the value over the whole value (the finalizer of MurmurHash3).
+	 * @param value to be mixed
+	 * @return the mixed value
+	 */
+	static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
 	@Override
 	public int hashCode() {
 		long h = 1234;
@@ -0,0 +1,97 @@
+package de.hpi.ddm.structures;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed number of bits, stored in 64 bit words, on which a {@link BloomFilter} operates.
+ * The binary form of all implementations is the same: a 4 byte integer with the number of words and 8 big-endian bytes per
+ * word, so bits that one implementation wrote can be read by any other, e.g., with {@link BitSet#fromBinary(ByteBuffer)}.
+ */
+public interface Bits {
+
+	/**
+	 * @return the number of words that store the bits
+	 */
+	int physicalLength();
+
+	/**
+	 * @param wordIndex of the word to be returned
+	 * @return the word with the given index, which stores the bits from {@code 64 * wordIndex} on
+	 */
+	long getWord(int wordIndex);
+
+	/**
+	 * Return the value of the bit at the specified index.
+	 * @param bitIndex to be checked
+	 * @return the value of the bit with the specified index
+	 */
+	boolean get(int bitIndex);
+
+	/**
+	 * Set the bit at the specified index to {@code true}.
+	 * @param bitIndex to be set
+	 */
+	void set(int bitIndex);
+
+	/**
+	 * Set the bit at the specified index to {@code true} if it is {@code false}. Implementations that are shared between
+	 * threads do so atomically, so that only one of several threads that set the same bit gets {@code true}.
+	 * @param bitIndex to be set
+	 * @return {@code true} if the bit was {@code false}; {@code false} if it was set already
+	 */
+	default boolean setIfClear(int bitIndex) {
+		if (this.get(bitIndex))
+			return false;
+
+		this.set(bitIndex);
+		return true;
+	}
+
+	/**
+	 * Set the bit at the specified index to {@code false}.
+	 * @param bitIndex to be cleared
+	 */
+	void clear(int bitIndex);
+
+	/**
+	 * Set all the bits to {@code false}.
+	 */
+	void clear();
+
+	/**
+	 * Perform a logical <b>XOR</b> of one word with the given word, i.e., flip the bits of the word that are set in the
+	 * given word.
+	 * @param wordIndex of the word to be changed
+	 * @param word the bits to be flipped
+	 */
+	void xorWord(int wordIndex, long word);
+
+	/**
+	 * Calculate the number of bits set to {@code true}.
+	 * @return the number of bits set to {@code true}
+	 */
+	int cardinality();
+
+	/**
+	 * Perform a logical <b>OR</b> of these bits with the given bits, which must have the same physical length.
+	 * @param bits to perform the or-operation with
+	 */
+	void or(Bits bits);
+
+	/**
+	 * Set all words to random values.
+	 */
+	void randomize();
+
+	/**
+	 * Calculate the size in bytes of the binary form of these bits.
+	 * @return 4 bytes for the number of words plus 8 bytes per word
+	 */
+	int binarySize();
+
+	/**
+	 * Write the binary form of these bits into the buffer.
+	 * @param buffer to write to
+	 */
+	void toBinary(ByteBuffer buffer);
+}
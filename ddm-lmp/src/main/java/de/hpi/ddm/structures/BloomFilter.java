@@ -1,95 +1,373 @@
 package de.hpi.ddm.structures;
 
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 
 import de.hpi.ddm.configuration.ConfigurationSingleton;
 
+/**
+ * A Bloom filter over {@link BitSet}s that probes k bits per element. The probes are derived by double hashing from the
+ * 64 bit {@link BitSet#longHashCode()} of an element, i.e., the i-th probe is {@code h1 + i * h2}, which is as good as k
+ * independent hash functions. Probes are mapped onto the bits by multiplication instead of a modulo, so that all bits are
+ * equally likely. The bits are a {@link BitSet} on the heap or, for huge BloomFilters, an {@link OffHeapBitSet}.
+ * A BloomFilter on a {@link ConcurrentBitSet} can be shared by many threads: adds and merges are lock-free and tests
+ * are wait-free.
+ * A BloomFilter has a version, so that copies of it, e.g., on the workers, can be kept in sync with {@link Delta}s: the
+ * original tracks the words that changed since its last delta, and {@link #delta()} turns them into the next version.
+ */
 public class BloomFilter {
 
 	public static int DEFAULT_SIZE = 8 * 1024 * 1024 * ConfigurationSingleton.get().getDataSize();
-	
-	private final BitSet bits;
+	public static int DEFAULT_HASHES = 7; // Optimal for about ten bits per element, i.e., a false positive probability of about 1%
+
+	private static final int BATCH_SIZE = 4096; // The number of elements whose probes are sorted together in bulk operations
+
+	private final Bits bits;
 	private final int size;
-	
+	private final int hashes;
+	private long version = 0;
+
+	private transient CompressedBitSet changes = null; // The bits that were set since the last delta, if changes are tracked
+
 	public BloomFilter() {
 		this(DEFAULT_SIZE);
 	}
-	
+
 	public BloomFilter(int bitSize) {
 		this(bitSize, false);
 	}
-	
+
 	public BloomFilter(int bitSize, boolean randomize) {
+		this(bitSize, DEFAULT_HASHES, randomize);
+	}
+
+	public BloomFilter(int bitSize, int hashes, boolean randomize) {
+		if (bitSize <= 0 || hashes <= 0)
+			throw new IllegalArgumentException("A BloomFilter needs at least one bit and one hash, but got " + bitSize + " bits and " + hashes + " hashes.");
+
 		this.bits = new BitSet(bitSize);
 		this.size = bitSize;
-		
+		this.hashes = hashes;
+
 		if (randomize)
 			this.bits.randomize();
 	}
-	
+
+	/**
+	 * Create a BloomFilter on the given bits, e.g., on an {@link OffHeapBitSet}, which keeps the bits they have.
+	 * @param bits the bits that store the elements; all of their words are used
+	 * @param hashes the number of bits that are probed per element
+	 */
+	public BloomFilter(Bits bits, int hashes) {
+		if (hashes <= 0)
+			throw new IllegalArgumentException("A BloomFilter needs at least one hash, but got " + hashes + " hashes.");
+
+		this.bits = bits;
+		this.size = (int) Math.min(Integer.MAX_VALUE, (long) bits.physicalLength() * 64);
+		this.hashes = hashes;
+	}
+
+	private BloomFilter(Bits bits, int size, int hashes, long version) {
+		this.bits = bits;
+		this.size = size;
+		this.hashes = hashes;
+		this.version = version;
+	}
+
+	/**
+	 * Create a BloomFilter that is sized for the expected number of elements and the target false positive probability.
+	 * @param expectedElements the number of elements that are going to be added
+	 * @param falsePositiveProbability the probability that the BloomFilter contains an element that was not added
+	 * @return an empty BloomFilter with the optimal number of bits and hashes
+	 */
+	public static BloomFilter withExpectedElements(long expectedElements, double falsePositiveProbability) {
+		int bitSize = optimalBitSize(expectedElements, falsePositiveProbability);
+		return new BloomFilter(bitSize, optimalHashes(expectedElements, bitSize), false);
+	}
+
+	/**
+	 * Calculate the number of bits m = -n ln(p) / ln(2)^2 that n elements need for a false positive probability of p.
+	 * @param expectedElements the number of elements n
+	 * @param falsePositiveProbability the false positive probability p
+	 * @return the optimal number of bits
+	 * @throws IllegalArgumentException if the BloomFilter would need more than {@code Integer.MAX_VALUE} bits
+	 */
+	public static int optimalBitSize(long expectedElements, double falsePositiveProbability) {
+		if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1)
+			throw new IllegalArgumentException("The false positive probability must be in (0, 1), but was " + falsePositiveProbability + ".");
+
+		double bitSize = Math.ceil(-Math.max(1, expectedElements) * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+		if (bitSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("A BloomFilter for " + expectedElements + " elements at " + falsePositiveProbability + " would need " + (long) bitSize + " bits.");
+		return (int) bitSize;
+	}
+
+	/**
+	 * Calculate the number of hashes k = m/n ln(2) that minimizes the false positive probability of n elements in m bits.
+	 * @param expectedElements the number of elements n
+	 * @param bitSize the number of bits m
+	 * @return the optimal number of hashes
+	 */
+	public static int optimalHashes(long expectedElements, int bitSize) {
+		return Math.max(1, (int) Math.round((double) bitSize / Math.max(1, expectedElements) * Math.log(2)));
+	}
+
 	/**
-	 * Retrieves the BitSet that stores the elements of this BloomFilter
-	 * @return the BitSet that stores the elements of this BloomFilter
+	 * Retrieves the bits that store the elements of this BloomFilter
+	 * @return the bits that store the elements of this BloomFilter
 	 */
-	public BitSet getBits() {
+	public Bits getBits() {
 		return this.bits;
 	}
-	
+
+	/**
+	 * @return the number of bits of this BloomFilter
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of bits that this BloomFilter probes per element
+	 */
+	public int getHashes() {
+		return this.hashes;
+	}
+
+	/**
+	 * @return the number of deltas that this BloomFilter has produced or received since it was created
+	 */
+	public synchronized long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Start tracking the changes of this BloomFilter, so that they can be sent to its copies with {@link #delta()}.
+	 * Tracking is not thread-safe, so it needs a single writer even if the bits are a {@link ConcurrentBitSet}.
+	 */
+	public void trackChanges() {
+		if (this.changes == null)
+			this.changes = new CompressedBitSet(this.size);
+	}
+
+	/**
+	 * Take the changes since the last delta as the next version of this BloomFilter.
+	 * @return the words that changed, as the XOR of their old and new values, or null if nothing changed
+	 * @throws IllegalStateException if changes are not tracked
+	 */
+	public synchronized Delta delta() {
+		if (this.changes == null)
+			throw new IllegalStateException("The changes of this " + BloomFilter.class.getSimpleName() + " are not tracked.");
+		if (this.changes.isEmpty())
+			return null;
+
+		int[] wordIndexes = new int[16];
+		long[] words = new long[16];
+		int length = 0;
+		for (int bit = this.changes.nextSetBit(0); bit >= 0; ) {
+			int wordIndex = bit >>> 6;
+			if (length == wordIndexes.length) {
+				wordIndexes = Arrays.copyOf(wordIndexes, 2 * length);
+				words = Arrays.copyOf(words, 2 * length);
+			}
+			wordIndexes[length] = wordIndex;
+			words[length++] = this.changes.getWord(wordIndex);
+
+			if (wordIndex + 1 >= this.changes.physicalLength())
+				break;
+			bit = this.changes.nextSetBit((wordIndex + 1) << 6);
+		}
+		this.changes.clear();
+
+		return new Delta(this.version, ++this.version, Arrays.copyOf(wordIndexes, length), Arrays.copyOf(words, length));
+	}
+
+	/**
+	 * Apply a delta of the original BloomFilter to this copy. Actors that share one copy, e.g., because the proxy hands
+	 * them the same deserialized instance, can all apply the same delta: it changes the copy only once.
+	 * @param delta the delta to be applied
+	 * @return true if this copy is at or after the version of the delta; false if it misses an earlier delta
+	 */
+	public synchronized boolean apply(Delta delta) {
+		if (delta.getToVersion() <= this.version)
+			return true;
+		if (delta.getFromVersion() != this.version)
+			return false;
+
+		for (int i = 0; i < delta.wordIndexes.length; i++)
+			this.bits.xorWord(delta.wordIndexes[i], delta.words[i]);
+		this.version = delta.getToVersion();
+		return true;
+	}
+
+	/**
+	 * Copy this BloomFilter into a {@link BitSet} on the heap, e.g., to send it while this BloomFilter keeps changing.
+	 * @return a BloomFilter with the same elements and version, whose changes are not tracked
+	 * @throws IllegalStateException if there are changes that were not taken as a delta yet
+	 */
+	public synchronized BloomFilter snapshot() {
+		if (this.changes != null && !this.changes.isEmpty())
+			throw new IllegalStateException("The changes of this " + BloomFilter.class.getSimpleName() + " must be taken as a delta before a snapshot.");
+
+		BitSet bits = new BitSet(this.size);
+		bits.or(this.bits);
+		return new BloomFilter(bits, this.size, this.hashes, this.version);
+	}
+
 	/**
 	 * Merge all elements of the other BloomFilter into this BloomFilter.
 	 * @param other the other BloomFilter whose elements are to be added
 	 */
 	public void merge(BloomFilter other) {
+		if (this.hashes != other.hashes)
+			throw new RuntimeException(BloomFilter.class.getName() + " can merge only with " + BloomFilter.class.getName() + "s of same hashes.\n This BloomFilter has " + this.hashes + " hashes while the other has " + other.hashes + ".");
+
+		if (this.changes != null) {
+			for (int i = 0; i < this.bits.physicalLength(); i++) {
+				long added = other.getBits().getWord(i) & ~this.bits.getWord(i);
+				if (added != 0)
+					this.changes.xorWord(i, added);
+			}
+		}
 		this.bits.or(other.getBits());
 	}
-	
+
 	/**
 	 * Add the element to the BloomFilter.
 	 * @param element the element to be added
 	 * @return true if the element was added; false if it existed already
 	 */
 	public boolean add(BitSet element) {
-		int code = element.hashCode();
-		int bucket = Math.abs(code % this.size);
-		
-		if (this.bits.get(bucket))
-			return false;
-		
-		this.set(bucket);
-		return true;
+		long hash = element.longHashCode();
+		long step = step(hash);
+
+		boolean added = false;
+		for (int i = 0; i < this.hashes; i++, hash += step) {
+			int bit = this.bit(hash);
+			if (this.bits.setIfClear(bit)) {
+				this.changed(bit);
+				added = true;
+			}
+		}
+		return added;
 	}
-	
+
 	/**
-	 * Adds all the elements to the BloomFilter.
-	 * @param element the element to be added
-	 * @return true if the element was added; false if it existed already
+	 * Adds all the elements to the BloomFilter. The probes of the elements are set in the order of their bits, so that
+	 * each word of the BloomFilter is loaded once per batch instead of once per probe.
+	 * @param elements the elements to be added
 	 */
 	public void addAll(List<BitSet> elements) {
-		int[] buckets = new int[elements.size()];
-		for (int i = 0; i < elements.size(); i++) {
-			int code = elements.get(i).hashCode();
-			buckets[i] = Math.abs(code % this.size);
+		int[] probes = new int[Math.min(elements.size(), BATCH_SIZE) * this.hashes];
+		for (int from = 0; from < elements.size(); from += BATCH_SIZE) {
+			int length = this.probe(elements, from, Math.min(elements.size(), from + BATCH_SIZE), probes);
+			for (int i = 0; i < length; i++)
+				if (this.bits.setIfClear(probes[i]))
+					this.changed(probes[i]);
 		}
-		this.setAll(buckets);
 	}
-	
+
 	/**
 	 * Test if this BloomFilter contains the element.
 	 * @param element the element to be tested
+	 * @return true if the element might have been added; false if it was certainly not added
 	 */
 	public boolean contains(BitSet element) {
-		int code = element.hashCode();
-		int bucket = Math.abs(code % this.size);
-		
-		return this.bits.get(bucket);
-	}
-	
-	private void set(int bucket) {
-		this.bits.set(bucket);
-	}
-	
-	private void setAll(int[] buckets) {
-		for (int i = 0; i < buckets.length; i++)
-			this.bits.set(buckets[i]);
+		long hash = element.longHashCode();
+		long step = step(hash);
+
+		for (int i = 0; i < this.hashes; i++, hash += step)
+			if (!this.bits.get(this.bit(hash)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Test if this BloomFilter contains all the elements. Like {@link #addAll(List)}, the probes are tested in the order
+	 * of their bits.
+	 * @param elements the elements to be tested
+	 * @return true if all elements might have been added; false if at least one was certainly not added
+	 */
+	public boolean containsAll(List<BitSet> elements) {
+		int[] probes = new int[Math.min(elements.size(), BATCH_SIZE) * this.hashes];
+		for (int from = 0; from < elements.size(); from += BATCH_SIZE) {
+			int length = this.probe(elements, from, Math.min(elements.size(), from + BATCH_SIZE), probes);
+			for (int i = 0; i < length; i++)
+				if (!this.bits.get(probes[i]))
+					return false;
+		}
+		return true;
+	}
+
+	// Write the sorted probes of the elements from (inclusive) to (exclusive) into the array and return their number
+	private int probe(List<BitSet> elements, int from, int to, int[] probes) {
+		int length = 0;
+		for (int e = from; e < to; e++) {
+			long hash = elements.get(e).longHashCode();
+			long step = step(hash);
+			for (int i = 0; i < this.hashes; i++, hash += step)
+				probes[length++] = this.bit(hash);
+		}
+		Arrays.sort(probes, 0, length);
+		return length;
+	}
+
+	private void changed(int bit) {
+		if (this.changes != null)
+			this.changes.set(bit);
+	}
+
+	// The second hash of double hashing; it is odd, so that the probes of one element do not repeat early
+	private static long step(long hash) {
+		return BitSet.mix(hash ^ 0x5851f42d4c957f2dL) | 1;
+	}
+
+	// Map the high 32 bits of the hash onto [0, size) without the bias and the cost of a modulo
+	private int bit(long hash) {
+		return (int) (((hash >>> 32) * this.size) >>> 32);
+	}
+
+	/**
+	 * The changes of a BloomFilter from one version to the next: the indexes of the words that changed and, for each of
+	 * them, the XOR of its old and new value. Applying a delta flips the bits of these XORs, so it needs the exact version
+	 * that the delta starts from.
+	 */
+	public static class Delta implements Serializable {
+
+		private static final long serialVersionUID = -6287130473094651520L;
+
+		private long fromVersion;
+		private long toVersion;
+		private int[] wordIndexes;
+		private long[] words;
+
+		/**
+		 * FOR (DE-)SERIALIZATION ONLY!
+		 */
+		public Delta() {
+		}
+
+		private Delta(long fromVersion, long toVersion, int[] wordIndexes, long[] words) {
+			this.fromVersion = fromVersion;
+			this.toVersion = toVersion;
+			this.wordIndexes = wordIndexes;
+			this.words = words;
+		}
+
+		public long getFromVersion() {
+			return this.fromVersion;
+		}
+
+		public long getToVersion() {
+			return this.toVersion;
+		}
+
+		/**
+		 * @return the number of words that changed
+		 */
+		public int size() {
+			return this.wordIndexes.length;
+		}
 	}
 }
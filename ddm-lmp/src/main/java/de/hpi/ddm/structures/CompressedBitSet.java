@@ -0,0 +1,922 @@
+package de.hpi.ddm.structures;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Bits that are compressed like a Roaring bitmap, so that sparse bits, e.g., an almost empty BloomFilter, cost kilobytes
+ * instead of megabytes in memory and when serialized with Kryo.
+ * The bits are split into chunks of 2^16 bits, and only chunks with set bits have a container. Each container has the
+ * smallest of three representations: an array of the set bits for up to 4096 set bits, a bitmap of 1024 words for more,
+ * or a list of runs of set bits if the bits are clustered. Containers change their representation as bits are set and
+ * cleared, and the results of {@link #and}, {@link #or}, {@link #xor} and {@link #andNot} get the best representation.
+ */
+public class CompressedBitSet implements Bits, KryoSerializable {
+
+	private final static int BITSHIFTS_TO_WORD_SIZE = 6;
+	private final static int BITSHIFTS_TO_CHUNK_SIZE = 16;
+	private final static int BITS_PER_CHUNK = 1 << BITSHIFTS_TO_CHUNK_SIZE;
+	private final static int WORDS_PER_CHUNK = 1 << (BITSHIFTS_TO_CHUNK_SIZE - BITSHIFTS_TO_WORD_SIZE);
+	private final static int CHUNK_MASK = BITS_PER_CHUNK - 1;
+	private final static int BYTES_PER_WORD = 8;
+	private final static long WORD_MASK = 0xffffffffffffffffL;
+
+	private final static int MAX_ARRAY_SIZE = 4096; // Above this many set bits, a bitmap container is smaller than an array container
+	private final static int BITMAP_BYTES = WORDS_PER_CHUNK * BYTES_PER_WORD;
+
+	final static byte ARRAY = 0; // The representations of containers, as written by Kryo
+	final static byte BITMAP = 1;
+	final static byte RUN = 2;
+
+	private final static int OR = 0;
+	private final static int AND = 1;
+	private final static int XOR = 2;
+	private final static int AND_NOT = 3;
+
+	private int words;
+	private char[] keys = new char[0]; // The chunk index of each container, ascending
+	private Container[] containers = new Container[0];
+	private int size = 0; // The number of containers
+
+	private static int wordIndex(int bitIndex) {
+		return bitIndex >> BITSHIFTS_TO_WORD_SIZE;
+	}
+
+	/**
+	 * Construct new bits with a certain capacity. All bits are initially set to {@code false}, so no memory is used for them.
+	 * @param capacity many bits that can be stored
+	 */
+	public CompressedBitSet(int capacity) {
+		this.words = wordIndex(capacity - 1) + 1;
+	}
+
+	/**
+	 * FOR (DE-)SERIALIZATION ONLY!
+	 */
+	public CompressedBitSet() {
+	}
+
+	/**
+	 * Compress the given bits, e.g., a dense {@link BitSet}.
+	 * @param bits to be compressed
+	 * @return compressed bits with the same physical length and the same set bits
+	 */
+	public static CompressedBitSet of(Bits bits) {
+		CompressedBitSet set = new CompressedBitSet();
+		set.words = bits.physicalLength();
+
+		long[] chunk = new long[WORDS_PER_CHUNK];
+		for (int first = 0; first < set.words; first += WORDS_PER_CHUNK) {
+			int length = Math.min(WORDS_PER_CHUNK, set.words - first);
+			for (int i = 0; i < length; i++)
+				chunk[i] = bits.getWord(first + i);
+			Arrays.fill(chunk, length, WORDS_PER_CHUNK, 0);
+
+			Container container = Container.of(chunk);
+			if (container != null)
+				set.insert(set.size, first / WORDS_PER_CHUNK, container);
+		}
+		return set;
+	}
+
+	/**
+	 * Decompress these bits.
+	 * @return a dense {@link BitSet} with the same physical length and the same set bits
+	 */
+	public BitSet toBitSet() {
+		long[] words = new long[this.words];
+		long[] chunk = new long[WORDS_PER_CHUNK];
+		for (int c = 0; c < this.size; c++) {
+			Arrays.fill(chunk, 0);
+			this.containers[c].orInto(chunk);
+
+			int first = this.keys[c] * WORDS_PER_CHUNK;
+			System.arraycopy(chunk, 0, words, first, Math.min(WORDS_PER_CHUNK, this.words - first));
+		}
+		return new BitSet(words);
+	}
+
+	private int find(int key) {
+		return Arrays.binarySearch(this.keys, 0, this.size, (char) key);
+	}
+
+	private void insert(int index, int key, Container container) {
+		if (this.size == this.keys.length) {
+			int length = Math.max(4, 2 * this.size);
+			this.keys = Arrays.copyOf(this.keys, length);
+			this.containers = Arrays.copyOf(this.containers, length);
+		}
+		System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+		System.arraycopy(this.containers, index, this.containers, index + 1, this.size - index);
+		this.keys[index] = (char) key;
+		this.containers[index] = container;
+		this.size++;
+	}
+
+	private void remove(int index) {
+		System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+		System.arraycopy(this.containers, index + 1, this.containers, index, this.size - index - 1);
+		this.containers[--this.size] = null;
+	}
+
+	private void ensureBounds(int bitIndex) {
+		if (bitIndex < 0 || wordIndex(bitIndex) >= this.words)
+			throw new ArrayIndexOutOfBoundsException(bitIndex);
+	}
+
+	@Override
+	public int physicalLength() {
+		return this.words;
+	}
+
+	@Override
+	public long getWord(int wordIndex) {
+		if (wordIndex >= this.words)
+			throw new ArrayIndexOutOfBoundsException(wordIndex);
+
+		int c = this.find(wordIndex >> (BITSHIFTS_TO_CHUNK_SIZE - BITSHIFTS_TO_WORD_SIZE));
+		return (c < 0) ? 0 : this.containers[c].word(wordIndex & (WORDS_PER_CHUNK - 1));
+	}
+
+	@Override
+	public boolean get(int bitIndex) {
+		int c = this.find(bitIndex >>> BITSHIFTS_TO_CHUNK_SIZE);
+		return c >= 0 && this.containers[c].contains(bitIndex & CHUNK_MASK);
+	}
+
+	@Override
+	public void set(int bitIndex) {
+		this.ensureBounds(bitIndex);
+
+		int c = this.find(bitIndex >>> BITSHIFTS_TO_CHUNK_SIZE);
+		if (c >= 0)
+			this.containers[c] = this.containers[c].add(bitIndex & CHUNK_MASK);
+		else
+			this.insert(-c - 1, bitIndex >>> BITSHIFTS_TO_CHUNK_SIZE, new ArrayContainer(new char[] { (char) (bitIndex & CHUNK_MASK) }, 1));
+	}
+
+	@Override
+	public void clear(int bitIndex) {
+		int c = this.find(bitIndex >>> BITSHIFTS_TO_CHUNK_SIZE);
+		if (c < 0)
+			return;
+
+		Container container = this.containers[c].remove(bitIndex & CHUNK_MASK);
+		if (container == null)
+			this.remove(c);
+		else
+			this.containers[c] = container;
+	}
+
+	@Override
+	public void xorWord(int wordIndex, long word) {
+		for (; word != 0; word &= word - 1) {
+			int bitIndex = (wordIndex << BITSHIFTS_TO_WORD_SIZE) + Long.numberOfTrailingZeros(word);
+			if (this.get(bitIndex))
+				this.clear(bitIndex);
+			else
+				this.set(bitIndex);
+		}
+	}
+
+	@Override
+	public void clear() {
+		this.keys = new char[0];
+		this.containers = new Container[0];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the index of the first bit that is set to {@code true} that occurs at or after the specified starting index.
+	 * If no such bit exists then {@code -1} is returned.
+	 * @param fromIndex the index to start checking from (inclusive)
+	 * @return the index of the next set bit, or {@code -1} if there is no such bit
+	 */
+	public int nextSetBit(int fromIndex) {
+		int c = this.find(fromIndex >>> BITSHIFTS_TO_CHUNK_SIZE);
+		int from = fromIndex & CHUNK_MASK;
+		if (c < 0) {
+			c = -c - 1;
+			from = 0;
+		}
+
+		for (; c < this.size; c++, from = 0) {
+			int next = this.containers[c].next(from);
+			if (next >= 0)
+				return (this.keys[c] << BITSHIFTS_TO_CHUNK_SIZE) | next;
+		}
+		return -1;
+	}
+
+	@Override
+	public int cardinality() {
+		int cardinality = 0;
+		for (int c = 0; c < this.size; c++)
+			cardinality += this.containers[c].cardinality();
+		return cardinality;
+	}
+
+	/**
+	 * Return true if these bits contain no bits that are set to {@code true}.
+	 * @return {@code true} if these bits are empty; {@code false} otherwise
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	// The representation of the container of a chunk, or -1 if no bit of the chunk is set
+	byte containerType(int chunkIndex) {
+		int c = this.find(chunkIndex);
+		return (c < 0) ? -1 : this.containers[c].type();
+	}
+
+	private void ensureCompatibility(Bits bits) {
+		if (this.words != bits.physicalLength())
+			throw new RuntimeException(CompressedBitSet.class.getName() + " can operate only with " + Bits.class.getName() + " of same size.\n This words length was " + this.words + " while the other's word length was " + bits.physicalLength() + ".");
+	}
+
+	/**
+	 * Perform a logical <b>AND</b> of these bits with the argument bits.
+	 * @param set is the {@code CompressedBitSet} to perform the and-operation with
+	 */
+	public void and(CompressedBitSet set) {
+		this.combine(set, AND);
+	}
+
+	/**
+	 * Perform a logical <b>OR</b> of these bits with the argument bits.
+	 * @param set is the {@code CompressedBitSet} to perform the or-operation with
+	 */
+	public void or(CompressedBitSet set) {
+		this.combine(set, OR);
+	}
+
+	/**
+	 * Perform a logical <b>XOR</b> of these bits with the argument bits.
+	 * @param set is the {@code CompressedBitSet} to perform the xor-operation with
+	 */
+	public void xor(CompressedBitSet set) {
+		this.combine(set, XOR);
+	}
+
+	/**
+	 * Remove all the bits in these bits whose corresponding bit is also set in the argument bits.
+	 * @param set is the {@code CompressedBitSet} whose bits are to be removed from these bits
+	 */
+	public void andNot(CompressedBitSet set) {
+		this.combine(set, AND_NOT);
+	}
+
+	@Override
+	public void or(Bits bits) {
+		if (bits instanceof CompressedBitSet) {
+			this.or((CompressedBitSet) bits);
+			return;
+		}
+		this.or(CompressedBitSet.of(bits));
+	}
+
+	// Merge the containers of both sets by their keys; the containers of the other set are copied, never shared
+	private void combine(CompressedBitSet set, int operation) {
+		this.ensureCompatibility(set);
+		if (this == set) {
+			if (operation == XOR || operation == AND_NOT)
+				this.clear();
+			return;
+		}
+
+		char[] keys = new char[this.size + set.size];
+		Container[] containers = new Container[this.size + set.size];
+		int size = 0;
+
+		int i = 0, j = 0;
+		while (i < this.size || j < set.size) {
+			int key = Math.min((i < this.size) ? this.keys[i] : Integer.MAX_VALUE, (j < set.size) ? set.keys[j] : Integer.MAX_VALUE);
+
+			Container container;
+			if (i < this.size && j < set.size && this.keys[i] == set.keys[j]) {
+				container = Container.combine(this.containers[i], set.containers[j], operation);
+				i++;
+				j++;
+			} else if (i < this.size && this.keys[i] == key) {
+				container = (operation == AND) ? null : this.containers[i];
+				i++;
+			} else {
+				container = (operation == OR || operation == XOR) ? set.containers[j].copy() : null;
+				j++;
+			}
+
+			if (container != null) {
+				keys[size] = (char) key;
+				containers[size++] = container;
+			}
+		}
+
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	@Override
+	public void randomize() {
+		Random rand = new Random();
+		this.clear();
+
+		long[] chunk = new long[WORDS_PER_CHUNK];
+		for (int first = 0; first < this.words; first += WORDS_PER_CHUNK) {
+			int length = Math.min(WORDS_PER_CHUNK, this.words - first);
+			for (int i = 0; i < length; i++)
+				chunk[i] = rand.nextLong();
+			Arrays.fill(chunk, length, WORDS_PER_CHUNK, 0);
+
+			Container container = Container.of(chunk);
+			if (container != null)
+				this.insert(this.size, first / WORDS_PER_CHUNK, container);
+		}
+	}
+
+	@Override
+	public int binarySize() {
+		return 4 + this.words * BYTES_PER_WORD;
+	}
+
+	@Override
+	public void toBinary(ByteBuffer buffer) {
+		buffer.putInt(this.words);
+
+		long[] chunk = new long[WORDS_PER_CHUNK];
+		int c = 0;
+		for (int first = 0; first < this.words; first += WORDS_PER_CHUNK) {
+			Arrays.fill(chunk, 0);
+			if (c < this.size && this.keys[c] == first / WORDS_PER_CHUNK)
+				this.containers[c++].orInto(chunk);
+
+			int length = Math.min(WORDS_PER_CHUNK, this.words - first);
+			buffer.asLongBuffer().put(chunk, 0, length);
+			buffer.position(buffer.position() + length * BYTES_PER_WORD);
+		}
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output) {
+		output.writeInt(this.words, true);
+		output.writeInt(this.size, true);
+		for (int c = 0; c < this.size; c++) {
+			output.writeChar(this.keys[c]);
+			this.containers[c].write(output);
+		}
+	}
+
+	@Override
+	public void read(Kryo kryo, Input input) {
+		this.words = input.readInt(true);
+		this.size = input.readInt(true);
+		this.keys = new char[this.size];
+		this.containers = new Container[this.size];
+		for (int c = 0; c < this.size; c++) {
+			this.keys[c] = input.readChar();
+			this.containers[c] = Container.read(input);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		long h = 1234;
+		long[] chunk = new long[WORDS_PER_CHUNK];
+		for (int c = 0; c < this.size; c++) {
+			Arrays.fill(chunk, 0);
+			this.containers[c].orInto(chunk);
+			for (int i = 0; i < WORDS_PER_CHUNK; i++)
+				h ^= chunk[i] * (this.keys[c] * WORDS_PER_CHUNK + i + 1);
+		}
+		return (int) ((h >> 32) ^ h);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof CompressedBitSet))
+			return false;
+		if (this == obj)
+			return true;
+
+		CompressedBitSet set = (CompressedBitSet) obj;
+
+		if (this.words != set.words || this.size != set.size)
+			return false;
+
+		for (int c = 0; c < this.size; c++) {
+			if (this.keys[c] != set.keys[c] || this.containers[c].cardinality() != set.containers[c].cardinality())
+				return false;
+			for (int i = 0; i < WORDS_PER_CHUNK; i++)
+				if (this.containers[c].word(i) != set.containers[c].word(i))
+					return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The set bits of one chunk of 2^16 bits, which are addressed by their index within the chunk.
+	 * Modifying operations return the container that holds the result, which is a new one if the representation changed.
+	 */
+	private static abstract class Container {
+
+		abstract byte type();
+
+		abstract int cardinality();
+
+		abstract boolean contains(int value);
+
+		abstract Container add(int value);
+
+		// Returns null if the container becomes empty
+		abstract Container remove(int value);
+
+		// Returns the smallest set value at or after the given value or -1
+		abstract int next(int value);
+
+		abstract long word(int wordIndex);
+
+		abstract void orInto(long[] chunk);
+
+		abstract Container copy();
+
+		abstract void write(Output output);
+
+		// Create the smallest container for the bits of a chunk, or null if no bit is set
+		static Container of(long[] chunk) {
+			int cardinality = 0;
+			int runs = 0;
+			for (int i = 0; i < WORDS_PER_CHUNK; i++) {
+				long word = chunk[i];
+				long carry = (i == 0) ? 0 : chunk[i - 1] >>> 63;
+				cardinality += Long.bitCount(word);
+				runs += Long.bitCount(word & ~((word << 1) | carry)); // The set bits whose predecessor is not set start runs
+			}
+			if (cardinality == 0)
+				return null;
+
+			int arrayBytes = (cardinality <= MAX_ARRAY_SIZE) ? 2 * cardinality : Integer.MAX_VALUE;
+			if (4 * runs < Math.min(arrayBytes, BITMAP_BYTES))
+				return RunContainer.of(chunk, runs);
+			if (cardinality <= MAX_ARRAY_SIZE)
+				return ArrayContainer.of(chunk, cardinality);
+			return new BitmapContainer(Arrays.copyOf(chunk, WORDS_PER_CHUNK), cardinality);
+		}
+
+		static Container combine(Container a, Container b, int operation) {
+			if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+				return ArrayContainer.merge((ArrayContainer) a, (ArrayContainer) b, operation);
+			if (operation == AND && a instanceof ArrayContainer)
+				return ((ArrayContainer) a).filter(b, true);
+			if (operation == AND && b instanceof ArrayContainer)
+				return ((ArrayContainer) b).filter(a, true);
+			if (operation == AND_NOT && a instanceof ArrayContainer)
+				return ((ArrayContainer) a).filter(b, false);
+
+			long[] chunk = new long[WORDS_PER_CHUNK];
+			long[] other = new long[WORDS_PER_CHUNK];
+			a.orInto(chunk);
+			b.orInto(other);
+			for (int i = 0; i < WORDS_PER_CHUNK; i++) {
+				switch (operation) {
+					case OR: chunk[i] |= other[i]; break;
+					case AND: chunk[i] &= other[i]; break;
+					case XOR: chunk[i] ^= other[i]; break;
+					default: chunk[i] &= ~other[i]; break;
+				}
+			}
+			return Container.of(chunk);
+		}
+
+		static Container read(Input input) {
+			switch (input.readByte()) {
+				case ARRAY: {
+					char[] values = new char[input.readInt(true)];
+					for (int i = 0; i < values.length; i++)
+						values[i] = input.readChar();
+					return new ArrayContainer(values, values.length);
+				}
+				case BITMAP: {
+					long[] words = input.readLongs(WORDS_PER_CHUNK);
+					int cardinality = 0;
+					for (long word : words)
+						cardinality += Long.bitCount(word);
+					return new BitmapContainer(words, cardinality);
+				}
+				case RUN: {
+					char[] runs = new char[2 * input.readInt(true)];
+					for (int i = 0; i < runs.length; i++)
+						runs[i] = input.readChar();
+					return new RunContainer(runs, runs.length / 2);
+				}
+				default:
+					throw new IllegalStateException("Unknown container type");
+			}
+		}
+
+		// Returns the first bit at or after the given index that has the given value, or BITS_PER_CHUNK if there is none
+		static int next(long[] chunk, int fromIndex, boolean value) {
+			int wordIndex = wordIndex(fromIndex);
+			if (wordIndex >= WORDS_PER_CHUNK)
+				return BITS_PER_CHUNK;
+
+			long word = (value ? chunk[wordIndex] : ~chunk[wordIndex]) & (WORD_MASK << fromIndex);
+			while (word == 0) {
+				if (++wordIndex == WORDS_PER_CHUNK)
+					return BITS_PER_CHUNK;
+				word = value ? chunk[wordIndex] : ~chunk[wordIndex];
+			}
+			return (wordIndex << BITSHIFTS_TO_WORD_SIZE) + Long.numberOfTrailingZeros(word);
+		}
+	}
+
+	// The set bits as a sorted array of their indexes
+	private static class ArrayContainer extends Container {
+
+		private char[] values;
+		private int cardinality;
+
+		private ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		private static ArrayContainer of(long[] chunk, int cardinality) {
+			char[] values = new char[cardinality];
+			int n = 0;
+			for (int i = 0; i < WORDS_PER_CHUNK; i++)
+				for (long word = chunk[i]; word != 0; word &= word - 1)
+					values[n++] = (char) ((i << BITSHIFTS_TO_WORD_SIZE) + Long.numberOfTrailingZeros(word));
+			return new ArrayContainer(values, cardinality);
+		}
+
+		private static Container of(char[] values, int cardinality) {
+			if (cardinality == 0)
+				return null;
+			if (cardinality <= MAX_ARRAY_SIZE)
+				return new ArrayContainer(values, cardinality);
+
+			long[] chunk = new long[WORDS_PER_CHUNK];
+			new ArrayContainer(values, cardinality).orInto(chunk);
+			return new BitmapContainer(chunk, cardinality);
+		}
+
+		private static Container merge(ArrayContainer a, ArrayContainer b, int operation) {
+			char[] values = new char[(operation == AND) ? Math.min(a.cardinality, b.cardinality) : a.cardinality + b.cardinality];
+			boolean keepA = operation != AND;
+			boolean keepB = operation == OR || operation == XOR;
+			boolean keepBoth = operation == OR || operation == AND;
+
+			int n = 0, i = 0, j = 0;
+			while (i < a.cardinality && j < b.cardinality) {
+				if (a.values[i] < b.values[j]) {
+					if (keepA)
+						values[n++] = a.values[i];
+					i++;
+				} else if (a.values[i] > b.values[j]) {
+					if (keepB)
+						values[n++] = b.values[j];
+					j++;
+				} else {
+					if (keepBoth)
+						values[n++] = a.values[i];
+					i++;
+					j++;
+				}
+			}
+			if (keepA)
+				for (; i < a.cardinality; i++)
+					values[n++] = a.values[i];
+			if (keepB)
+				for (; j < b.cardinality; j++)
+					values[n++] = b.values[j];
+
+			return ArrayContainer.of(values, n);
+		}
+
+		// Keep the values that the other container contains (or does not contain)
+		private Container filter(Container other, boolean contained) {
+			char[] values = new char[this.cardinality];
+			int n = 0;
+			for (int i = 0; i < this.cardinality; i++)
+				if (other.contains(this.values[i]) == contained)
+					values[n++] = this.values[i];
+			return ArrayContainer.of(values, n);
+		}
+
+		private int search(int value) {
+			return Arrays.binarySearch(this.values, 0, this.cardinality, (char) value);
+		}
+
+		@Override
+		int cardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(int value) {
+			return this.search(value) >= 0;
+		}
+
+		@Override
+		Container add(int value) {
+			int index = this.search(value);
+			if (index >= 0)
+				return this;
+
+			if (this.cardinality == MAX_ARRAY_SIZE) {
+				long[] chunk = new long[WORDS_PER_CHUNK];
+				this.orInto(chunk);
+				return new BitmapContainer(chunk, this.cardinality).add(value);
+			}
+
+			index = -index - 1;
+			if (this.cardinality == this.values.length)
+				this.values = Arrays.copyOf(this.values, Math.min(MAX_ARRAY_SIZE, Math.max(4, 2 * this.cardinality)));
+			System.arraycopy(this.values, index, this.values, index + 1, this.cardinality - index);
+			this.values[index] = (char) value;
+			this.cardinality++;
+			return this;
+		}
+
+		@Override
+		Container remove(int value) {
+			int index = this.search(value);
+			if (index < 0)
+				return this;
+
+			System.arraycopy(this.values, index + 1, this.values, index, this.cardinality - index - 1);
+			this.cardinality--;
+			return (this.cardinality == 0) ? null : this;
+		}
+
+		@Override
+		int next(int value) {
+			int index = this.search(value);
+			if (index >= 0)
+				return value;
+
+			index = -index - 1;
+			return (index < this.cardinality) ? this.values[index] : -1;
+		}
+
+		@Override
+		long word(int wordIndex) {
+			int index = this.search(wordIndex << BITSHIFTS_TO_WORD_SIZE);
+			if (index < 0)
+				index = -index - 1;
+
+			long word = 0;
+			for (; index < this.cardinality && wordIndex(this.values[index]) == wordIndex; index++)
+				word |= 1L << this.values[index];
+			return word;
+		}
+
+		@Override
+		void orInto(long[] chunk) {
+			for (int i = 0; i < this.cardinality; i++)
+				chunk[wordIndex(this.values[i])] |= 1L << this.values[i];
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(this.values, this.cardinality), this.cardinality);
+		}
+
+		@Override
+		byte type() {
+			return ARRAY;
+		}
+
+		@Override
+		void write(Output output) {
+			output.writeByte(ARRAY);
+			output.writeInt(this.cardinality, true);
+			for (int i = 0; i < this.cardinality; i++)
+				output.writeChar(this.values[i]);
+		}
+	}
+
+	// The set bits as the words of a BitSet
+	private static class BitmapContainer extends Container {
+
+		private final long[] words;
+		private int cardinality;
+
+		private BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(int value) {
+			return (this.words[wordIndex(value)] & (1L << value)) != 0;
+		}
+
+		@Override
+		Container add(int value) {
+			if (!this.contains(value)) {
+				this.words[wordIndex(value)] |= 1L << value;
+				this.cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(int value) {
+			if (!this.contains(value))
+				return this;
+
+			this.words[wordIndex(value)] &= ~(1L << value);
+			this.cardinality--;
+			return (this.cardinality <= MAX_ARRAY_SIZE) ? Container.of(this.words) : this;
+		}
+
+		@Override
+		int next(int value) {
+			int next = Container.next(this.words, value, true);
+			return (next == BITS_PER_CHUNK) ? -1 : next;
+		}
+
+		@Override
+		long word(int wordIndex) {
+			return this.words[wordIndex];
+		}
+
+		@Override
+		void orInto(long[] chunk) {
+			for (int i = 0; i < WORDS_PER_CHUNK; i++)
+				chunk[i] |= this.words[i];
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(this.words.clone(), this.cardinality);
+		}
+
+		@Override
+		byte type() {
+			return BITMAP;
+		}
+
+		@Override
+		void write(Output output) {
+			output.writeByte(BITMAP);
+			output.writeLongs(this.words);
+		}
+	}
+
+	// The set bits as runs of consecutive set bits, each stored as its start and its length minus one
+	private static class RunContainer extends Container {
+
+		private final char[] runs;
+		private final int count;
+
+		private RunContainer(char[] runs, int count) {
+			this.runs = runs;
+			this.count = count;
+		}
+
+		private static RunContainer of(long[] chunk, int count) {
+			char[] runs = new char[2 * count];
+			int run = 0;
+			for (int start = Container.next(chunk, 0, true); start < BITS_PER_CHUNK; run++) {
+				int end = Container.next(chunk, start, false);
+				runs[2 * run] = (char) start;
+				runs[2 * run + 1] = (char) (end - start - 1);
+				start = Container.next(chunk, end, true);
+			}
+			return new RunContainer(runs, count);
+		}
+
+		private int start(int run) {
+			return this.runs[2 * run];
+		}
+
+		private int end(int run) {
+			return this.runs[2 * run] + this.runs[2 * run + 1];
+		}
+
+		// Returns the last run that starts at or before the value, or -1
+		private int find(int value) {
+			int low = 0, high = this.count - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (this.start(middle) <= value)
+					low = middle + 1;
+				else
+					high = middle - 1;
+			}
+			return high;
+		}
+
+		// Runs are not modified in place; the modified bits get the best representation instead
+		private Container modify(int value, boolean set) {
+			long[] chunk = new long[WORDS_PER_CHUNK];
+			this.orInto(chunk);
+			if (set)
+				chunk[wordIndex(value)] |= 1L << value;
+			else
+				chunk[wordIndex(value)] &= ~(1L << value);
+			return Container.of(chunk);
+		}
+
+		@Override
+		int cardinality() {
+			int cardinality = 0;
+			for (int run = 0; run < this.count; run++)
+				cardinality += this.runs[2 * run + 1] + 1;
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(int value) {
+			int run = this.find(value);
+			return run >= 0 && value <= this.end(run);
+		}
+
+		@Override
+		Container add(int value) {
+			return this.contains(value) ? this : this.modify(value, true);
+		}
+
+		@Override
+		Container remove(int value) {
+			return this.contains(value) ? this.modify(value, false) : this;
+		}
+
+		@Override
+		int next(int value) {
+			int run = this.find(value);
+			if (run >= 0 && value <= this.end(run))
+				return value;
+			return (run + 1 < this.count) ? this.start(run + 1) : -1;
+		}
+
+		@Override
+		long word(int wordIndex) {
+			int first = wordIndex << BITSHIFTS_TO_WORD_SIZE;
+			int last = first + (1 << BITSHIFTS_TO_WORD_SIZE) - 1;
+
+			long word = 0;
+			for (int run = Math.max(0, this.find(first)); run < this.count && this.start(run) <= last; run++) {
+				int from = Math.max(first, this.start(run));
+				int to = Math.min(last, this.end(run));
+				if (from <= to)
+					word |= (WORD_MASK >>> (63 - (to - from))) << (from - first);
+			}
+			return word;
+		}
+
+		@Override
+		void orInto(long[] chunk) {
+			for (int run = 0; run < this.count; run++) {
+				int from = this.start(run);
+				int to = this.end(run) + 1;
+
+				int startWordIndex = wordIndex(from);
+				int endWordIndex = wordIndex(to - 1);
+				long firstWordMask = WORD_MASK << from;
+				long lastWordMask = WORD_MASK >>> -to;
+
+				if (startWordIndex == endWordIndex) {
+					chunk[startWordIndex] |= (firstWordMask & lastWordMask);
+					continue;
+				}
+				chunk[startWordIndex] |= firstWordMask;
+				for (int i = startWordIndex + 1; i < endWordIndex; i++)
+					chunk[i] = WORD_MASK;
+				chunk[endWordIndex] |= lastWordMask;
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new RunContainer(Arrays.copyOf(this.runs, 2 * this.count), this.count);
+		}
+
+		@Override
+		byte type() {
+			return RUN;
+		}
+
+		@Override
+		void write(Output output) {
+			output.writeByte(RUN);
+			output.writeInt(this.count, true);
+			for (int i = 0; i < 2 * this.count; i++)
+				output.writeChar(this.runs[i]);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package de.hpi.ddm.structures;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Bits that many threads can set and read at the same time without a lock, e.g., the bits of a BloomFilter that all
+ * worker threads of a node insert into. Words are updated with compare-and-set, so {@link #set(int)}, {@link #clear(int)}
+ * and {@link #or(Bits)} are lock-free and {@link #get(int)} is wait-free. A word that already has the bits of an update is
+ * not written at all, so that threads which insert the same elements do not contend for its cache line.
+ * Operations over all words, e.g., {@link #cardinality()}, see each word atomically but not all words at one instant.
+ */
+public class ConcurrentBitSet implements Bits, KryoSerializable {
+
+	private final static int BITSHIFTS_TO_WORD_SIZE = 6;
+	private final static int BYTES_PER_WORD = 8;
+
+	private AtomicLongArray words;
+
+	private static int wordIndex(int bitIndex) {
+		return bitIndex >> BITSHIFTS_TO_WORD_SIZE;
+	}
+
+	/**
+	 * Construct new bits with a certain capacity. All bits are initially set to {@code false}.
+	 * @param capacity many bits that can be stored
+	 */
+	public ConcurrentBitSet(int capacity) {
+		this.words = new AtomicLongArray(wordIndex(capacity - 1) + 1);
+	}
+
+	/**
+	 * FOR (DE-)SERIALIZATION ONLY!
+	 */
+	public ConcurrentBitSet() {
+	}
+
+	@Override
+	public int physicalLength() {
+		return this.words.length();
+	}
+
+	@Override
+	public long getWord(int wordIndex) {
+		return this.words.get(wordIndex);
+	}
+
+	@Override
+	public boolean get(int bitIndex) {
+		return (this.words.get(wordIndex(bitIndex)) & (1L << bitIndex)) != 0;
+	}
+
+	@Override
+	public void set(int bitIndex) {
+		this.setIfClear(bitIndex);
+	}
+
+	@Override
+	public boolean setIfClear(int bitIndex) {
+		int wordIndex = wordIndex(bitIndex);
+		long mask = 1L << bitIndex;
+
+		long word;
+		do {
+			word = this.words.get(wordIndex);
+			if ((word & mask) != 0)
+				return false;
+		} while (!this.words.compareAndSet(wordIndex, word, word | mask));
+		return true;
+	}
+
+	@Override
+	public void clear(int bitIndex) {
+		int wordIndex = wordIndex(bitIndex);
+		long mask = 1L << bitIndex;
+
+		long word;
+		do {
+			word = this.words.get(wordIndex);
+			if ((word & mask) == 0)
+				return;
+		} while (!this.words.compareAndSet(wordIndex, word, word & ~mask));
+	}
+
+	@Override
+	public void xorWord(int wordIndex, long word) {
+		long current;
+		do {
+			current = this.words.get(wordIndex);
+		} while (!this.words.compareAndSet(wordIndex, current, current ^ word));
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < this.words.length(); i++)
+			this.words.set(i, 0);
+	}
+
+	@Override
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < this.words.length(); i++)
+			cardinality += Long.bitCount(this.words.get(i));
+		return cardinality;
+	}
+
+	@Override
+	public void or(Bits bits) {
+		if (this.words.length() != bits.physicalLength())
+			throw new RuntimeException(ConcurrentBitSet.class.getName() + " can operate only with " + Bits.class.getName() + " of same size.\n This words length was " + this.words.length() + " while the other's word length was " + bits.physicalLength() + ".");
+		if (this == bits)
+			return;
+
+		for (int i = 0; i < this.words.length(); i++) {
+			long bitsWord = bits.getWord(i);
+			long word;
+			do {
+				word = this.words.get(i);
+				if ((word | bitsWord) == word)
+					break;
+			} while (!this.words.compareAndSet(i, word, word | bitsWord));
+		}
+	}
+
+	@Override
+	public void randomize() {
+		Random rand = new Random();
+		for (int i = 0; i < this.words.length(); i++)
+			this.words.set(i, rand.nextLong());
+	}
+
+	@Override
+	public int binarySize() {
+		return 4 + this.words.length() * BYTES_PER_WORD;
+	}
+
+	@Override
+	public void toBinary(ByteBuffer buffer) {
+		buffer.putInt(this.words.length());
+		for (int i = 0; i < this.words.length(); i++)
+			buffer.putLong(this.words.get(i));
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output) {
+		output.writeInt(this.words.length());
+		for (int i = 0; i < this.words.length(); i++)
+			output.writeLong(this.words.get(i));
+	}
+
+	@Override
+	public void read(Kryo kryo, Input input) {
+		this.words = new AtomicLongArray(input.readInt());
+		for (int i = 0; i < this.words.length(); i++)
+			this.words.set(i, input.readLong());
+	}
+
+	@Override
+	public int hashCode() {
+		long h = 1234;
+		for (int i = this.words.length() - 1; i >= 0; i--)
+			h ^= this.words.get(i) * (i + 1);
+
+		return (int) ((h >> 32) ^ h);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof ConcurrentBitSet))
+			return false;
+		if (this == obj)
+			return true;
+
+		ConcurrentBitSet set = (ConcurrentBitSet) obj;
+
+		if (this.words.length() != set.words.length())
+			return false;
+
+		for (int i = 0; i < this.words.length(); i++)
+			if (this.words.get(i) != set.words.get(i))
+				return false;
+
+		return true;
+	}
+}
@@ -1,14 +1,23 @@
 package de.hpi.ddm.structures;
 
+import com.esotericsoftware.kryo.Kryo;
 import com.twitter.chill.KryoInstantiator;
 import com.twitter.chill.KryoPool;
 
 public class KryoPoolSingleton {
 
 	private static final int POOL_SIZE = 10;
-	private static final KryoPool kryo = KryoPool.withByteArrayOutputStream(POOL_SIZE, new KryoInstantiator());
+	private static final KryoInstantiator instantiator = new KryoInstantiator();
+	private static final KryoPool kryo = KryoPool.withByteArrayOutputStream(POOL_SIZE, instantiator);
+	
+	// For (de)serialization from and to streams; configured like the instances of the pool
+	private static final ThreadLocal<Kryo> streamKryo = ThreadLocal.withInitial(instantiator::newKryo);
 	
 	public static KryoPool get() {
 		return kryo;
 	}
+	
+	public static Kryo getStreamKryo() {
+		return streamKryo.get();
+	}
 }
@@ -0,0 +1,82 @@
+package de.hpi.ddm.structures;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and round-trip time of the link from a large message proxy to the proxies of another actor system,
+ * estimated from the credits that come back for the chunks sent over it.
+ * From these, a sending proxy derives the size of the chunks of its next transfers and the number of chunks that it keeps
+ * in flight: chunks grow with the throughput, so that their per-message costs stay small, and the window is twice the
+ * bandwidth-delay product, so that a window that limits the throughput is doubled with every throughput sample until the
+ * link is full.
+ */
+public class LinkEstimate {
+
+	public static final int MIN_CHUNK_SIZE = 64 * 1024;
+	public static final int MAX_CHUNK_SIZE = 1024 * 1024; // Well below artery's maximum-large-frame-size of 2 MiB
+	public static final int INITIAL_WINDOW = 4; // The number of chunks in flight before the link is measured
+
+	private static final long CHUNK_TIME = TimeUnit.MILLISECONDS.toNanos(1); // The link time that one chunk should take
+	private static final long SAMPLE_TIME = TimeUnit.MILLISECONDS.toNanos(10); // The minimum duration of a throughput sample
+	private static final double GAIN = 0.25; // The weight of a new throughput sample
+
+	private long minRoundTrip = Long.MAX_VALUE; // Nanoseconds from sending a chunk to its credit, at the least loaded time
+	private double throughput = 0; // Credited bytes per nanosecond; 0 until the first sample
+
+	private long sampleStart; // When the current throughput sample started
+	private long sampleBytes = 0; // Bytes credited in the current sample
+	private long lastCredit = Long.MIN_VALUE; // When the last credit arrived
+
+	/**
+	 * Record the credit for a chunk.
+	 * @param bytes the size of the chunk
+	 * @param roundTrip the nanoseconds since the chunk was sent
+	 * @param now the current {@link System#nanoTime()}
+	 */
+	public void credited(int bytes, long roundTrip, long now) {
+		this.minRoundTrip = Math.min(this.minRoundTrip, roundTrip);
+
+		// A pause between transfers is not part of a sample; the first credit of a sample only marks its start
+		if (this.lastCredit == Long.MIN_VALUE || now - this.lastCredit > SAMPLE_TIME + 4 * this.minRoundTrip) {
+			this.sampleStart = now;
+			this.sampleBytes = 0;
+		} else {
+			this.sampleBytes += bytes;
+		}
+		this.lastCredit = now;
+
+		long elapsed = now - this.sampleStart;
+		if (elapsed < SAMPLE_TIME)
+			return;
+
+		double sample = (double) this.sampleBytes / elapsed;
+		this.throughput = (this.throughput == 0) ? sample : (1 - GAIN) * this.throughput + GAIN * sample;
+		this.sampleStart = now;
+		this.sampleBytes = 0;
+	}
+
+	/**
+	 * @param defaultSize the chunk size for a link that was not measured yet
+	 * @return the chunk size for a new transfer over the link
+	 */
+	public int chunkSize(int defaultSize) {
+		if (this.throughput == 0)
+			return defaultSize;
+
+		long size = Long.highestOneBit(Math.max(1, (long) (this.throughput * CHUNK_TIME)) * 2 - 1);
+		return (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size));
+	}
+
+	/**
+	 * @param chunkSize the chunk size of the transfer
+	 * @param limit the maximum number of chunks in flight, i.e., the credit that the receiver grants
+	 * @return the number of chunks of a transfer that should be in flight
+	 */
+	public int window(int chunkSize, int limit) {
+		if (this.throughput == 0)
+			return Math.min(INITIAL_WINDOW, limit);
+
+		long window = (long) Math.ceil(2 * this.throughput * this.minRoundTrip / chunkSize) + 1;
+		return (int) Math.max(1, Math.min(limit, window));
+	}
+}
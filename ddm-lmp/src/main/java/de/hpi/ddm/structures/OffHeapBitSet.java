@@ -0,0 +1,236 @@
+package de.hpi.ddm.structures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Bits that are stored outside of the heap in a direct or memory-mapped {@link ByteBuffer}, so that huge BloomFilters
+ * are neither scanned nor moved by the garbage collector. The buffer holds the binary form of the bits itself, i.e., the
+ * number of words followed by the words, so it can be written to a channel or file without first copying it into an array.
+ */
+public class OffHeapBitSet implements Bits, KryoSerializable {
+
+	private final static int BITSHIFTS_TO_WORD_SIZE = 6;
+	private final static int BYTES_PER_WORD = 8;
+	private final static int HEADER_SIZE = 4;
+	private final static int COPY_BUFFER_SIZE = 64 * 1024; // The bytes that are copied at once when the bits are (de)serialized with Kryo
+
+	private ByteBuffer buffer;
+	private int words;
+
+	/**
+	 * Allocate new bits in a direct buffer. All bits are initially set to {@code false}.
+	 * @param capacity many bits that can be stored
+	 * @return the new bits
+	 */
+	public static OffHeapBitSet allocate(int capacity) {
+		int words = wordIndex(capacity - 1) + 1;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + words * BYTES_PER_WORD);
+		buffer.putInt(0, words);
+		return new OffHeapBitSet(buffer);
+	}
+
+	/**
+	 * Map bits into a file, which is created if it does not exist. The bits of an existing file are kept, so a BloomFilter
+	 * that is mapped again continues with the elements that were added before.
+	 * @param file to store the bits in
+	 * @param capacity many bits that can be stored
+	 * @return the mapped bits
+	 * @throws IOException if the file cannot be opened or mapped, or if it holds bits of another capacity
+	 */
+	public static OffHeapBitSet map(Path file, int capacity) throws IOException {
+		int words = wordIndex(capacity - 1) + 1;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			boolean created = channel.size() == 0;
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) words * BYTES_PER_WORD);
+			if (created)
+				buffer.putInt(0, words);
+			else if (buffer.getInt(0) != words)
+				throw new IOException("The file " + file + " holds " + buffer.getInt(0) + " words instead of " + words + ".");
+			return new OffHeapBitSet(buffer);
+		}
+	}
+
+	/**
+	 * Use the binary form of bits, e.g., the result of {@link BitSet#toBinary()}, as bits without copying it.
+	 * @param buffer that holds the binary form from its position on; changes of the bits write through to it
+	 * @return the bits in the buffer
+	 */
+	public static OffHeapBitSet wrap(ByteBuffer buffer) {
+		return new OffHeapBitSet(buffer.slice());
+	}
+
+	private OffHeapBitSet(ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		this.words = buffer.getInt(0);
+	}
+
+	/**
+	 * FOR (DE-)SERIALIZATION ONLY!
+	 */
+	public OffHeapBitSet() {
+	}
+
+	private static int wordIndex(int bitIndex) {
+		return bitIndex >> BITSHIFTS_TO_WORD_SIZE;
+	}
+
+	private static int offset(int wordIndex) {
+		return HEADER_SIZE + wordIndex * BYTES_PER_WORD;
+	}
+
+	/**
+	 * @return a read-only view on the binary form of the bits, which are not copied
+	 */
+	public ByteBuffer buffer() {
+		return this.buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Write the binary form of the bits to the channel straight from the buffer.
+	 * @param channel to write to
+	 * @throws IOException if the channel fails
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer bytes = this.buffer();
+		while (bytes.hasRemaining())
+			channel.write(bytes);
+	}
+
+	@Override
+	public int physicalLength() {
+		return this.words;
+	}
+
+	@Override
+	public long getWord(int wordIndex) {
+		if (wordIndex >= this.words)
+			throw new ArrayIndexOutOfBoundsException(wordIndex);
+		return this.buffer.getLong(offset(wordIndex));
+	}
+
+	@Override
+	public boolean get(int bitIndex) {
+		return (this.getWord(wordIndex(bitIndex)) & (1L << bitIndex)) != 0;
+	}
+
+	@Override
+	public void set(int bitIndex) {
+		int wordIndex = wordIndex(bitIndex);
+
+		this.buffer.putLong(offset(wordIndex), this.getWord(wordIndex) | (1L << bitIndex));
+	}
+
+	@Override
+	public void clear(int bitIndex) {
+		int wordIndex = wordIndex(bitIndex);
+
+		this.buffer.putLong(offset(wordIndex), this.getWord(wordIndex) & ~(1L << bitIndex));
+	}
+
+	@Override
+	public void xorWord(int wordIndex, long word) {
+		this.buffer.putLong(offset(wordIndex), this.getWord(wordIndex) ^ word);
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < this.words; i++)
+			this.buffer.putLong(offset(i), 0);
+	}
+
+	@Override
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < this.words; i++)
+			cardinality += Long.bitCount(this.buffer.getLong(offset(i)));
+		return cardinality;
+	}
+
+	@Override
+	public void or(Bits bits) {
+		if (this.words != bits.physicalLength())
+			throw new RuntimeException(OffHeapBitSet.class.getName() + " can operate only with " + Bits.class.getName() + " of same size.\n This words length was " + this.words + " while the other's word length was " + bits.physicalLength() + ".");
+		if (this == bits)
+			return;
+
+		for (int i = 0; i < this.words; i++)
+			this.buffer.putLong(offset(i), this.buffer.getLong(offset(i)) | bits.getWord(i));
+	}
+
+	@Override
+	public void randomize() {
+		Random rand = new Random();
+		for (int i = 0; i < this.words; i++)
+			this.buffer.putLong(offset(i), rand.nextLong());
+	}
+
+	@Override
+	public int binarySize() {
+		return offset(this.words);
+	}
+
+	@Override
+	public void toBinary(ByteBuffer buffer) {
+		buffer.put(this.buffer());
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output) {
+		ByteBuffer bytes = this.buffer();
+		byte[] copy = new byte[Math.min(bytes.remaining(), COPY_BUFFER_SIZE)];
+
+		output.writeInt(bytes.remaining());
+		while (bytes.hasRemaining()) {
+			int length = Math.min(bytes.remaining(), copy.length);
+			bytes.get(copy, 0, length);
+			output.writeBytes(copy, 0, length);
+		}
+	}
+
+	@Override
+	public void read(Kryo kryo, Input input) {
+		ByteBuffer bytes = ByteBuffer.allocateDirect(input.readInt());
+		byte[] copy = new byte[Math.min(bytes.remaining(), COPY_BUFFER_SIZE)];
+
+		while (bytes.hasRemaining()) {
+			int length = Math.min(bytes.remaining(), copy.length);
+			input.readBytes(copy, 0, length);
+			bytes.put(copy, 0, length);
+		}
+		bytes.clear();
+
+		this.buffer = bytes;
+		this.words = bytes.getInt(0);
+	}
+
+	@Override
+	public int hashCode() {
+		long h = 1234;
+		for (int i = this.words - 1; i >= 0; i--)
+			h ^= this.getWord(i) * (i + 1);
+
+		return (int) ((h >> 32) ^ h);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof OffHeapBitSet))
+			return false;
+		if (this == obj)
+			return true;
+
+		return this.buffer().equals(((OffHeapBitSet) obj).buffer());
+	}
+}
@@ -0,0 +1,130 @@
+package de.hpi.ddm.structures;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+
+/**
+ * The deserialized large message payloads of one actor system, keyed by the digest of their serialization.
+ * All large message proxies of an actor system share this store: the first proxy that is offered a payload claims it and
+ * receives it, while the other proxies wait for that payload instead of receiving their own copy. Payloads from the store
+ * are handed to every receiver as the same instance, so receivers must not modify them. The store references received
+ * payloads only weakly: a payload stays shared for as long as some receiver still holds it.
+ */
+public class PayloadStore implements Extension {
+
+	private static class Provider extends AbstractExtensionId<PayloadStore> implements ExtensionIdProvider {
+
+		private static final Provider PROVIDER = new Provider();
+
+		@Override
+		public Provider lookup() {
+			return PROVIDER;
+		}
+
+		@Override
+		public PayloadStore createExtension(ExtendedActorSystem system) {
+			return new PayloadStore();
+		}
+	}
+
+	/**
+	 * @param system the actor system
+	 * @return the store of the given actor system
+	 */
+	public static PayloadStore get(ActorSystem system) {
+		return Provider.PROVIDER.get(system);
+	}
+
+	private static class Payload extends WeakReference<Object> {
+
+		private final ByteBuffer key;
+
+		private Payload(ByteBuffer key, Object payload, ReferenceQueue<Object> queue) {
+			super(payload, queue);
+			this.key = key;
+		}
+	}
+
+	private final Map<ByteBuffer, Payload> payloads = new HashMap<>();
+
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>(); // Payloads that no receiver holds anymore
+
+	private final Map<ByteBuffer, CompletableFuture<Object>> claims = new HashMap<>(); // Payloads that some proxy receives
+
+	private PayloadStore() {
+	}
+
+	/**
+	 * Offer a payload to this store.
+	 * @param digest the digest of the payload's serialization
+	 * @return the payload, which is complete if the store holds it already and pending if another proxy receives it;
+	 * {@code null} if the caller has claimed the payload and must {@link #put(byte[], Object)} or
+	 * {@link #abandon(byte[], Throwable)} it
+	 */
+	public synchronized CompletableFuture<Object> offer(byte[] digest) {
+		this.expunge();
+
+		ByteBuffer key = ByteBuffer.wrap(digest);
+		Payload reference = this.payloads.get(key);
+		Object payload = (reference == null) ? null : reference.get();
+		if (payload != null)
+			return CompletableFuture.completedFuture(payload);
+
+		CompletableFuture<Object> claim = this.claims.get(key);
+		if (claim != null)
+			return claim;
+
+		this.claims.put(key, new CompletableFuture<>());
+		return null;
+	}
+
+	/**
+	 * Store a claimed payload and hand it to the proxies that wait for it.
+	 * @param digest the digest of the payload's serialization
+	 * @param payload the deserialized payload
+	 */
+	public void put(byte[] digest, Object payload) {
+		CompletableFuture<Object> claim;
+		synchronized (this) {
+			ByteBuffer key = ByteBuffer.wrap(digest);
+			this.expunge();
+			claim = this.claims.remove(key);
+			this.payloads.put(key, new Payload(key, payload, this.collected));
+		}
+		if (claim != null)
+			claim.complete(payload);
+	}
+
+	/**
+	 * Give up a claimed payload, e.g., because its transfer failed; the proxies that wait for it fail as well.
+	 * @param digest the digest of the payload's serialization
+	 * @param cause the reason
+	 */
+	public void abandon(byte[] digest, Throwable cause) {
+		CompletableFuture<Object> claim;
+		synchronized (this) {
+			claim = this.claims.remove(ByteBuffer.wrap(digest));
+		}
+		if (claim != null)
+			claim.completeExceptionally(cause);
+	}
+
+	private void expunge() {
+		Reference<?> reference;
+		while ((reference = this.collected.poll()) != null) {
+			Payload payload = (Payload) reference;
+			this.payloads.remove(payload.key, payload); // The key may hold a newer payload already
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package de.hpi.ddm.structures;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import de.hpi.ddm.actors.LargeMessageProxy;
+
+/**
+ * The slots for the streamed transfers that the large message proxies of one actor system send at once. The serialization
+ * of a streamed transfer occupies a thread of the serializer dispatcher from its first chunk to its last, and blocks whenever
+ * its receiver has no credit left. There is one slot per thread of that dispatcher, so every transfer that has a slot also
+ * has a thread; the other transfers wait for a slot before they are announced to their receivers.
+ */
+public class TransferSlots implements Extension {
+
+	private static class Provider extends AbstractExtensionId<TransferSlots> implements ExtensionIdProvider {
+
+		private static final Provider PROVIDER = new Provider();
+
+		@Override
+		public Provider lookup() {
+			return PROVIDER;
+		}
+
+		@Override
+		public TransferSlots createExtension(ExtendedActorSystem system) {
+			return new TransferSlots(system.settings().config().getInt(LargeMessageProxy.SERIALIZER + ".thread-pool-executor.fixed-pool-size"));
+		}
+	}
+
+	/**
+	 * @param system the actor system
+	 * @return the slots of the given actor system
+	 */
+	public static TransferSlots get(ActorSystem system) {
+		return Provider.PROVIDER.get(system);
+	}
+
+	private int free; // Number of slots that no transfer occupies
+
+	private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>(); // Transfers that wait for a slot, first come first served
+
+	private TransferSlots(int slots) {
+		this.free = slots;
+	}
+
+	/**
+	 * Take a slot for a transfer.
+	 * @return a future that completes when the transfer occupies a slot, which is at once if one is free; cancel the future
+	 * to stop waiting, or {@link #release()} the slot once it is completed
+	 */
+	public synchronized CompletableFuture<Void> acquire() {
+		if (this.free > 0) {
+			this.free--;
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<Void> slot = new CompletableFuture<>();
+		this.waiting.add(slot);
+		return slot;
+	}
+
+	/**
+	 * Free the slot of a transfer; the transfer that waits longest takes it over.
+	 */
+	public void release() {
+		CompletableFuture<Void> next;
+		synchronized (this) {
+			do {
+				next = this.waiting.poll();
+				if (next == null) {
+					this.free++;
+					return;
+				}
+			} while (next.isCancelled());
+		}
+		if (!next.complete(null)) // Cancelled in the meantime
+			this.release();
+	}
+}
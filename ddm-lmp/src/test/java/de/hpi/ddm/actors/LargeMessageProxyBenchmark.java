@@ -0,0 +1,268 @@
+package de.hpi.ddm.actors;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Address;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Props;
+import de.hpi.ddm.configuration.Configuration;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.structures.BloomFilter;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Measures how long the {@link LargeMessageProxy} takes to deliver a message, from the sender's LargeMessage to the
+ * receiver's mailbox, for different payload sizes, payload types, topologies and proxy modes.
+ * The topologies are: "handover" (same actor system, message handed over), "local" (same actor system, but transferred
+ * like to a remote receiver) and "remote" (two actor systems in this JVM that talk via artery over loopback).
+ * The sampled latencies give p50 and p99; the {@link TransferProfiler} adds the throughput in MB/s and the peak heap,
+ * and the gc profiler adds the allocation rate. The main method writes all of them as JSON to
+ * {@code target/lmp-benchmark.json}. The parameter space is large, so narrow it with JMH's {@code -p}, e.g.,
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main LargeMessageProxyBenchmark -p size=1048576 -p topology=remote
+ * -prof gc -prof de.hpi.ddm.actors.LargeMessageProxyBenchmark\$TransferProfiler -rf json}.
+ * BloomFilters hold at most 2^31 - 1 bits, so the 1 GB bloom payload fails its setup and is skipped. The other 1 GB
+ * payloads need more than the default heap of the fork, e.g., {@code -jvmArgsAppend -Xmx12g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LargeMessageProxyBenchmark {
+
+	private static final FiniteDuration TIMEOUT = Duration.create(5, TimeUnit.MINUTES);
+
+	private static final int STRING_LENGTH = 32;	// The average length of the Strings of a strings payload
+	private static final int NODE_SIZE = 16;		// The approximate number of serialized bytes per node of a graph payload
+	private static final int NODE_FANOUT = 4;
+
+	@Param({ "1024", "1048576", "67108864", "1073741824" })
+	private int size;				// The approximate number of serialized bytes of the payload
+
+	@Param({ "bloom", "strings", "graph" })
+	private String payloadType;
+
+	@Param({ "handover", "local", "remote" })
+	private String topology;
+
+	@Param({ "stream", "buffered" })
+	private String mode;
+
+	private ActorSystem sendingSystem;
+	private ActorSystem receivingSystem;
+	private ActorRef sender;
+	private ActorRef receiver;
+	private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+	private Object payload;
+
+	// One node of a graph payload
+	public static class Node {
+		private int id;
+		private double weight;
+		private Node[] children;
+
+		public Node() {
+		}
+
+		private Node(int id, double weight) {
+			this.id = id;
+			this.weight = weight;
+		}
+	}
+
+	// Sends large messages via its proxy and puts all other messages into the queue of received messages
+	private static class Endpoint extends AbstractActor {
+
+		private final ActorRef largeMessageProxy = this.context().actorOf(LargeMessageProxy.props(), LargeMessageProxy.DEFAULT_NAME);
+		private final BlockingQueue<Object> received;
+
+		private Endpoint(BlockingQueue<Object> received) {
+			this.received = received;
+		}
+
+		private static Props props(BlockingQueue<Object> received) {
+			return Props.create(Endpoint.class, () -> new Endpoint(received));
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder()
+					.match(LargeMessageProxy.LargeMessage.class, message -> this.largeMessageProxy.tell(message, this.self()))
+					.matchAny(this.received::add)
+					.build();
+		}
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		Configuration c = ConfigurationSingleton.get();
+		c.setStreamSerialization(this.mode.equals("stream"));
+		c.setLocalHandOver(this.topology.equals("handover"));
+		c.setPayloadSharing(false); // otherwise, the receivers would keep the payload and every transfer after the first would be skipped
+
+		this.payload = payload(this.payloadType, this.size, new Random(42));
+
+		this.sendingSystem = actorSystem("sender");
+		this.receivingSystem = this.topology.equals("remote") ? actorSystem("receiver") : this.sendingSystem;
+		this.sender = this.sendingSystem.actorOf(Endpoint.props(this.received), "sender");
+		ActorRef receiver = this.receivingSystem.actorOf(Endpoint.props(this.received), "receiver");
+
+		// A reference that the sending system resolves itself goes through artery; the receiving system's own reference would not
+		Address address = ((ExtendedActorSystem) this.receivingSystem).provider().getDefaultAddress();
+		this.receiver = Await.result(this.sendingSystem.actorSelection(receiver.path().toStringWithAddress(address)).resolveOne(TIMEOUT), TIMEOUT);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		Await.ready(this.sendingSystem.terminate(), TIMEOUT);
+		Await.ready(this.receivingSystem.terminate(), TIMEOUT);
+
+		Configuration defaults = new Configuration();
+		Configuration c = ConfigurationSingleton.get();
+		c.setStreamSerialization(defaults.isStreamSerialization());
+		c.setLocalHandOver(defaults.isLocalHandOver());
+		c.setPayloadSharing(defaults.isPayloadSharing());
+	}
+
+	@Benchmark
+	public Object transfer() throws InterruptedException {
+		this.sender.tell(new LargeMessageProxy.LargeMessage<>(this.payload, this.receiver), ActorRef.noSender());
+		Object message = this.received.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+		if (message == null)
+			throw new IllegalStateException("The payload did not arrive within " + TIMEOUT + ".");
+		return message;
+	}
+
+	private static ActorSystem actorSystem(String name) {
+		Config config = ConfigFactory.parseString(
+				"akka.actor.provider = remote\n" +
+				"akka.extensions = []\n" +
+				"akka.loglevel = WARNING\n" +
+				"akka.remote.artery.canonical.hostname = \"127.0.0.1\"\n" +
+				"akka.remote.artery.canonical.port = 0")
+			.withFallback(ConfigFactory.load("application"));
+		return ActorSystem.create(name, config);
+	}
+
+	private static Object payload(String type, int size, Random random) {
+		switch (type) {
+			case "bloom":
+				if (size > Integer.MAX_VALUE / 8)
+					throw new IllegalArgumentException("A BloomFilter cannot hold " + size + " bytes.");
+				return new BloomFilter(size * 8, true);
+			case "strings":
+				String[] strings = new String[Math.max(1, size / (STRING_LENGTH + 1))];
+				char[] chars = new char[2 * STRING_LENGTH];
+				for (int i = 0; i < strings.length; i++) {
+					int length = 1 + random.nextInt(chars.length - 1);
+					for (int j = 0; j < length; j++)
+						chars[j] = (char) ('a' + random.nextInt(26));
+					strings[i] = new String(chars, 0, length);
+				}
+				return strings;
+			case "graph":
+				// A tree that is built breadth first, so that it is shallow enough for Kryo's recursive serialization
+				int nodes = Math.max(1, size / NODE_SIZE);
+				Node root = new Node(0, random.nextDouble());
+				Queue<Node> parents = new ArrayDeque<>();
+				parents.add(root);
+				for (int id = 1; id < nodes; ) {
+					Node parent = parents.remove();
+					parent.children = new Node[Math.min(NODE_FANOUT, nodes - id)];
+					for (int i = 0; i < parent.children.length; i++) {
+						parent.children[i] = new Node(id++, random.nextDouble());
+						parents.add(parent.children[i]);
+					}
+				}
+				return root;
+			default:
+				throw new IllegalArgumentException("Unknown payload type " + type);
+		}
+	}
+
+	/**
+	 * Reports the throughput of the transfers, derived from the size parameter and the mean latency, and the peak heap
+	 * of each iteration, i.e., the sum of the peak usages of the heap memory pools.
+	 */
+	public static class TransferProfiler implements InternalProfiler {
+
+		@Override
+		public String getDescription() {
+			return "Throughput in MB/s and peak heap of large message transfers";
+		}
+
+		@Override
+		public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				if (pool.getType() == MemoryType.HEAP)
+					pool.resetPeakUsage();
+		}
+
+		@Override
+		public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+			long peakHeap = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				if (pool.getType() == MemoryType.HEAP)
+					peakHeap += pool.getPeakUsage().getUsed();
+
+			double megabytes = Double.parseDouble(benchmarkParams.getParam("size")) / (1024 * 1024);
+			double seconds = result.getPrimaryResult().getScore() / benchmarkParams.getTimeUnit().convert(1, TimeUnit.SECONDS);
+			return Arrays.asList(
+					new ScalarResult("transfer.throughput", megabytes / seconds, "MB/s", AggregationPolicy.AVG),
+					new ScalarResult("transfer.peakHeap", peakHeap / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(LargeMessageProxyBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.addProfiler(TransferProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/lmp-benchmark.json")
+				.build()).run();
+	}
+}
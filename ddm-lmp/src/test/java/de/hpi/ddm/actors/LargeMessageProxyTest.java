@@ -1,8 +1,19 @@
 package de.hpi.ddm.actors;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
 
 import org.junit.After;
 import org.junit.Before;
@@ -13,9 +24,11 @@ import com.typesafe.config.ConfigFactory;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
+import akka.actor.ActorSelection;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.testkit.javadsl.TestKit;
+import akka.util.ByteString;
 import de.hpi.ddm.MasterSystem;
 import de.hpi.ddm.configuration.Configuration;
 import de.hpi.ddm.configuration.ConfigurationSingleton;
@@ -27,42 +40,158 @@ public class LargeMessageProxyTest {
 	static class TestActor extends AbstractLoggingActor {
 
 		public static Props props(ActorRef parent) {
-			return Props.create(TestActor.class, () -> new TestActor(parent));
+			return props(parent, LargeMessageProxy.props());
 		}
 
-		public TestActor(ActorRef parent) {
+		public static Props props(ActorRef parent, Props largeMessageProxy) {
+			return Props.create(TestActor.class, () -> new TestActor(parent, largeMessageProxy, false));
+		}
+
+		// An actor whose proxy starts only when it is told to, so that it misses what is sent to its proxy before
+		public static Props deferred(ActorRef parent) {
+			return Props.create(TestActor.class, () -> new TestActor(parent, LargeMessageProxy.props(), true));
+		}
+
+		// Tells a deferred actor to start its proxy
+		static class Start {
+		}
+
+		public TestActor(ActorRef parent, Props largeMessageProxy, boolean deferred) {
 			this.parent = parent;
+			this.largeMessageProxyProps = largeMessageProxy;
+			if (!deferred)
+				this.largeMessageProxy = this.context().actorOf(largeMessageProxy, LargeMessageProxy.DEFAULT_NAME);
 		}
 
 		ActorRef parent = null;
-		ActorRef largeMessageProxy = this.context().actorOf(LargeMessageProxy.props(), LargeMessageProxy.DEFAULT_NAME);
+		Props largeMessageProxyProps = null;
+		ActorRef largeMessageProxy = null;
 		
 		@Override
 		public Receive createReceive() {
 			return receiveBuilder()
+					.match(Start.class, start -> this.largeMessageProxy = this.context().actorOf(this.largeMessageProxyProps, LargeMessageProxy.DEFAULT_NAME))
 					.match(LargeMessageProxy.LargeMessage.class, message -> this.largeMessageProxy.tell(message, this.self()))
+					.match(LargeMessageProxy.BroadcastMessage.class, message -> this.largeMessageProxy.tell(message, this.self()))
 					.match(Object.class, message -> this.parent.tell(message, this.self()))
 					.build();
 		}
 	}
 
+	// A receiving proxy that loses or corrupts one chunk of the first stream of a transfer, or holds back the chunks until it is released;
+	// a failing proxy holds back the chunks as well and then corrupts one chunk of every stream, so that it gives up the transfer
+	static class FaultyProxy extends LargeMessageProxy {
+
+		enum Fault {
+			LOSE, CORRUPT, HOLD, FAIL
+		}
+
+		// Asks the proxy for the highest attempt whose chunks it received
+		static class Attempts {
+		}
+
+		// Asks the proxy for the number of chunks that it holds back and passes them on
+		static class Release {
+		}
+
+		public static Props props(Fault fault) {
+			return Props.create(FaultyProxy.class, () -> new FaultyProxy(fault));
+		}
+
+		public FaultyProxy(Fault fault) {
+			this.fault = fault;
+		}
+
+		static final int FAULTY_CHUNK = 2;
+
+		final Fault fault;
+		List<LargeMessageProxy.BytesChunk> held = new ArrayList<>();
+		int attempts = 0;
+
+		@Override
+		public Receive createReceive() {
+			Receive proxy = super.createReceive();
+			return receiveBuilder()
+					.match(LargeMessageProxy.BytesChunk.class, chunk -> {
+						LargeMessageProxy.BytesChunk delivered = this.inject(chunk);
+						if (delivered != null)
+							proxy.onMessage().apply(delivered);
+					})
+					.match(Attempts.class, attempts -> this.sender().tell(this.attempts, this.self()))
+					.match(Release.class, release -> {
+						this.sender().tell(this.held.size(), this.self());
+						List<LargeMessageProxy.BytesChunk> held = this.held;
+						this.held = null;
+						for (LargeMessageProxy.BytesChunk chunk : held) {
+							LargeMessageProxy.BytesChunk delivered = this.inject(chunk);
+							if (delivered != null)
+								proxy.onMessage().apply(delivered);
+						}
+					})
+					.build()
+					.orElse(proxy);
+		}
+
+		// Returns the chunk as the link delivers it, or null if it does not arrive (yet)
+		LargeMessageProxy.BytesChunk inject(LargeMessageProxy.BytesChunk chunk) {
+			this.attempts = Math.max(this.attempts, chunk.getAttempt());
+			if ((this.fault == Fault.HOLD || this.fault == Fault.FAIL) && this.held != null) {
+				this.held.add(chunk);
+				return null;
+			}
+			if ((chunk.getAttempt() > 0 && this.fault != Fault.FAIL) || chunk.getSequenceNumber() != FAULTY_CHUNK)
+				return chunk;
+
+			if (this.fault == Fault.LOSE)
+				return null;
+			if (this.fault == Fault.CORRUPT || this.fault == Fault.FAIL) {
+				byte[] bytes = chunk.getBytes().toArray();
+				bytes[bytes.length / 2] ^= 1;
+				return new LargeMessageProxy.BytesChunk(chunk.getTransferID(), chunk.getAttempt(), chunk.getSequenceNumber(), chunk.getChecksum(), ByteString.fromArray(bytes));
+			}
+			return chunk;
+		}
+	}
+
+	// Actors start asynchronously, but a proxy looks up the proxy of a receiver by its path, so it must exist before the receiver is sent to
+	static ActorRef started(ActorRef receiver) {
+		ActorSelection largeMessageProxy = system.actorSelection(receiver.path().child(LargeMessageProxy.DEFAULT_NAME));
+		new TestKit(system).awaitCond(() -> {
+			try {
+				largeMessageProxy.resolveOne(Duration.ofSeconds(1)).toCompletableFuture().join();
+				return true;
+			} catch (CompletionException e) {
+				return false;
+			}
+		});
+		return receiver;
+	}
+
 	@Before
 	public void setUp() throws Exception {
+		this.setUp(ConfigFactory.empty());
+	}
+
+	private void setUp(Config overrides) {
 		final Configuration c = ConfigurationSingleton.get();
 		
-		final Config config = ConfigFactory.parseString(
+		final Config config = overrides.withFallback(ConfigFactory.parseString(
 				"akka.remote.artery.canonical.hostname = \"" + c.getHost() + "\"\n" +
 				"akka.remote.artery.canonical.port = " + c.getPort() + "\n" +
 				"akka.cluster.roles = [" + MasterSystem.MASTER_ROLE + "]\n" +
 				"akka.cluster.seed-nodes = [\"akka://" + c.getActorSystemName() + "@" + c.getMasterHost() + ":" + c.getMasterPort() + "\"]")
-			.withFallback(ConfigFactory.load("application"));
+			.withFallback(ConfigFactory.load("application")));
 		
 		system = ActorSystem.create(c.getActorSystemName(), config);
+		
+		// All actors of these tests share one actor system, so the proxies must transfer messages as if they were remote
+		c.setLocalHandOver(false);
 	}
 
 	@After
 	public void tearDown() throws Exception {
 		TestKit.shutdownActorSystem(system);
+		ConfigurationSingleton.get().setLocalHandOver(true);
 	}
 
 	@Test
@@ -70,7 +199,7 @@ public class LargeMessageProxyTest {
 		new TestKit(system) {
 			{
 				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
-				ActorRef receiver = system.actorOf(TestActor.props(this.getRef()), "receiver");
+				ActorRef receiver = started(system.actorOf(TestActor.props(this.getRef()), "receiver"));
 				
 				within(Duration.ofSeconds(1), () -> {
 					// Test if a small message gets passed from one proxy to the other
@@ -94,7 +223,7 @@ public class LargeMessageProxyTest {
 		new TestKit(system) {
 			{
 				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
-				ActorRef receiver = system.actorOf(TestActor.props(this.getRef()), "receiver");
+				ActorRef receiver = started(system.actorOf(TestActor.props(this.getRef()), "receiver"));
 				
 				within(Duration.ofSeconds(2), () -> {
 					// Test if a large message gets passed from one proxy to the other
@@ -115,4 +244,424 @@ public class LargeMessageProxyTest {
 			}
 		};
 	}
+
+	@Test
+	public void testConcurrentLargeMessageSending() {
+		new TestKit(system) {
+			{
+				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+				ActorRef receiver1 = started(system.actorOf(TestActor.props(this.getRef()), "receiver1"));
+				ActorRef receiver2 = started(system.actorOf(TestActor.props(this.getRef()), "receiver2"));
+				
+				within(Duration.ofSeconds(2), () -> {
+					// Test if overlapping large messages from one proxy to several others arrive intact
+					String[] longMessages = new String[4];
+					for (int m = 0; m < longMessages.length; m++) {
+						StringBuffer longMessageBuffer = new StringBuffer("Hello, this is String message " + m + " with a very large payload!");
+						for (int i = 0; i < 20000; i++)
+							longMessageBuffer.append("<content" + m + ">");
+						longMessages[m] = longMessageBuffer.toString();
+					}
+					
+					for (int m = 0; m < longMessages.length; m++)
+						sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessages[m], (m % 2 == 0) ? receiver1 : receiver2), this.getRef());
+					this.expectMsgAllOf((Object[]) longMessages);
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage();
+					return null;
+				});
+			}
+		};
+	}
+
+	@Test
+	public void testRandomLargeMessageSending() {
+		new TestKit(system) {
+			{
+				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+				ActorRef receiver = started(system.actorOf(TestActor.props(this.getRef()), "receiver"));
+				
+				within(Duration.ofSeconds(2), () -> {
+					// Test if an incompressible message, which is sent raw, arrives intact
+					byte[] randomMessage = new byte[1024 * 1024];
+					new Random(42).nextBytes(randomMessage);
+					
+					sender.tell(new LargeMessageProxy.LargeMessage<byte[]>(randomMessage, receiver), this.getRef());
+					assertArrayEquals(randomMessage, this.expectMsgClass(byte[].class));
+					assertTrue(this.getLastSender().equals(receiver));
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage();
+					return null;
+				});
+			}
+		};
+	}
+
+	@Test
+	public void testLargeMessageBroadcasting() {
+		new TestKit(system) {
+			{
+				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+				List<ActorRef> receivers = new ArrayList<>();
+				for (int r = 0; r < 6; r++)
+					receivers.add(started(system.actorOf(TestActor.props(this.getRef()), "receiver" + r)));
+				
+				within(Duration.ofSeconds(2), () -> {
+					// Test if a broadcast, which receiver proxies relay to each other, reaches every receiver once
+					StringBuffer longMessageBuffer = new StringBuffer("Hello, this is a String message that is broadcast to many receivers!");
+					for (int i = 0; i < 20000; i++)
+						longMessageBuffer.append("<content>");
+					String longMessage = longMessageBuffer.toString();
+					
+					sender.tell(new LargeMessageProxy.BroadcastMessage<String>(longMessage, receivers), this.getRef());
+					Set<ActorRef> reached = new HashSet<>();
+					Object firstReceived = null;
+					for (int r = 0; r < receivers.size(); r++) {
+						Object received = this.expectMsg(longMessage);
+						reached.add(this.getLastSender());
+						
+						// All receivers are in the same actor system, so they share one deserialized instance
+						if (firstReceived == null)
+							firstReceived = received;
+						assertSame(firstReceived, received);
+					}
+					assertEquals(new HashSet<>(receivers), reached);
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage();
+					return null;
+				});
+			}
+		};
+	}
+
+	@Test
+	public void testUnansweredInquiryRepeating() {
+		new TestKit(system) {
+			{
+				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+				ActorRef receiver = system.actorOf(TestActor.deferred(this.getRef()), "receiver");
+				
+				within(Duration.ofSeconds(15), () -> {
+					// Test if a transfer whose inquiry finds no proxy at the receiver is announced again until the proxy answers
+					String longMessage = longMessage("Hello, this is a String message for a proxy that starts late!");
+					
+					sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver), this.getRef());
+					this.expectNoMessage(Duration.ofSeconds(1));
+					
+					receiver.tell(new TestActor.Start(), this.getRef());
+					this.expectMsg(longMessage);
+					assertTrue(this.getLastSender().equals(receiver));
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage(Duration.ofSeconds(1));
+					return null;
+				});
+			}
+		};
+	}
+
+	@Test
+	public void testMoreTransfersThanThreads() throws Exception {
+		// Two threads each for the (de)serializations of all proxies, which send and receive in the same actor system
+		this.tearDown();
+		this.setUp(ConfigFactory.parseString(
+				LargeMessageProxy.SERIALIZER + ".thread-pool-executor.fixed-pool-size = 2\n" +
+				LargeMessageProxy.DESERIALIZER + ".thread-pool-executor.fixed-pool-size = 2"));
+		
+		new TestKit(system) {
+			{
+				List<ActorRef> senders = new ArrayList<>();
+				List<ActorRef> receivers = new ArrayList<>();
+				for (int i = 0; i < 4; i++) {
+					senders.add(system.actorOf(TestActor.props(this.getRef()), "sender" + i));
+					receivers.add(started(system.actorOf(TestActor.props(this.getRef()), "receiver" + i)));
+				}
+				
+				within(Duration.ofSeconds(20), () -> {
+					// Test if more streamed transfers than threads wait for each other instead of blocking each other; every message
+					// spans more chunks than the receive window, so its serialization blocks until its deserialization has a thread
+					Random random = new Random(42);
+					List<byte[]> messages = new ArrayList<>();
+					for (int i = 0; i < 8; i++) {
+						byte[] message = new byte[(LargeMessageProxy.RECEIVE_WINDOW + 8) * LargeMessageProxy.CHUNK_SIZE];
+						random.nextBytes(message);
+						messages.add(message);
+						senders.get(i % senders.size()).tell(new LargeMessageProxy.LargeMessage<byte[]>(message, receivers.get(i / 2)), this.getRef());
+					}
+					
+					for (int i = 0; i < messages.size(); i++) {
+						byte[] received = this.expectMsgClass(byte[].class);
+						byte[] expected = messages.stream().filter(message -> Arrays.equals(message, received)).findFirst().orElse(null);
+						assertTrue(expected != null);
+						assertTrue(this.getLastSender().equals(receivers.get(messages.indexOf(expected) / 2)));
+					}
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage(Duration.ofSeconds(1));
+					return null;
+				});
+			}
+		};
+	}
+
+	@Test
+	public void testBufferedLargeMessageSending() {
+		ConfigurationSingleton.get().setStreamSerialization(false);
+		try {
+			this.testConcurrentLargeMessageSending();
+		} finally {
+			ConfigurationSingleton.get().setStreamSerialization(true);
+		}
+	}
+
+	@Test
+	public void testSpilledLargeMessageSending() throws Exception {
+		// Every received message goes to a memory-mapped file, which is also the source of the relayed broadcast chunks
+		ConfigurationSingleton.get().setStreamSerialization(false);
+		ConfigurationSingleton.get().setSpillThreshold(0);
+		try {
+			this.testRandomLargeMessageSending();
+			this.tearDown();
+			this.setUp();
+			this.testLargeMessageBroadcasting();
+		} finally {
+			ConfigurationSingleton.get().setStreamSerialization(true);
+			ConfigurationSingleton.get().setSpillThreshold(new Configuration().getSpillThreshold());
+		}
+	}
+
+	@Test
+	public void testLocalLargeMessageHandOver() {
+		ConfigurationSingleton.get().setLocalHandOver(true);
+		ConfigurationSingleton.get().setVerifySerializability(true);
+		try {
+			new TestKit(system) {
+				{
+					ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+					ActorRef receiver = started(system.actorOf(TestActor.props(this.getRef()), "receiver"));
+					
+					within(Duration.ofSeconds(1), () -> {
+						// Test if a receiver in the same actor system gets the message itself instead of a copy
+						byte[] largeMessage = new byte[16 * 1024 * 1024];
+						
+						sender.tell(new LargeMessageProxy.LargeMessage<byte[]>(largeMessage, receiver), this.getRef());
+						assertSame(largeMessage, this.expectMsgClass(byte[].class));
+						assertTrue(this.getLastSender().equals(receiver));
+						
+						// Will wait for the rest of the within duration
+						expectNoMessage();
+						return null;
+					});
+				}
+			};
+		} finally {
+			ConfigurationSingleton.get().setVerifySerializability(false);
+		}
+	}
+
+	@Test
+	public void testStreamedPayloadSharing() {
+		ConfigurationSingleton.get().setStreamedPayloadSharing(true);
+		try {
+			new TestKit(system) {
+				{
+					ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+					ActorRef receiver1 = started(system.actorOf(TestActor.props(this.getRef()), "receiver1"));
+					ActorRef receiver2 = started(system.actorOf(TestActor.props(this.getRef()), "receiver2"));
+					
+					within(Duration.ofSeconds(2), () -> {
+						// Test if a message that is streamed with an announced digest is received once per actor system and shared
+						String longMessage = longMessage("Hello, this is a String message that two receivers get!");
+						
+						sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver1), this.getRef());
+						sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver2), this.getRef());
+						Object received1 = this.expectMsg(longMessage);
+						Object received2 = this.expectMsg(longMessage);
+						assertNotSame(longMessage, received1);
+						assertSame(received1, received2);
+						
+						// Will wait for the rest of the within duration
+						expectNoMessage();
+						return null;
+					});
+				}
+			};
+		} finally {
+			ConfigurationSingleton.get().setStreamedPayloadSharing(false);
+		}
+	}
+
+	@Test
+	public void testStreamDigestSharing() {
+		new TestKit(system) {
+			{
+				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+				ActorRef receiver1 = started(system.actorOf(TestActor.props(this.getRef()), "receiver1"));
+				ActorRef receiver2 = started(system.actorOf(TestActor.props(this.getRef()), "receiver2"));
+				
+				within(Duration.ofSeconds(2), () -> {
+					// Test if a message that was digested while it was streamed is shared with a later transfer that announces its digest
+					String longMessage = longMessage("Hello, this is a String message that is streamed first and buffered then!");
+					
+					sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver1), this.getRef());
+					Object received1 = this.expectMsg(longMessage);
+					this.expectNoMessage(Duration.ofMillis(200)); // the digest follows the last chunk
+					
+					ConfigurationSingleton.get().setStreamSerialization(false);
+					try {
+						sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver2), this.getRef());
+						assertSame(received1, this.expectMsg(longMessage));
+					} finally {
+						ConfigurationSingleton.get().setStreamSerialization(true);
+					}
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage();
+					return null;
+				});
+			}
+		};
+	}
+
+	@Test
+	public void testAbandonedPayloadSharing() {
+		ConfigurationSingleton.get().setStreamedPayloadSharing(true);
+		try {
+			new TestKit(system) {
+				{
+					ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+					ActorRef failing = started(system.actorOf(TestActor.props(this.getRef(), FaultyProxy.props(FaultyProxy.Fault.FAIL)), "failing"));
+					ActorRef receiver1 = started(system.actorOf(TestActor.props(this.getRef()), "receiver1"));
+					ActorRef receiver2 = started(system.actorOf(TestActor.props(this.getRef()), "receiver2"));
+					
+					within(Duration.ofSeconds(10), () -> {
+						// Test if the proxies that wait for a shared payload receive their own copies when the proxy that claimed it fails
+						Random random = new Random(42);
+						StringBuffer longMessageBuffer = new StringBuffer();
+						for (int i = 0; i < 2 * 1024 * 1024; i++)
+							longMessageBuffer.append((char) ('0' + random.nextInt(10)));
+						String longMessage = longMessageBuffer.toString();
+						
+						sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, failing), this.getRef());
+						this.expectNoMessage(Duration.ofMillis(500)); // the failing proxy claims the payload
+						sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver1), this.getRef());
+						sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver2), this.getRef());
+						this.expectNoMessage(Duration.ofMillis(500)); // the other proxies wait for it
+						
+						system.actorSelection(failing.path().child(LargeMessageProxy.DEFAULT_NAME)).tell(new FaultyProxy.Release(), this.getRef());
+						assertTrue(this.expectMsgClass(Integer.class) > 0);
+						
+						Set<ActorRef> reached = new HashSet<>();
+						for (int r = 0; r < 2; r++) {
+							this.expectMsg(longMessage);
+							reached.add(this.getLastSender());
+						}
+						assertEquals(new HashSet<>(Arrays.asList(receiver1, receiver2)), reached);
+						
+						system.actorSelection(failing.path().child(LargeMessageProxy.DEFAULT_NAME)).tell(new FaultyProxy.Attempts(), this.getRef());
+						this.expectMsg(LargeMessageProxy.MAX_RESUMES);
+						
+						// Will wait for the rest of the within duration
+						expectNoMessage(Duration.ofSeconds(1));
+						return null;
+					});
+				}
+			};
+		} finally {
+			ConfigurationSingleton.get().setStreamedPayloadSharing(false);
+		}
+	}
+
+	static String longMessage(String prefix) {
+		StringBuffer longMessageBuffer = new StringBuffer(prefix);
+		for (int i = 0; i < 20000; i++)
+			longMessageBuffer.append("<content>");
+		return longMessageBuffer.toString();
+	}
+
+	@Test
+	public void testLostChunkResuming() {
+		this.testResuming(FaultyProxy.Fault.LOSE);
+	}
+
+	@Test
+	public void testCorruptedChunkResuming() {
+		this.testResuming(FaultyProxy.Fault.CORRUPT);
+	}
+
+	@Test
+	public void testBufferedChunkResuming() throws Exception {
+		ConfigurationSingleton.get().setStreamSerialization(false);
+		try {
+			this.testResuming(FaultyProxy.Fault.LOSE);
+			this.tearDown();
+			this.setUp();
+			this.testResuming(FaultyProxy.Fault.CORRUPT);
+		} finally {
+			ConfigurationSingleton.get().setStreamSerialization(true);
+		}
+	}
+
+	private void testResuming(FaultyProxy.Fault fault) {
+		new TestKit(system) {
+			{
+				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+				ActorRef receiver = started(system.actorOf(TestActor.props(this.getRef(), FaultyProxy.props(fault)), "receiver"));
+				
+				within(Duration.ofSeconds(3), () -> {
+					// Test if a transfer that loses or corrupts a chunk is resumed from that chunk and its message arrives intact;
+					// the message is compressed, so a resumed serialization must produce the same chunks again
+					Random random = new Random(42);
+					StringBuffer longMessageBuffer = new StringBuffer();
+					for (int i = 0; i < 2 * 1024 * 1024; i++)
+						longMessageBuffer.append((char) ('0' + random.nextInt(10)));
+					String longMessage = longMessageBuffer.toString();
+					
+					sender.tell(new LargeMessageProxy.LargeMessage<String>(longMessage, receiver), this.getRef());
+					this.expectMsg(longMessage);
+					assertTrue(this.getLastSender().equals(receiver));
+					
+					system.actorSelection(receiver.path().child(LargeMessageProxy.DEFAULT_NAME)).tell(new FaultyProxy.Attempts(), this.getRef());
+					this.expectMsg(1);
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage();
+					return null;
+				});
+			}
+		};
+	}
+
+	@Test
+	public void testCreditLimitsChunksInFlight() {
+		new TestKit(system) {
+			{
+				ActorRef sender = system.actorOf(TestActor.props(this.getRef()), "sender");
+				ActorRef receiver = started(system.actorOf(TestActor.props(this.getRef(), FaultyProxy.props(FaultyProxy.Fault.HOLD)), "receiver"));
+				
+				within(Duration.ofSeconds(3), () -> {
+					// Test if the sender stops at the receiver's credit while no chunk is taken, and goes on once the chunks are taken
+					byte[] randomMessage = new byte[4 * 1024 * 1024];
+					new Random(42).nextBytes(randomMessage);
+					
+					sender.tell(new LargeMessageProxy.LargeMessage<byte[]>(randomMessage, receiver), this.getRef());
+					this.expectNoMessage(Duration.ofMillis(500));
+					
+					system.actorSelection(receiver.path().child(LargeMessageProxy.DEFAULT_NAME)).tell(new FaultyProxy.Release(), this.getRef());
+					int held = this.expectMsgClass(Integer.class);
+					assertTrue(held > 0 && held <= LargeMessageProxy.RECEIVE_WINDOW);
+					
+					assertArrayEquals(randomMessage, this.expectMsgClass(byte[].class));
+					assertTrue(this.getLastSender().equals(receiver));
+					
+					// Will wait for the rest of the within duration
+					expectNoMessage();
+					return null;
+				});
+			}
+		};
+	}
 }
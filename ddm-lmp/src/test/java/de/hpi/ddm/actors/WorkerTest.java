@@ -0,0 +1,83 @@
+package de.hpi.ddm.actors;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.TestActorRef;
+import akka.testkit.javadsl.TestKit;
+import de.hpi.ddm.MasterSystem;
+import de.hpi.ddm.configuration.Configuration;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.structures.BitSet;
+import de.hpi.ddm.structures.BloomFilter;
+
+public class WorkerTest {
+
+	static ActorSystem system;
+
+	@BeforeClass
+	public static void setUp() {
+		final Configuration c = ConfigurationSingleton.get();
+
+		final Config config = ConfigFactory.parseString(
+				"akka.remote.artery.canonical.hostname = \"" + c.getHost() + "\"\n" +
+				"akka.remote.artery.canonical.port = " + c.getPort() + "\n" +
+				"akka.cluster.roles = [" + MasterSystem.MASTER_ROLE + "]\n" +
+				"akka.cluster.seed-nodes = [\"akka://" + c.getActorSystemName() + "@" + c.getMasterHost() + ":" + c.getMasterPort() + "\"]")
+			.withFallback(ConfigFactory.load("application"));
+
+		system = ActorSystem.create(c.getActorSystemName(), config);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestKit.shutdownActorSystem(system);
+	}
+
+	@Test
+	public void testDeltasAreAppliedInVersionOrder() {
+		BloomFilter original = new BloomFilter(1 << 16, 5, false);
+		original.trackChanges();
+		BloomFilter data = original.snapshot();
+
+		List<BloomFilter.Delta> deltas = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 100; j++)
+				original.add(new BitSet(new long[] { i, j }));
+			deltas.add(original.delta());
+		}
+
+		// The worker processes the messages synchronously and applies the deltas to the very instance that it receives
+		TestActorRef<Worker> worker = TestActorRef.create(system, Worker.props());
+
+		// Deltas that arrive before the data are buffered
+		worker.tell(deltas.get(2), ActorRef.noSender());
+		worker.tell(deltas.get(0), ActorRef.noSender());
+		worker.tell(data, ActorRef.noSender());
+		assertEquals(1, data.getVersion());
+
+		// A missing delta is buffered until its predecessor arrives
+		worker.tell(deltas.get(3), ActorRef.noSender());
+		assertEquals(1, data.getVersion());
+		worker.tell(deltas.get(1), ActorRef.noSender());
+		assertEquals(4, data.getVersion());
+		assertEquals(original.getBits(), data.getBits());
+
+		// Deltas that arrive again change nothing
+		worker.tell(deltas.get(1), ActorRef.noSender());
+		worker.tell(deltas.get(3), ActorRef.noSender());
+		assertEquals(4, data.getVersion());
+		assertEquals(original.getBits(), data.getBits());
+	}
+}
@@ -0,0 +1,118 @@
+package de.hpi.ddm.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import akka.util.ByteString;
+
+public class ChunkInputStreamTest {
+
+	private static byte[] readAll(ChunkInputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[7];
+		int n;
+		while ((n = in.read(buffer, 0, buffer.length)) >= 0)
+			bytes.write(buffer, 0, n);
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testReadsChunksInOrder() throws IOException {
+		ChunkInputStream in = new ChunkInputStream();
+		in.add(ByteString.fromString("Hello, "), () -> {});
+		in.add(ByteString.empty(), () -> {});
+		in.add(ByteString.fromString("chunked world!"), () -> {});
+		in.complete();
+
+		assertEquals('H', in.read());
+		assertEquals(6, in.available()); // The rest of the current chunk
+		assertArrayEquals("ello, chunked world!".getBytes(), readAll(in));
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testCallbackRunsWhenChunkIsTaken() throws IOException {
+		// The callbacks grant the sender's credit, so they must wait for the reader
+		AtomicInteger taken = new AtomicInteger();
+		ChunkInputStream in = new ChunkInputStream();
+		for (int i = 0; i < 3; i++)
+			in.add(ByteString.fromArray(new byte[] { (byte) i, (byte) i }), taken::incrementAndGet);
+		assertEquals(0, taken.get());
+
+		assertEquals(0, in.read());
+		assertEquals(1, taken.get());
+		assertEquals(0, in.read());
+		assertEquals(1, taken.get());
+		assertEquals(1, in.read());
+		assertEquals(2, taken.get());
+	}
+
+	@Test
+	public void testReaderWaitsForChunks() throws Exception {
+		ChunkInputStream in = new ChunkInputStream();
+		CompletableFuture<byte[]> read = CompletableFuture.supplyAsync(() -> {
+			try {
+				return readAll(in);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		in.add(ByteString.fromString("first"), () -> {});
+		try {
+			read.get(200, TimeUnit.MILLISECONDS);
+			fail("The reader did not wait for the end of the stream");
+		} catch (TimeoutException expected) {
+		}
+
+		in.add(ByteString.fromString(" and last"), () -> {});
+		in.complete();
+		assertArrayEquals("first and last".getBytes(), read.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testFailureAfterChunks() throws IOException {
+		IllegalStateException cause = new IllegalStateException("The sender is gone.");
+		ChunkInputStream in = new ChunkInputStream();
+		in.add(ByteString.fromString("abc"), () -> {});
+		in.fail(cause);
+
+		byte[] bytes = new byte[3];
+		assertEquals(3, in.read(bytes, 0, 3));
+		try {
+			in.read();
+			fail("The failed stream did not fail the reader");
+		} catch (IOException e) {
+			assertSame(cause, e.getCause());
+		}
+		assertEquals(-1, in.read()); // The stream has ended
+	}
+
+	@Test
+	public void testCloseRunsCallbacks() throws IOException {
+		// A reader that is done early must not keep the sender waiting for credit
+		AtomicInteger taken = new AtomicInteger();
+		ChunkInputStream in = new ChunkInputStream();
+		in.add(ByteString.fromString("read"), taken::incrementAndGet);
+		in.add(ByteString.fromString("queued"), taken::incrementAndGet);
+		in.add(ByteString.fromString("queued"), taken::incrementAndGet);
+		assertEquals('r', in.read());
+		assertEquals(1, taken.get());
+
+		in.close();
+		assertEquals(3, taken.get());
+		in.add(ByteString.fromString("late"), taken::incrementAndGet);
+		assertEquals(4, taken.get());
+	}
+}
@@ -0,0 +1,167 @@
+package de.hpi.ddm.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.ActorMaterializer;
+import akka.stream.Attributes;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.SinkQueueWithCancel;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import akka.testkit.javadsl.TestKit;
+import akka.util.ByteString;
+
+public class ChunkOutputStreamTest {
+
+	private static final int CHUNK_SIZE = 1000;
+
+	private static ActorSystem system;
+	private static Materializer materializer;
+
+	@BeforeClass
+	public static void setUp() {
+		system = ActorSystem.create("ChunkOutputStreamTest");
+		materializer = ActorMaterializer.create(system);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestKit.shutdownActorSystem(system);
+	}
+
+	private static byte[] bytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+
+	// Writes the bytes in pieces that do not align with the chunks and collects the chunks that the stream receives
+	private static List<ByteString> write(byte[] bytes, int firstChunk) throws Exception {
+		Pair<SourceQueueWithComplete<ByteString>, CompletionStage<List<ByteString>>> stream = Source.<ByteString>queue(1, OverflowStrategy.backpressure())
+				.toMat(Sink.seq(), Keep.both())
+				.run(materializer);
+		try (ChunkOutputStream out = new ChunkOutputStream(stream.first(), CHUNK_SIZE, firstChunk)) {
+			for (int offset = 0; offset < bytes.length; offset += 777)
+				out.write(bytes, offset, Math.min(777, bytes.length - offset));
+		}
+		return stream.second().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	private static CompletableFuture<Void> writeAsync(ChunkOutputStream out, byte[] bytes) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				out.write(bytes);
+				out.close();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	@Test
+	public void testChunksOfFixedSize() throws Exception {
+		byte[] bytes = bytes(10 * CHUNK_SIZE + 123);
+		List<ByteString> chunks = write(bytes, 0);
+
+		assertEquals(11, chunks.size());
+		for (int i = 0; i < 10; i++)
+			assertEquals(CHUNK_SIZE, chunks.get(i).size());
+		assertEquals(123, chunks.get(10).size());
+		assertArrayEquals(bytes, chunks.stream().reduce(ByteString.empty(), ByteString::concat).toArray());
+
+		assertEquals(0, write(new byte[0], 0).size());
+		assertEquals(1, write(bytes(CHUNK_SIZE), 0).size());
+	}
+
+	@Test
+	public void testSkipsLeadingChunks() throws Exception {
+		// A resumed stream writes the same bytes again and hands over the missing chunks only
+		byte[] bytes = bytes(10 * CHUNK_SIZE + 123);
+		List<ByteString> all = write(bytes, 0);
+		List<ByteString> resumed = write(bytes, 4);
+		assertEquals(all.subList(4, all.size()), resumed);
+		assertEquals(0, write(bytes, 11).size());
+	}
+
+	@Test
+	public void testWriterWaitsForTheStream() throws Exception {
+		// A sink that takes a chunk only when it is pulled, as a receiver that grants no credit
+		Pair<SourceQueueWithComplete<ByteString>, SinkQueueWithCancel<ByteString>> stream = Source.<ByteString>queue(1, OverflowStrategy.backpressure())
+				.toMat(Sink.<ByteString>queue().withAttributes(Attributes.inputBuffer(1, 1)), Keep.both())
+				.run(materializer);
+		byte[] bytes = bytes(20 * CHUNK_SIZE);
+		CompletableFuture<Void> writer = writeAsync(new ChunkOutputStream(stream.first(), CHUNK_SIZE), bytes);
+
+		try {
+			writer.get(300, TimeUnit.MILLISECONDS);
+			fail("The writer did not wait for the stream to take its chunks");
+		} catch (TimeoutException expected) {
+		}
+
+		ByteString received = ByteString.empty();
+		for (Optional<ByteString> chunk = pull(stream.second()); chunk.isPresent(); chunk = pull(stream.second()))
+			received = received.concat(chunk.get());
+		writer.get(5, TimeUnit.SECONDS);
+		assertArrayEquals(bytes, received.toArray());
+	}
+
+	private static Optional<ByteString> pull(SinkQueueWithCancel<ByteString> queue) throws Exception {
+		return queue.pull().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testFailReleasesWaitingWriter() throws Exception {
+		Pair<SourceQueueWithComplete<ByteString>, SinkQueueWithCancel<ByteString>> stream = Source.<ByteString>queue(1, OverflowStrategy.backpressure())
+				.toMat(Sink.<ByteString>queue().withAttributes(Attributes.inputBuffer(1, 1)), Keep.both())
+				.run(materializer);
+		ChunkOutputStream out = new ChunkOutputStream(stream.first(), CHUNK_SIZE);
+		CompletableFuture<Void> writer = writeAsync(out, bytes(20 * CHUNK_SIZE));
+		try {
+			writer.get(300, TimeUnit.MILLISECONDS);
+			fail("The writer did not wait for the stream to take its chunks");
+		} catch (TimeoutException expected) {
+		}
+
+		IllegalStateException cause = new IllegalStateException("The receiver is gone.");
+		out.fail(cause);
+		try {
+			writer.get(5, TimeUnit.SECONDS);
+			fail("The failed stream did not fail the writer");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().getCause() instanceof IOException);
+			assertSame(cause, e.getCause().getCause().getCause());
+		}
+
+		// The stream fails as well, after the chunks that it has taken
+		try {
+			while (pull(stream.second()).isPresent())
+				;
+			fail("The stream did not fail");
+		} catch (ExecutionException e) {
+			assertSame(cause, e.getCause());
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package de.hpi.ddm.serialization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import akka.util.ByteString;
+
+public class Crc32cTest {
+
+	// Bit by bit, as the polynomial defines it
+	private static int reference(byte[] bytes, int offset, int length) {
+		int crc = ~0;
+		for (int i = offset; i < offset + length; i++) {
+			crc ^= bytes[i] & 0xff;
+			for (int bit = 0; bit < 8; bit++)
+				crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+		}
+		return ~crc;
+	}
+
+	private static int of(byte[] bytes) {
+		return Crc32c.of(bytes, 0, bytes.length);
+	}
+
+	@Test
+	public void testKnownVectors() {
+		assertEquals(0xE3069283, of("123456789".getBytes(StandardCharsets.US_ASCII)));
+		assertEquals(0, of(new byte[0]));
+
+		// The examples of RFC 3720, B.4
+		byte[] bytes = new byte[32];
+		assertEquals(0x8A9136AA, of(bytes));
+		Arrays.fill(bytes, (byte) 0xff);
+		assertEquals(0x62A8AB43, of(bytes));
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) i;
+		assertEquals(0x46DD794E, of(bytes));
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) (31 - i);
+		assertEquals(0x113FDB5C, of(bytes));
+	}
+
+	@Test
+	public void testPartsOfArrays() {
+		// Every alignment and remainder of the eight bytes that are processed at once
+		Random random = new Random(42);
+		byte[] bytes = new byte[1000];
+		random.nextBytes(bytes);
+		for (int offset = 0; offset < 16; offset++)
+			for (int length = 0; length < 100; length++)
+				assertEquals(reference(bytes, offset, length), Crc32c.of(bytes, offset, length));
+		assertEquals(reference(bytes, 0, bytes.length), of(bytes));
+	}
+
+	@Test
+	public void testByteStrings() {
+		Random random = new Random(42);
+		byte[] bytes = new byte[3 * 8 * 1024 + 123];
+		random.nextBytes(bytes);
+
+		assertEquals(of(bytes), Crc32c.of(ByteString.fromArray(bytes)));
+		assertEquals(Crc32c.of(bytes, 17, 4000), Crc32c.of(ByteString.fromArray(bytes, 17, 4000)));
+
+		// A ByteString of many parts, each of which is checksummed on its own
+		ByteString parts = ByteString.empty();
+		for (int offset = 0; offset < bytes.length; offset += 1000)
+			parts = parts.concat(ByteString.fromArray(bytes, offset, Math.min(1000, bytes.length - offset)));
+		assertEquals(of(bytes), Crc32c.of(parts));
+		assertEquals(0, Crc32c.of(ByteString.empty()));
+	}
+}
@@ -0,0 +1,156 @@
+package de.hpi.ddm.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TransferCodecTest {
+
+	private static byte[] compressible(int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; text.length() < length; i++)
+			text.append("<content id=\"").append(i).append("\">Hello, this is a message!</content>\n");
+		byte[] bytes = new byte[length];
+		System.arraycopy(text.toString().getBytes(StandardCharsets.US_ASCII), 0, bytes, 0, length);
+		return bytes;
+	}
+
+	private static byte[] incompressible(int length) {
+		byte[] bytes = new byte[length];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+
+	// A sample in which each of the given number of byte values is equally frequent, so its entropy is log2(values) bits per byte
+	private static byte[] uniform(int values) {
+		byte[] bytes = new byte[values * 256];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) (i % values);
+		return bytes;
+	}
+
+	private static byte[] encode(byte[] bytes, boolean compress) throws IOException {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (OutputStream out = TransferCodec.encoder(encoded, compress)) {
+			// In pieces, as a serializer writes its buffer
+			for (int offset = 0; offset < bytes.length; offset += 10000)
+				out.write(bytes, offset, Math.min(10000, bytes.length - offset));
+		}
+		return encoded.toByteArray();
+	}
+
+	private static byte[] decode(byte[] encoded) throws IOException {
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		try (InputStream in = TransferCodec.decoder(new ByteArrayInputStream(encoded))) {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) >= 0)
+				decoded.write(buffer, 0, n);
+		}
+		return decoded.toByteArray();
+	}
+
+	@Test
+	public void testHeaders() throws IOException {
+		for (TransferCodec codec : TransferCodec.values())
+			assertSame(codec, TransferCodec.of(codec.getHeader()));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownHeader() throws IOException {
+		TransferCodec.of(42);
+	}
+
+	@Test
+	public void testProbe() {
+		byte[] text = compressible(100000);
+		byte[] random = incompressible(100000);
+		assertEquals(TransferCodec.DEFLATE, TransferCodec.probe(text, 0, text.length));
+		assertEquals(TransferCodec.RAW, TransferCodec.probe(random, 0, random.length));
+		assertEquals(TransferCodec.RAW, TransferCodec.probe(random, 0, 0));
+
+		// The probe looks at the given part only, and at most at its first 64 KiB
+		byte[] mixed = new byte[3 * 64 * 1024];
+		System.arraycopy(random, 0, mixed, 64 * 1024, random.length);
+		assertEquals(TransferCodec.DEFLATE, TransferCodec.probe(mixed, 0, mixed.length));
+		assertEquals(TransferCodec.RAW, TransferCodec.probe(mixed, 64 * 1024, random.length));
+	}
+
+	@Test
+	public void testEntropyThreshold() {
+		// Below seven bits per byte, compression pays off
+		byte[] below = uniform(127);
+		byte[] at = uniform(128);
+		assertEquals(TransferCodec.DEFLATE, TransferCodec.probe(below, 0, below.length));
+		assertEquals(TransferCodec.RAW, TransferCodec.probe(at, 0, at.length));
+	}
+
+	@Test
+	public void testEncode() throws IOException {
+		byte[] random = incompressible(100000);
+		assertSame(random, TransferCodec.RAW.encode(random));
+
+		byte[] text = compressible(100000);
+		byte[] deflated = TransferCodec.DEFLATE.encode(text);
+		assertTrue(deflated.length < text.length / 4);
+
+		try (InputStream in = TransferCodec.DEFLATE.wrap(new ByteArrayInputStream(deflated))) {
+			byte[] inflated = new byte[text.length];
+			int length = 0;
+			int n;
+			while ((n = in.read(inflated, length, inflated.length - length)) > 0)
+				length += n;
+			assertEquals(text.length, length);
+			assertEquals(-1, in.read());
+			assertArrayEquals(text, inflated);
+		}
+	}
+
+	@Test
+	public void testCompressibleRoundTrip() throws IOException {
+		byte[] text = compressible(1000000);
+		byte[] encoded = encode(text, true);
+		assertEquals(TransferCodec.DEFLATE.getHeader(), encoded[0]);
+		assertTrue(encoded.length < text.length / 4);
+		assertArrayEquals(text, decode(encoded));
+
+		// Without compression, the codec is raw whatever the bytes are
+		encoded = encode(text, false);
+		assertEquals(TransferCodec.RAW.getHeader(), encoded[0]);
+		assertEquals(text.length + 1, encoded.length);
+		assertArrayEquals(text, decode(encoded));
+	}
+
+	@Test
+	public void testIncompressibleRoundTrip() throws IOException {
+		byte[] random = incompressible(1000000);
+		byte[] encoded = encode(random, true);
+		assertEquals(TransferCodec.RAW.getHeader(), encoded[0]);
+		assertEquals(random.length + 1, encoded.length);
+		assertArrayEquals(random, decode(encoded));
+	}
+
+	@Test
+	public void testEmptyRoundTrip() throws IOException {
+		byte[] encoded = encode(new byte[0], true);
+		assertArrayEquals(new byte[] { TransferCodec.RAW.getHeader() }, encoded);
+		assertEquals(0, decode(encoded).length);
+	}
+
+	@Test(expected = EOFException.class)
+	public void testEmptyTransfer() throws IOException {
+		TransferCodec.decoder(new ByteArrayInputStream(new byte[0]));
+	}
+}
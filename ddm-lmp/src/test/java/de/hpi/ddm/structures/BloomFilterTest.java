@@ -0,0 +1,192 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+	private static List<BitSet> elements(int from, int to) {
+		Random random = new Random(from);
+		List<BitSet> elements = new ArrayList<>();
+		for (int i = from; i < to; i++)
+			elements.add(new BitSet(new long[] { random.nextLong(), i }));
+		return elements;
+	}
+
+	@Test
+	public void testFalsePositiveProbability() {
+		int n = 100000;
+		double target = 0.01;
+		BloomFilter filter = BloomFilter.withExpectedElements(n, target);
+		assertEquals(BloomFilter.optimalBitSize(n, target), filter.getSize());
+		assertEquals(7, filter.getHashes());
+
+		List<BitSet> members = elements(0, n);
+		for (BitSet member : members)
+			filter.add(member);
+		for (BitSet member : members)
+			assertTrue(filter.contains(member));
+
+		int falsePositives = 0;
+		List<BitSet> others = elements(n, 3 * n);
+		for (BitSet other : others)
+			if (filter.contains(other))
+				falsePositives++;
+
+		// The standard deviation of the measured rate is about 0.0002
+		double rate = (double) falsePositives / others.size();
+		assertTrue("False positive rate " + rate, Math.abs(rate - target) < 0.002);
+	}
+
+	@Test
+	public void testAddAllEqualsAdd() {
+		// More elements than one batch of the bulk operations
+		List<BitSet> elements = elements(0, 10000);
+		BloomFilter single = new BloomFilter(1 << 16, 5, false);
+		BloomFilter bulk = new BloomFilter(1 << 16, 5, false);
+
+		for (BitSet element : elements)
+			single.add(element);
+		bulk.addAll(elements);
+
+		assertEquals(single.getBits(), bulk.getBits());
+		assertTrue(bulk.containsAll(elements));
+		assertTrue(bulk.containsAll(Collections.emptyList()));
+	}
+
+	@Test
+	public void testContainsAllEqualsContains() {
+		// A small filter, so that some of the other elements are false positives and some are not
+		List<BitSet> members = elements(0, 5000);
+		BloomFilter filter = new BloomFilter(1 << 15, 3, false);
+		filter.addAll(members);
+
+		int contained = 0;
+		for (BitSet other : elements(5000, 6000)) {
+			List<BitSet> elements = new ArrayList<>(members.subList(0, 4500));
+			elements.add(other);
+			Collections.shuffle(elements, new Random(other.hashCode()));
+
+			boolean expected = filter.contains(other);
+			assertEquals(expected, filter.containsAll(elements));
+			if (expected)
+				contained++;
+		}
+		assertTrue(contained > 0 && contained < 1000);
+	}
+
+	@Test
+	public void testAddReportsNewElements() {
+		BloomFilter filter = new BloomFilter(1 << 20);
+		BitSet element = new BitSet(new long[] { 42 });
+
+		assertFalse(filter.contains(element));
+		assertTrue(filter.add(element));
+		assertFalse(filter.add(element));
+		assertTrue(filter.contains(element));
+	}
+
+	@Test
+	public void testMerge() {
+		BloomFilter left = new BloomFilter(1 << 16, 5, false);
+		BloomFilter right = new BloomFilter(1 << 16, 5, false);
+		List<BitSet> leftElements = elements(0, 1000);
+		List<BitSet> rightElements = elements(1000, 2000);
+		left.addAll(leftElements);
+		right.addAll(rightElements);
+
+		left.merge(right);
+		assertTrue(left.containsAll(leftElements));
+		assertTrue(left.containsAll(rightElements));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testMergeWithOtherHashes() {
+		new BloomFilter(1 << 16, 5, false).merge(new BloomFilter(1 << 16, 3, false));
+	}
+
+	@Test
+	public void testDeltasKeepCopyInSync() {
+		BloomFilter original = new BloomFilter(1 << 16, 5, false);
+		original.trackChanges();
+		original.addAll(elements(0, 100));
+		assertEquals(0, original.delta().getFromVersion());
+		BloomFilter copy = original.snapshot();
+		assertEquals(1, copy.getVersion());
+
+		for (int round = 1; round <= 5; round++) {
+			switch (round % 3) {
+				case 0: original.addAll(elements(1000 * round, 1000 * round + 500)); break;
+				case 1: for (BitSet element : elements(1000 * round, 1000 * round + 50)) original.add(element); break;
+				default: {
+					BloomFilter other = new BloomFilter(1 << 16, 5, false);
+					other.addAll(elements(1000 * round, 1000 * round + 200));
+					original.merge(other);
+				}
+			}
+
+			// Deltas travel through Kryo like all messages
+			BloomFilter.Delta delta = original.delta();
+			delta = (BloomFilter.Delta) KryoPoolSingleton.get().fromBytes(KryoPoolSingleton.get().toBytesWithClass(delta));
+			assertEquals(round, delta.getFromVersion());
+			assertEquals(round + 1, delta.getToVersion());
+
+			assertTrue(copy.apply(delta));
+			assertEquals(original.getVersion(), copy.getVersion());
+			assertEquals(original.getBits(), copy.getBits());
+		}
+
+		assertEquals(null, original.delta());
+		original.add(new BitSet(new long[] { -1 }));
+		int changedWords = original.delta().size(); // one word per probe at most
+		assertTrue(changedWords >= 1 && changedWords <= original.getHashes());
+	}
+
+	@Test
+	public void testDeltasOutOfOrderAndTwice() {
+		BloomFilter original = new BloomFilter(1 << 16, 5, false);
+		original.trackChanges();
+		BloomFilter copy = original.snapshot();
+
+		original.addAll(elements(0, 100));
+		BloomFilter.Delta first = original.delta();
+		original.addAll(elements(100, 200));
+		BloomFilter.Delta second = original.delta();
+
+		// A delta that skips a version is not applied
+		assertFalse(copy.apply(second));
+		assertEquals(0, copy.getVersion());
+		assertEquals(0, copy.getBits().cardinality());
+
+		assertTrue(copy.apply(first));
+		assertTrue(copy.apply(second));
+		assertEquals(original.getBits(), copy.getBits());
+
+		// Deltas flip bits, so applying one again must not change the copy
+		assertTrue(copy.apply(first));
+		assertTrue(copy.apply(second));
+		assertEquals(2, copy.getVersion());
+		assertEquals(original.getBits(), copy.getBits());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSnapshotWithPendingChanges() {
+		BloomFilter original = new BloomFilter(1 << 16, 5, false);
+		original.trackChanges();
+		original.add(new BitSet(new long[] { 1 }));
+		original.snapshot();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDeltaWithoutTracking() {
+		new BloomFilter(1 << 16, 5, false).delta();
+	}
+}
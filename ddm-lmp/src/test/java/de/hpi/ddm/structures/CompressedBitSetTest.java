@@ -0,0 +1,219 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompressedBitSetTest {
+
+	private static final int CHUNK = 1 << 16;
+	private static final int CAPACITY = 6 * CHUNK + 1234; // The last chunk is not full
+	private static final int WORDS = (CAPACITY - 1) / 64 + 1;
+
+	// Random bits with chunks of all kinds: sparse, dense, empty and clustered in runs
+	private static java.util.BitSet random(Random random) {
+		java.util.BitSet bits = new java.util.BitSet(CAPACITY);
+		int runOffset = random.nextInt(1000);
+		for (int i = 0; i < CAPACITY; i++) {
+			switch ((i / CHUNK + runOffset) % 4) {
+				case 0: if (random.nextInt(1000) == 0) bits.set(i); break;
+				case 1: if (random.nextBoolean()) bits.set(i); break;
+				case 2: break;
+				default: if ((i + runOffset) / 1000 % 3 == 0) bits.set(i); break;
+			}
+		}
+		return bits;
+	}
+
+	private static BitSet dense(java.util.BitSet bits) {
+		return new BitSet(Arrays.copyOf(bits.toLongArray(), WORDS));
+	}
+
+	private static CompressedBitSet compress(java.util.BitSet bits) {
+		return CompressedBitSet.of(dense(bits));
+	}
+
+	private static void assertSameBits(java.util.BitSet expected, CompressedBitSet actual) {
+		long[] words = expected.toLongArray();
+		for (int i = 0; i < actual.physicalLength(); i++)
+			assertEquals("Word " + i, (i < words.length) ? words[i] : 0, actual.getWord(i));
+		assertEquals(expected.cardinality(), actual.cardinality());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+	}
+
+	@Test
+	public void testArrayToBitmapAndBack() {
+		// Every 16th bit of a chunk, so that runs are no option
+		CompressedBitSet set = new CompressedBitSet(CAPACITY);
+		java.util.BitSet expected = new java.util.BitSet();
+		for (int i = 0; i < 4096; i++) {
+			set.set(CHUNK + 16 * i);
+			expected.set(CHUNK + 16 * i);
+		}
+		assertEquals(CompressedBitSet.ARRAY, set.containerType(1));
+		assertEquals(-1, set.containerType(0));
+		assertSameBits(expected, set);
+
+		set.set(CHUNK + 1);
+		expected.set(CHUNK + 1);
+		assertEquals(CompressedBitSet.BITMAP, set.containerType(1));
+		assertSameBits(expected, set);
+
+		set.clear(CHUNK + 16);
+		expected.clear(CHUNK + 16);
+		assertEquals(CompressedBitSet.ARRAY, set.containerType(1));
+		assertSameBits(expected, set);
+
+		for (int i = 0; i < 4096; i++) {
+			set.clear(CHUNK + 16 * i);
+			expected.clear(CHUNK + 16 * i);
+		}
+		set.clear(CHUNK + 1);
+		assertEquals(-1, set.containerType(1));
+		assertTrue(set.isEmpty());
+	}
+
+	@Test
+	public void testRuns() {
+		java.util.BitSet expected = new java.util.BitSet();
+		expected.set(100, 30000);
+		expected.set(CHUNK - 10, CHUNK + 10); // a run across two chunks
+		CompressedBitSet set = compress(expected);
+		assertEquals(CompressedBitSet.RUN, set.containerType(0));
+		assertEquals(CompressedBitSet.RUN, set.containerType(1));
+		assertSameBits(expected, set);
+
+		// Split a run and clear the first and the last bit of runs, then extend runs and join the split run again
+		for (int bit : new int[] { 15000, 100, 29999, CHUNK - 10 }) {
+			set.clear(bit);
+			expected.clear(bit);
+			assertSameBits(expected, set);
+		}
+		for (int bit : new int[] { 30000, 99, 15000, 40000 }) {
+			set.set(bit);
+			expected.set(bit);
+			assertSameBits(expected, set);
+		}
+		assertEquals(CompressedBitSet.RUN, set.containerType(0));
+	}
+
+	@Test
+	public void testXorWord() {
+		Random random = new Random(1);
+		java.util.BitSet expected = random(random);
+		CompressedBitSet set = compress(expected);
+
+		for (int i = 0; i < 2000; i++) {
+			int wordIndex = random.nextInt(set.physicalLength());
+			long word = (i % 3 == 0) ? -1L : random.nextLong();
+			set.xorWord(wordIndex, word);
+			for (long w = word; w != 0; w &= w - 1)
+				expected.flip(wordIndex * 64 + Long.numberOfTrailingZeros(w));
+		}
+		assertSameBits(expected, set);
+	}
+
+	@Test
+	public void testNextSetBit() {
+		Random random = new Random(2);
+		for (int round = 0; round < 3; round++) {
+			java.util.BitSet expected = random(random);
+			CompressedBitSet set = compress(expected);
+
+			for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1))
+				assertEquals(i, set.nextSetBit(i));
+			for (int k = 0; k < 10000; k++) {
+				int from = random.nextInt(CAPACITY);
+				assertEquals(expected.nextSetBit(from), set.nextSetBit(from));
+			}
+		}
+		assertEquals(-1, new CompressedBitSet(CAPACITY).nextSetBit(0));
+	}
+
+	@Test
+	public void testOperationsAgainstBitSet() {
+		Random random = new Random(3);
+		for (int round = 0; round < 4; round++) {
+			java.util.BitSet x = random(random);
+			java.util.BitSet y = random(random);
+
+			for (int operation = 0; operation < 4; operation++) {
+				java.util.BitSet expected = (java.util.BitSet) x.clone();
+				CompressedBitSet set = compress(x);
+				CompressedBitSet other = compress(y);
+				switch (operation) {
+					case 0: expected.and(y); set.and(other); break;
+					case 1: expected.or(y); set.or(other); break;
+					case 2: expected.xor(y); set.xor(other); break;
+					default: expected.andNot(y); set.andNot(other); break;
+				}
+				assertSameBits(expected, set);
+				assertSameBits(y, other); // the other set is not changed
+				assertEquals(compress(expected), set);
+				assertEquals(compress(expected).hashCode(), set.hashCode());
+			}
+		}
+	}
+
+	@Test
+	public void testRandomSetAndClear() {
+		Random random = new Random(4);
+		java.util.BitSet expected = random(random);
+		CompressedBitSet set = compress(expected);
+
+		for (int i = 0; i < 200000; i++) {
+			// Concentrate on two chunks, so that their containers change between the representations
+			int bit = (i % 2 == 0) ? random.nextInt(CAPACITY) : 2 * CHUNK + random.nextInt(2 * CHUNK);
+			if (random.nextBoolean()) {
+				set.set(bit);
+				expected.set(bit);
+			} else {
+				set.clear(bit);
+				expected.clear(bit);
+			}
+		}
+		assertSameBits(expected, set);
+	}
+
+	@Test
+	public void testKryo() {
+		Random random = new Random(5);
+		for (int round = 0; round < 3; round++) {
+			CompressedBitSet set = compress(random(random));
+			Object copy = KryoPoolSingleton.get().fromBytes(KryoPoolSingleton.get().toBytesWithClass(set));
+			assertEquals(set, copy);
+		}
+
+		CompressedBitSet empty = new CompressedBitSet(CAPACITY);
+		assertEquals(empty, KryoPoolSingleton.get().fromBytes(KryoPoolSingleton.get().toBytesWithClass(empty)));
+	}
+
+	@Test
+	public void testBinaryFormEqualsBitSet() {
+		Random random = new Random(6);
+		CompressedBitSet set = compress(random(random));
+		BitSet dense = set.toBitSet();
+
+		ByteBuffer binary = ByteBuffer.allocate(set.binarySize());
+		set.toBinary(binary);
+		assertArrayEquals(dense.toBinary(), binary.array());
+		assertEquals(set, CompressedBitSet.of(BitSet.fromBinary(binary.array())));
+	}
+
+	@Test
+	public void testBloomFilter() {
+		BloomFilter compressed = new BloomFilter(new CompressedBitSet(1 << 24), 7);
+		BloomFilter dense = new BloomFilter(1 << 24, 7, false);
+		for (int i = 0; i < 1000; i++) {
+			compressed.add(new BitSet(new long[] { i }));
+			dense.add(new BitSet(new long[] { i }));
+		}
+		assertEquals(dense.getBits(), ((CompressedBitSet) compressed.getBits()).toBitSet());
+	}
+}
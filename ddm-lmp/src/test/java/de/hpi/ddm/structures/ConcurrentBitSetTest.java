@@ -0,0 +1,141 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ConcurrentBitSetTest {
+
+	private static final int THREADS = 8;
+	private static final int CAPACITY = 1 << 16;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+	@After
+	public void tearDown() {
+		this.executor.shutdownNow();
+	}
+
+	private void runConcurrently(Callable<Void> task) throws Exception {
+		List<Future<Void>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++)
+			futures.add(this.executor.submit(task));
+		for (Future<Void> future : futures)
+			future.get();
+	}
+
+	@Test
+	public void testConcurrentSetLosesNoBits() throws Exception {
+		// All threads set bits of the same few words, so that their compare-and-sets collide
+		ConcurrentBitSet bits = new ConcurrentBitSet(CAPACITY);
+		AtomicInteger thread = new AtomicInteger();
+		AtomicInteger newlySet = new AtomicInteger();
+		this.runConcurrently(() -> {
+			int t = thread.getAndIncrement();
+			for (int i = t; i < CAPACITY; i += THREADS)
+				if (bits.setIfClear(i))
+					newlySet.incrementAndGet();
+			for (int i = 0; i < CAPACITY; i += 7) // Bits that other threads set as well
+				if (bits.setIfClear(i))
+					newlySet.incrementAndGet();
+			return null;
+		});
+
+		assertEquals(CAPACITY, bits.cardinality());
+		assertEquals(CAPACITY, newlySet.get());
+	}
+
+	@Test
+	public void testConcurrentOrLosesNoBits() throws Exception {
+		ConcurrentBitSet bits = new ConcurrentBitSet(CAPACITY);
+		BitSet expected = new BitSet(CAPACITY);
+		List<BitSet> others = new ArrayList<>();
+		List<int[]> singles = new ArrayList<>();
+		Random random = new Random(42);
+		for (int t = 0; t < THREADS; t++) {
+			BitSet other = new BitSet(CAPACITY);
+			for (int i = 0; i < CAPACITY / 4; i++)
+				other.set(random.nextInt(CAPACITY));
+			others.add(other);
+			expected.or(other);
+
+			int[] single = random.ints(1000, 0, CAPACITY).toArray();
+			for (int bit : single)
+				expected.set(bit);
+			singles.add(single);
+		}
+
+		// Every thread ORs all others in its own order and sets single bits in between, so that ORs and sets of the
+		// threads update the same words at the same time
+		AtomicInteger thread = new AtomicInteger();
+		this.runConcurrently(() -> {
+			int t = thread.getAndIncrement();
+			int[] single = singles.get(t);
+			for (int o = 0; o < others.size(); o++) {
+				bits.or(others.get((o + t) % others.size()));
+				for (int i = o; i < single.length; i += others.size())
+					bits.set(single[i]);
+			}
+			return null;
+		});
+
+		assertEquals(expected, BitSet.fromBinary(toBinary(bits)));
+	}
+
+	@Test
+	public void testBloomFilterSharedByThreads() throws Exception {
+		int elements = 100000;
+		BloomFilter sequential = new BloomFilter(CAPACITY * 16, 7, false);
+		BloomFilter shared = new BloomFilter(new ConcurrentBitSet(CAPACITY * 16), 7);
+		for (int i = 0; i < elements; i++)
+			sequential.add(new BitSet(new long[] { i, 31L * i }));
+
+		// Half of the elements are added one by one, the other half in bulk
+		AtomicInteger thread = new AtomicInteger();
+		this.runConcurrently(() -> {
+			int t = thread.getAndIncrement();
+			List<BitSet> batch = new ArrayList<>();
+			for (int i = t; i < elements; i += THREADS) {
+				if (i % 16 < 8)
+					shared.add(new BitSet(new long[] { i, 31L * i }));
+				else
+					batch.add(new BitSet(new long[] { i, 31L * i }));
+			}
+			shared.addAll(batch);
+			return null;
+		});
+
+		for (int i = 0; i < sequential.getBits().physicalLength(); i++)
+			assertEquals(sequential.getBits().getWord(i), shared.getBits().getWord(i));
+	}
+
+	@Test
+	public void testKryo() {
+		ConcurrentBitSet bits = new ConcurrentBitSet(CAPACITY);
+		for (int i = 0; i < CAPACITY; i += 3)
+			bits.set(i);
+
+		Object copy = KryoPoolSingleton.get().fromBytes(KryoPoolSingleton.get().toBytesWithClass(bits));
+		assertEquals(bits, copy);
+		assertTrue(((ConcurrentBitSet) copy).get(CAPACITY - 1 - (CAPACITY - 1) % 3));
+	}
+
+	private static ByteBuffer toBinary(Bits bits) {
+		ByteBuffer buffer = ByteBuffer.allocate(bits.binarySize());
+		bits.toBinary(buffer);
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,109 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LinkEstimateTest {
+
+	private static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+	private static final int LIMIT = 16;
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	// Credits chunks for the given nanoseconds as a link of the given bytes per nanosecond and round-trip time does; returns the time after
+	private static long credit(LinkEstimate link, long now, int chunkSize, double throughput, long roundTrip, long duration) {
+		long interval = (long) (chunkSize / throughput);
+		long end = now + duration;
+		for (; now < end; now += interval)
+			link.credited(chunkSize, roundTrip, now);
+		return now;
+	}
+
+	@Test
+	public void testUnmeasuredLink() {
+		LinkEstimate link = new LinkEstimate();
+		assertEquals(DEFAULT_CHUNK_SIZE, link.chunkSize(DEFAULT_CHUNK_SIZE));
+		assertEquals(LinkEstimate.INITIAL_WINDOW, link.window(DEFAULT_CHUNK_SIZE, LIMIT));
+		assertEquals(2, link.window(DEFAULT_CHUNK_SIZE, 2));
+
+		// A single credit marks the start of a sample only
+		link.credited(DEFAULT_CHUNK_SIZE, MILLIS, 0);
+		assertEquals(DEFAULT_CHUNK_SIZE, link.chunkSize(DEFAULT_CHUNK_SIZE));
+	}
+
+	@Test
+	public void testChunkSizeGrowsAndShrinks() {
+		LinkEstimate link = new LinkEstimate();
+
+		// 100 MB/s: chunks of about a millisecond, rounded down to a power of two
+		long now = credit(link, 0, DEFAULT_CHUNK_SIZE, 0.1, MILLIS, 100 * MILLIS);
+		assertEquals(128 * 1024, link.chunkSize(DEFAULT_CHUNK_SIZE));
+
+		// 1 GB/s: the chunks grow with every sample up to the maximum
+		int previous = link.chunkSize(DEFAULT_CHUNK_SIZE);
+		for (int i = 0; i < 50; i++) {
+			now = credit(link, now, link.chunkSize(DEFAULT_CHUNK_SIZE), 1.0, MILLIS, 10 * MILLIS);
+			assertTrue(link.chunkSize(DEFAULT_CHUNK_SIZE) >= previous);
+			previous = link.chunkSize(DEFAULT_CHUNK_SIZE);
+		}
+		assertEquals(LinkEstimate.MAX_CHUNK_SIZE, link.chunkSize(DEFAULT_CHUNK_SIZE));
+
+		// 10 MB/s: the chunks shrink with every sample down to the minimum
+		for (int i = 0; i < 50; i++) {
+			now = credit(link, now, LinkEstimate.MIN_CHUNK_SIZE, 0.01, MILLIS, 20 * MILLIS);
+			assertTrue(link.chunkSize(DEFAULT_CHUNK_SIZE) <= previous);
+			previous = link.chunkSize(DEFAULT_CHUNK_SIZE);
+		}
+		assertEquals(LinkEstimate.MIN_CHUNK_SIZE, link.chunkSize(DEFAULT_CHUNK_SIZE));
+	}
+
+	@Test
+	public void testWindowIsTwiceTheBandwidthDelayProduct() {
+		// 1 GB/s with 1 ms round trips: 2 MB in flight, i.e., two chunks of 1 MiB plus one
+		LinkEstimate fast = new LinkEstimate();
+		credit(fast, 0, LinkEstimate.MAX_CHUNK_SIZE, 1.0, MILLIS, 100 * MILLIS);
+		assertEquals(3, fast.window(LinkEstimate.MAX_CHUNK_SIZE, LIMIT));
+		assertEquals(2 * 1000000 / LinkEstimate.MIN_CHUNK_SIZE + 2, fast.window(LinkEstimate.MIN_CHUNK_SIZE, 100));
+		assertEquals(LIMIT, fast.window(LinkEstimate.MIN_CHUNK_SIZE, LIMIT));
+
+		// The same throughput with four times the round-trip time needs four times the chunks in flight
+		LinkEstimate distant = new LinkEstimate();
+		credit(distant, 0, LinkEstimate.MAX_CHUNK_SIZE, 1.0, 4 * MILLIS, 100 * MILLIS);
+		assertEquals(9, distant.window(LinkEstimate.MAX_CHUNK_SIZE, LIMIT));
+
+		// The round-trip time is the least one seen, so that queueing on a loaded link does not inflate the window
+		credit(distant, 200 * MILLIS, LinkEstimate.MAX_CHUNK_SIZE, 1.0, 40 * MILLIS, 100 * MILLIS);
+		assertEquals(9, distant.window(LinkEstimate.MAX_CHUNK_SIZE, LIMIT));
+
+		// A slow link still keeps one chunk in flight while the next is sent
+		LinkEstimate slow = new LinkEstimate();
+		credit(slow, 0, LinkEstimate.MIN_CHUNK_SIZE, 0.01, MILLIS, 100 * MILLIS);
+		assertEquals(2, slow.window(LinkEstimate.MIN_CHUNK_SIZE, LIMIT));
+		assertEquals(1, slow.window(LinkEstimate.MIN_CHUNK_SIZE, 1));
+	}
+
+	@Test
+	public void testWindowShrinksWithThroughput() {
+		LinkEstimate link = new LinkEstimate();
+		long now = credit(link, 0, LinkEstimate.MIN_CHUNK_SIZE, 1.0, 4 * MILLIS, 100 * MILLIS);
+		assertEquals(LIMIT, link.window(LinkEstimate.MIN_CHUNK_SIZE, LIMIT));
+
+		credit(link, now, LinkEstimate.MIN_CHUNK_SIZE, 0.01, 4 * MILLIS, 2000 * MILLIS);
+		assertEquals(3, link.window(LinkEstimate.MIN_CHUNK_SIZE, LIMIT));
+	}
+
+	@Test
+	public void testPausesAreNotSampled() {
+		LinkEstimate link = new LinkEstimate();
+		long now = credit(link, 0, LinkEstimate.MAX_CHUNK_SIZE, 1.0, MILLIS, 100 * MILLIS);
+		assertEquals(3, link.window(LinkEstimate.MAX_CHUNK_SIZE, LIMIT));
+
+		// A second without transfers followed by another transfer at the same throughput leaves the estimate as it was
+		credit(link, now + 1000 * MILLIS, LinkEstimate.MAX_CHUNK_SIZE, 1.0, MILLIS, 100 * MILLIS);
+		assertEquals(3, link.window(LinkEstimate.MAX_CHUNK_SIZE, LIMIT));
+		assertEquals(LinkEstimate.MAX_CHUNK_SIZE, link.chunkSize(DEFAULT_CHUNK_SIZE));
+	}
+}
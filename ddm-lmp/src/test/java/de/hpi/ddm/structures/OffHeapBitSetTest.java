@@ -0,0 +1,134 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OffHeapBitSetTest {
+
+	private static final int CAPACITY = 100000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// The same random bits on the heap and off the heap
+	private static BitSet fill(Bits bits, long seed) {
+		BitSet heap = new BitSet(CAPACITY);
+		Random random = new Random(seed);
+		for (int i = 0; i < CAPACITY / 10; i++) {
+			int bit = random.nextInt(CAPACITY);
+			bits.set(bit);
+			heap.set(bit);
+		}
+		return heap;
+	}
+
+	@Test
+	public void testBitsEqualBitSet() {
+		OffHeapBitSet bits = OffHeapBitSet.allocate(CAPACITY);
+		BitSet heap = fill(bits, 1);
+
+		assertEquals(heap.physicalLength(), bits.physicalLength());
+		assertEquals(heap.cardinality(), bits.cardinality());
+		for (int i = 0; i < heap.physicalLength(); i++)
+			assertEquals(heap.getWord(i), bits.getWord(i));
+
+		bits.clear(3);
+		heap.clear(3);
+		bits.xorWord(7, 0xff00ff00ff00ff00L);
+		heap.xorWord(7, 0xff00ff00ff00ff00L);
+		assertEquals(heap, BitSet.fromBinary(bits.buffer()));
+	}
+
+	@Test
+	public void testBinaryFormEqualsBitSet() throws IOException {
+		OffHeapBitSet bits = OffHeapBitSet.allocate(CAPACITY);
+		BitSet heap = fill(bits, 2);
+
+		ByteBuffer binary = ByteBuffer.allocate(bits.binarySize());
+		bits.toBinary(binary);
+		assertArrayEquals(heap.toBinary(), binary.array());
+
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		bits.writeTo(Channels.newChannel(written));
+		assertArrayEquals(heap.toBinary(), written.toByteArray());
+	}
+
+	@Test
+	public void testWrap() {
+		BitSet heap = new BitSet(CAPACITY);
+		fill(heap, 3);
+
+		// Wrapped bits read and write through to the binary form, also from a position other than zero
+		ByteBuffer buffer = ByteBuffer.allocate(3 + heap.binarySize());
+		buffer.position(3);
+		buffer.put(heap.toBinary());
+		buffer.position(3);
+		OffHeapBitSet bits = OffHeapBitSet.wrap(buffer);
+
+		assertEquals(heap.cardinality(), bits.cardinality());
+		bits.set(CAPACITY - 1);
+		heap.set(CAPACITY - 1);
+		buffer.position(3);
+		assertEquals(heap, BitSet.fromBinary(buffer));
+	}
+
+	@Test
+	public void testMap() throws IOException {
+		Path file = this.folder.getRoot().toPath().resolve("bits");
+
+		OffHeapBitSet bits = OffHeapBitSet.map(file, CAPACITY);
+		BitSet heap = fill(bits, 4);
+
+		// Mapping the file again continues with the bits of before
+		OffHeapBitSet mapped = OffHeapBitSet.map(file, CAPACITY);
+		assertEquals(bits, mapped);
+		assertEquals(heap, BitSet.fromBinary(mapped.buffer()));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMapOtherCapacity() throws IOException {
+		Path file = this.folder.getRoot().toPath().resolve("bits");
+		OffHeapBitSet.map(file, CAPACITY);
+		OffHeapBitSet.map(file, 2 * CAPACITY);
+	}
+
+	@Test
+	public void testKryo() {
+		OffHeapBitSet bits = OffHeapBitSet.allocate(CAPACITY);
+		fill(bits, 5);
+
+		Object copy = KryoPoolSingleton.get().fromBytes(KryoPoolSingleton.get().toBytesWithClass(bits));
+		assertEquals(bits, copy);
+
+		BloomFilter filter = new BloomFilter(OffHeapBitSet.allocate(CAPACITY), 5);
+		BitSet element = new BitSet(new long[] { 42 });
+		filter.add(element);
+		BloomFilter filterCopy = (BloomFilter) KryoPoolSingleton.get().fromBytes(KryoPoolSingleton.get().toBytesWithClass(filter));
+		assertEquals(filter.getBits(), filterCopy.getBits());
+		assertTrue(filterCopy.contains(element));
+	}
+
+	@Test
+	public void testOr() {
+		OffHeapBitSet bits = OffHeapBitSet.allocate(CAPACITY);
+		BitSet heap = fill(bits, 6);
+		BitSet other = new BitSet(CAPACITY);
+		fill(other, 7);
+
+		bits.or(other);
+		heap.or(other);
+		assertEquals(heap, BitSet.fromBinary(bits.buffer()));
+	}
+}
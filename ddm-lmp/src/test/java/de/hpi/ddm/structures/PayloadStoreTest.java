@@ -0,0 +1,85 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+
+public class PayloadStoreTest {
+
+	private static ActorSystem system;
+
+	@BeforeClass
+	public static void setUp() {
+		system = ActorSystem.create("PayloadStoreTest");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestKit.shutdownActorSystem(system);
+	}
+
+	private static byte[] digest(int id) {
+		return new byte[] { 'p', 's', (byte) id };
+	}
+
+	@Test
+	public void testClaimAndPut() {
+		PayloadStore store = PayloadStore.get(system);
+		byte[] digest = digest(1);
+		Object payload = new int[] { 1, 2, 3 };
+
+		assertNull(store.offer(digest));
+		CompletableFuture<Object> waiting = store.offer(digest.clone());
+		assertNotNull(waiting);
+		assertFalse(waiting.isDone());
+
+		store.put(digest, payload);
+		assertSame(payload, waiting.join());
+		assertSame(payload, store.offer(digest).join());
+	}
+
+	@Test
+	public void testAbandon() {
+		PayloadStore store = PayloadStore.get(system);
+		byte[] digest = digest(2);
+
+		assertNull(store.offer(digest));
+		CompletableFuture<Object> waiting = store.offer(digest);
+		store.abandon(digest, new IllegalStateException("lost"));
+		assertTrue(waiting.isCompletedExceptionally());
+
+		assertNull(store.offer(digest)); // The next proxy claims the payload anew
+		store.abandon(digest, new IllegalStateException("lost"));
+	}
+
+	@Test
+	public void testReleasesUnreferencedPayloads() throws InterruptedException {
+		PayloadStore store = PayloadStore.get(system);
+		byte[] digest = digest(3);
+
+		assertNull(store.offer(digest));
+		store.put(digest, new byte[1 << 20]);
+
+		for (int i = 0; i < 50; i++) {
+			System.gc();
+			Thread.sleep(20);
+			CompletableFuture<Object> offered = store.offer(digest);
+			if (offered == null) { // Collected, so the caller has claimed it again
+				store.abandon(digest, new IllegalStateException("done"));
+				return;
+			}
+		}
+		throw new AssertionError("The store keeps a payload that no receiver holds");
+	}
+}
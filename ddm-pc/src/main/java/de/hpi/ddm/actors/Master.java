@@ -1,6 +1,7 @@
 package de.hpi.ddm.actors;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import akka.actor.AbstractLoggingActor;
@@ -8,6 +9,12 @@ import akka.actor.ActorRef;
 import akka.actor.PoisonPill;
 import akka.actor.Props;
 import akka.actor.Terminated;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.cracking.HintCombinations;
+import de.hpi.ddm.cracking.PermutationSpace;
+import de.hpi.ddm.cracking.ProductSpace;
+import de.hpi.ddm.structures.HashEngine;
+import de.hpi.ddm.structures.PasswordRecord;
 import lombok.*;
 
 public class Master extends AbstractLoggingActor {
@@ -22,17 +29,33 @@ public class Master extends AbstractLoggingActor {
 	private char[] charactersInPassword;
 	private List<char[]> possibleCombinationsForHintsList;
 	HashMap<Integer, Password> ID_PasswordHashMap; //Hashmap with all fields from password file
-
-	//http://tutorials.jenkov.com/java-collections/queue.html
-	private Queue<DecryptHintMessage> hintCrackingQueue;
-	private  Queue<GoCrackPasswordMessage> passwordCrackingQueue;
+	HashMap<ByteBuffer, List<Integer>> openHintsHashMap; //Hashmap from every unresolved hint digest to the IDs of the passwords that contain it
+	HashMap<Integer, Integer> openPasswordRangesHashMap; //Hashmap from password ID to the number of its ranges in flight, plus one while ranges are still to be handed out
+	private final long taskSize; //number of candidates per cracking task
+
+	//Tasks are generated lazily when a worker requests one, so the master never holds more than the tasks in flight
+	private int hintCombinationIndex; //combination of the next hint task
+	private long hintRangeFrom; //first rank of the next hint task
+	private byte[][] openHints; //snapshot of the keys of openHintsHashMap that the workers check the hint tasks against; null if the map changed since
+	private int openHintsVersion; //version of the snapshot; a worker gets each version once, before its first hint task that needs it
+	private int staleHints; //hints of the snapshot that were decrypted since it was taken
+	private final HashMap<ActorRef, Integer> workerHintsVersions; //the latest snapshot version that each worker got
+	private final Deque<Password> passwordsToCrack; //passwords with all hints decrypted; the next task is a range of the first one
+	private long passwordRangeFrom; //first rank of the next password task
+	private final Deque<CrackingTask> requeuedTasks; //tasks of terminated workers that are handed out again first
+	private long nextTaskID;
+	private boolean batchRequested; //true while the reader has not answered the last ReadMessage
+	private boolean inputComplete; //true once the reader sent the empty batch
+	private boolean terminating;
+	private final HashMap<Long, CrackingTask> tasksInFlight; //tasks that were sent to a worker but are not complete yet
+	private final HashMap<Long, ActorRef> taskAssignees; //the worker that each task in flight was sent to
 
 	//Actor references
 	private final ActorRef reader;
 	private final ActorRef collector;
 
 	private final List<ActorRef> workers;
-	private List<Boolean> workerOccupied;
+	private final Deque<ActorRef> idleWorkers; //one entry per task that a worker has requested and not yet received
 
 	private long startTime;
 
@@ -47,13 +70,17 @@ public class Master extends AbstractLoggingActor {
 		this.reader = reader;
 		this.collector = collector;
 		this.workers = new ArrayList<>();
-		this.workerOccupied = new ArrayList<>();
-		this.possibleCombinationsForHintsList = new ArrayList<char[]>();
+		this.idleWorkers = new ArrayDeque<>();
+		this.tasksInFlight = new HashMap<>();
+		this.taskAssignees = new HashMap<>();
+		this.workerHintsVersions = new HashMap<>();
 		this.passwordLength = -1;
 		this.ID_PasswordHashMap = new HashMap<Integer, Password>();
-
-		this.hintCrackingQueue = new LinkedList<DecryptHintMessage>();
-		this.passwordCrackingQueue = new LinkedList<GoCrackPasswordMessage>();
+		this.openHintsHashMap = new HashMap<ByteBuffer, List<Integer>>();
+		this.openPasswordRangesHashMap = new HashMap<Integer, Integer>();
+		this.taskSize = ConfigurationSingleton.get().getTaskSize();
+		this.passwordsToCrack = new ArrayDeque<>();
+		this.requeuedTasks = new ArrayDeque<>();
 	}
 
 	////////////////////
@@ -68,7 +95,7 @@ public class Master extends AbstractLoggingActor {
 	@Data @NoArgsConstructor @AllArgsConstructor
 	public static class BatchMessage implements Serializable {
 		private static final long serialVersionUID = 8343040942748609598L;
-		private List<String[]> lines;
+		private List<PasswordRecord> lines;
 	}
 
 	@Data @NoArgsConstructor
@@ -76,17 +103,45 @@ public class Master extends AbstractLoggingActor {
 		private static final long serialVersionUID = 3303081601659723997L;
 	}
 
+	//The parameters of the hint tasks; sent to every worker before its first task
+	@Data @NoArgsConstructor @AllArgsConstructor
+	public static class CrackingParametersMessage implements Serializable {
+		private static final long serialVersionUID = -1946265785744105203L;
+		private char[] passwordCharacters; //all possible characters in the passwords
+		private int passwordLength;
+	}
+
+	//The unresolved hint digests that the hint tasks are checked against; sent to a worker before its first hint task of each version
+	@Data @NoArgsConstructor @AllArgsConstructor
+	public static class OpenHintsMessage implements Serializable {
+		private static final long serialVersionUID = 5409375520392516853L;
+		private int version; //increases with every snapshot of the open hints
+		private byte[][] hints;
+	}
+
+	//A task that the master hands out; workers report the completion of each task by its ID
+	public interface CrackingTask extends Serializable {
+		long getTaskID();
+	}
+
 	@Getter @Setter @ToString @AllArgsConstructor @NoArgsConstructor
-	public static class DecryptHintMessage implements Serializable {
-		private int ID;
-		private String hint;
-		private char[] hintCharacterCombination; //possible characters in the hint
+	public static class DecryptHintMessage implements CrackingTask {
+		private long taskID;
+		private int combinationIndex; //index of the possible characters in the hint in HintCombinations.of(passwordCharacters, passwordLength)
+		private int hintsVersion; //the OpenHintsMessage that the task was created with; every permutation of the combination is checked against all of its hints, or those of a newer version
+		private long from; //first rank of the permutations to check (inclusive)
+		private long to; //last rank of the permutations to check (exclusive)
 	}
 
 	@Getter @Setter @ToString @AllArgsConstructor @NoArgsConstructor
-	public static class GoCrackPasswordMessage implements Serializable {
-		//Maybe just send the object?
-		Password password;
+	public static class GoCrackPasswordMessage implements CrackingTask {
+		private long taskID;
+		private int passwordID;
+		private byte[] encryptedPassword;
+		private char[] passwordCharacters; //the characters that occur in all hints of the password
+		private int passwordLength;
+		private long from; //first rank of the candidates to check (inclusive)
+		private long to; //last rank of the candidates to check (exclusive)
 	}
 
 	@Getter @Setter @ToString @AllArgsConstructor @NoArgsConstructor
@@ -117,7 +172,9 @@ public class Master extends AbstractLoggingActor {
 				.match(BatchMessage.class, this::handle)
 				.match(Worker.DecryptedHint.class, this::handle)
 				.match(Worker.PasswordCompleteMessage.class, this::handle)
-				.match(Worker.WorkerAvailableMessageToMaster.class, this::handle)
+				.match(Worker.HintsCompleteMessage.class, this::handle)
+				.match(Worker.WorkRequestMessage.class, this::handle)
+				.match(Worker.TasksStolenMessage.class, this::handle)
 				.match(Terminated.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
@@ -128,6 +185,7 @@ public class Master extends AbstractLoggingActor {
 
 	protected void handle(StartMessage message) {
 		this.startTime = System.currentTimeMillis();
+		this.batchRequested = true;
 		this.reader.tell(new Reader.ReadMessage(), this.self()); //7. Master tells reader message:  ReadMessage
 	}
 	
@@ -140,159 +198,226 @@ public class Master extends AbstractLoggingActor {
 		// Implement the processing of the data for the concrete assignment. /////////////////////////////////
 		///////////////////////////////////////////////////////////////////////////////////////////////////////
 
-		//If nothing is in the message
+		this.batchRequested = false;
+
+		//If nothing is in the message, the input is complete; terminate once all tasks are done
 		if (message.getLines().isEmpty()) {
-			this.collector.tell(new Collector.PrintMessage(), this.self());
-			this.terminate();
+			this.inputComplete = true;
+			this.readNextBatchIfNeeded();
 			return;
 		}
 
 		if(passwordLength == -1){ //-1 means that it is the first batch
-			this.passwordLength = Integer.parseInt(message.getLines().get(0)[3]); //assign password length
-			this.charactersInPassword = message.getLines().get(0)[2].toCharArray();//assign possible characters in password
+			this.passwordLength = message.getLines().get(0).getPasswordLength(); //assign password length
+			this.charactersInPassword = message.getLines().get(0).getPasswordCharacters().toCharArray();//assign possible characters in password
 			//Assign combinations for hints (each entry has 10 elements from the 11 characters, so 11 entries in total)
-			//System.out.println("Length before creating permutation: " + possibleCombinationsForHintsList.size());
-			getCharacterCombinations(this.charactersInPassword, this.passwordLength, possibleCombinationsForHintsList);//make function for combinations
-			//System.out.println("Length after creating permutation: " + possibleCombinationsForHintsList.size());
+			this.possibleCombinationsForHintsList = HintCombinations.of(this.charactersInPassword, this.passwordLength);
+			//Workers derive the same combinations, so that hint tasks only carry the index of their combination
+			for (ActorRef worker : this.workers)
+				worker.tell(new CrackingParametersMessage(this.charactersInPassword, this.passwordLength), this.self());
 		}
 
-		String[] passwordHints;
-		for (String[] messageLine : message.getLines()) {
-			//System.out.println(Arrays.toString(messageLine)); //Print message
-			//System.out.println(messageLine[4]);
-			int ID = Integer.parseInt(messageLine[0]);
-			passwordHints = new String[messageLine.length-5];
-			for (int i = 5; i < messageLine.length; i++) {
-				passwordHints[i-5] = messageLine[i];
-			}
-			Password password = new Password(ID, messageLine[1], messageLine[4], passwordHints, this.charactersInPassword, this.passwordLength);
+		for (PasswordRecord record : message.getLines()) {
+			Password password = new Password(record.getID(), record.getName(), record.getPassword(), record.getHints(), this.charactersInPassword, this.passwordLength);
 			//this.log().info("DEBUG: Password: " + password);
 			//System.out.println(password);
 			ID_PasswordHashMap.put(password.getID(), password); //adding password to hashmap
-			for (int i = 0; i < password.getHintsEncryptedArray().length; i++) {
-				for (int j = 0; j < this.possibleCombinationsForHintsList.size(); j++) {
-					//add to hintCrackingQueue
-					this.hintCrackingQueue.add(new DecryptHintMessage(password.getID(), password.getHintsEncryptedArray()[i], this.possibleCombinationsForHintsList.get(j)));//Add hint cracking task to hintCrackingQueue
-				}
-			}
+			for (byte[] hint : password.getHintsEncryptedArray())
+				this.openHintsHashMap.computeIfAbsent(ByteBuffer.wrap(hint), key -> new ArrayList<Integer>()).add(password.getID());
 		}
+		this.newOpenHintsVersion(); //the workers must check the new hints, too
 
-		//this.log().info("DEBUG: hintCrackingQueue size: " + hintCrackingQueue.size());
-		//this.log().info("DEBUG passwordCrackingQueue size: " + passwordCrackingQueue.size());
-
-		if(this.passwordCrackingQueue.isEmpty()){ //If there are no elements in passwordCrackingQueue
-			this.sendDecryptHintMessage(); //9.Send messages from hintCrackingQueue to Workers that are free (workerOccupied)
-		}
-		else { //If there are elements in passwordCrackingQueue
-			sendDecryptPasswordMessage(); //send decrypt password
-		}
-
-		//System.out.println("hintCrackingQueue length: " + hintCrackingQueue.size());
+		//Restart the hint cursor: every combination is searched again for the hints of the new batch
+		this.hintCombinationIndex = 0;
+		this.hintRangeFrom = 0;
 
+		this.dispatch(); //9.Send tasks to the workers that requested work
 
 		this.collector.tell(new Collector.CollectMessage("Processed batch of size " + message.getLines().size()), this.self());
 		this.collector.tell(new Collector.PrintMessage(), this.self());
 
 	}
 
-	protected boolean allWorkersAreFree(){
-		for(int i = 0; i < this.workerOccupied.size(); i++) {
-			if(this.workerOccupied.get(i) == false){
-				return false;
+	protected void readNextBatchIfNeeded(){
+		this.skipFinishedTasks();
+
+		//Terminate if all passwords are read and there are no more tasks to generate and no task is still being cracked
+		if(this.inputComplete){
+			if(!this.terminating && this.requeuedTasks.isEmpty() && this.passwordsToCrack.isEmpty() && !this.hasHintTasks() && this.tasksInFlight.isEmpty()){
+				this.terminating = true;
+				this.collector.tell(new Collector.PrintMessage(), this.self());
+				this.terminate();
 			}
+			return;
 		}
-		return true;
-	}
-
 
-	protected void sendDecryptHintMessage(){
-		//System.out.println("hintCrackingQueue size: " + hintCrackingQueue.size());
-		//System.out.println("passwordCrackingQueue size: " + passwordCrackingQueue.size());
-		for (int i = 0; i < workerOccupied.size(); i++) {
-			if (this.workerOccupied.get(i)==false){
-				try {
-					DecryptHintMessage messageToSend = this.hintCrackingQueue.remove(); //.poll para ver si tiene elemento primero
-					this.workers.get(i).tell(messageToSend, this.self());
-					this.workerOccupied.set(i, true); //Set occupied
-				}catch (NoSuchElementException e){};
-			}
+		//Read ahead: request the next batch as soon as all hint tasks of the current ones are handed out, so that the
+		//workers never wait for input; the reader prefetches the batch after that in the meantime
+		if(!this.batchRequested && this.requeuedTasks.isEmpty() && !this.hasHintTasks()){
+			this.batchRequested = true;
+			this.reader.tell(new Reader.ReadMessage(), this.self()); //tell reader to send more batches of passwords
 		}
 	}
 
-	protected void sendDecryptPasswordMessage(){
-		//System.out.println("hintCrackingQueue size: " + hintCrackingQueue.size());
-		//System.out.println("passwordCrackingQueue size: " + passwordCrackingQueue.size());
-		for (int i = 0; i < workerOccupied.size(); i++) {
-			if (this.workerOccupied.get(i)==false){
-				try {
-					GoCrackPasswordMessage messageToSend = this.passwordCrackingQueue.remove(); //.poll para ver si tiene elemento primero
-					this.workers.get(i).tell(messageToSend, this.self());
-					this.workerOccupied.set(i, true); //Set occupied
-					this.log().info("PasswordCracking message sent to worker");
-				}catch (NoSuchElementException e){};
+	protected void dispatch(){
+		//Workers pull tasks: every entry in idleWorkers is one task that a worker asked for
+		while (!this.idleWorkers.isEmpty()) {
+			CrackingTask task = this.nextTask();
+			if (task == null)
+				break;
 
-			}
+			ActorRef worker = this.idleWorkers.poll();
+			this.tasksInFlight.put(task.getTaskID(), task);
+			this.taskAssignees.put(task.getTaskID(), worker);
+			if (task instanceof DecryptHintMessage)
+				this.sendOpenHints(worker); //the latest version serves tasks of older versions, too
+			worker.tell(task, this.self());
 		}
+		this.readNextBatchIfNeeded();
 	}
 
-	private void handle(Worker.WorkerAvailableMessageToMaster workerAvailableMessageToMaster) {
-		ActorRef messageSender = this.sender();
-		for (int i = 0; i < workers.size(); i++) {
-			if(messageSender.equals(workers.get(i))){
-				//System.out.println("Worker is available");
-				this.workerOccupied.set(i, false); //Set available
-				sendDecryptPasswordMessage();
-				sendDecryptHintMessage();
-				break;
-			}
+	private CrackingTask nextTask(){
+		//first hand out lost tasks again, then try to send work for passwords and then for hints
+		this.skipFinishedTasks();
+		if (!this.requeuedTasks.isEmpty())
+			return this.requeuedTasks.poll();
+
+		Password password = this.passwordsToCrack.peek();
+		if (password != null) {
+			long from = this.passwordRangeFrom;
+			this.passwordRangeFrom = Math.min(from + this.taskSize, this.passwordSpaceSize(password));
+			this.openPasswordRangesHashMap.merge(password.getID(), 1, Integer::sum);
+			return new GoCrackPasswordMessage(this.nextTaskID++, password.getID(), password.getEncryptedPassword(), password.getPasswordCharacters(), password.getPasswordLength(), from, this.passwordRangeFrom);
 		}
+		return this.nextHintTask();
 	}
 
-	private void handle(Worker.DecryptedHint message) { //11. Master receives hint decrypted from worker. With this we know worker is free so we can send it more messages
-		//save the decrypted hint and send more work
-		//first try to send work for password then for hints
-		int ID = message.getID();
-		String encrypted = message.getEncryptedHint();
-		String decrypted = message.getDecryptedHint();
-		ActorRef messageSender = this.sender();
-		this.log().info("Password hint decrypted from ID: " + ID + " | decrypted hint: " + decrypted);
-		//System.out.println("DecryptedHint message received!!");
-		for (int i = 0; i < workers.size(); i++) {
-			if(messageSender.equals(workers.get(i))){
-				if(this.ID_PasswordHashMap.containsKey(ID)){
-					this.log().info("Added hint to hashmap with key " + ID);
-					this.ID_PasswordHashMap.get(ID).addDecryptedHint(encrypted, decrypted);
-					//System.out.println(this.ID_PasswordHashMap.get(ID).toString());
-					//System.out.println(this.ID_PasswordHashMap.get(ID).toString());
-					this.log().info("Password object: " + this.ID_PasswordHashMap.get(ID).toString());
-					//this.log().info("Saved hint for " + this.ID_PasswordHashMap.get(ID).getName() + " with ID: " + this.ID_PasswordHashMap.get(ID).getID() + "\n" + "		Hints Array: " + this.ID_PasswordHashMap.get(ID).getDecryptedPassword().toString());
-					break;
-				}
-				this.workerOccupied.set(i, false); //Set available
-			}
+	//Drops the tasks that need not be handed out anymore, so that the heads of requeuedTasks and passwordsToCrack are pending work
+	private void skipFinishedTasks(){
+		CrackingTask requeuedTask;
+		while (((requeuedTask = this.requeuedTasks.peek()) instanceof GoCrackPasswordMessage)
+				&& !this.isOpen(((GoCrackPasswordMessage) requeuedTask).getPasswordID())) {
+			this.requeuedTasks.poll();
+			this.passwordRangeDone(((GoCrackPasswordMessage) requeuedTask).getPasswordID()); //another range of this password was successful already
 		}
 
-		//check if all hints from ID are cracked
-		boolean bool = this.ID_PasswordHashMap.get(ID).checkAllDecryptedHintsTrue();
-		if(bool == true){
-			//send decrypt password message to worker!
-			Password password = (Password) ID_PasswordHashMap.get(ID).clone(); //clone the password from hashmap to send to the worker
-			this.passwordCrackingQueue.add(new GoCrackPasswordMessage(password));
-			this.log().info("Added Password Cracking work for ID" + ID + " with Password object: " + this.ID_PasswordHashMap.get(ID).toString());
-			this.log().info("PasswordCrackingQueue size: " + this.passwordCrackingQueue.size());
-			sendDecryptPasswordMessage(); //12. send password cracking
-			sendDecryptHintMessage();
+		Password password;
+		while (((password = this.passwordsToCrack.peek()) != null)
+				&& (!this.isOpen(password.getID()) || (this.passwordRangeFrom >= this.passwordSpaceSize(password)))) {
+			//All ranges of this password are handed out or it is cracked already
+			this.passwordsToCrack.poll();
+			this.passwordRangeFrom = 0;
+			this.passwordRangeDone(password.getID());
 		}
-		else { //If not all hints are cracked
-			sendDecryptHintMessage();
+	}
+
+	private boolean isOpen(int ID){
+		return this.ID_PasswordHashMap.get(ID).getDecryptedPassword().equals("");
+	}
+
+	private long passwordSpaceSize(Password password){
+		return new ProductSpace(HashEngine.toSymbols(password.getPasswordCharacters()), password.getPasswordLength()).size();
+	}
+
+	private boolean hasHintTasks(){
+		return !this.openHintsHashMap.isEmpty() && (this.possibleCombinationsForHintsList != null) && (this.hintCombinationIndex < this.possibleCombinationsForHintsList.size());
+	}
+
+	private DecryptHintMessage nextHintTask(){
+		//Tasks are fixed-size ranges of the permutations of each combination: the worker hashes each permutation once and matches it against all open hints
+		if (!this.hasHintTasks())
+			return null;
+
+		int combinationIndex = this.hintCombinationIndex;
+		char[] combination = this.possibleCombinationsForHintsList.get(combinationIndex);
+		long size = new PermutationSpace(HashEngine.toSymbols(combination)).size();
+		long from = this.hintRangeFrom;
+		long to = Math.min(from + this.taskSize, size);
+		this.hintRangeFrom = to;
+		if (to == size) {
+			this.hintCombinationIndex++;
+			this.hintRangeFrom = 0;
 		}
+		return new DecryptHintMessage(this.nextTaskID++, combinationIndex, this.openHintsVersion, from, to);
+	}
 
-		//check if workers are free and there is no more tasks in both queues -> (this means we need to terminate the program)
-		if(passwordCrackingQueue.isEmpty() && hintCrackingQueue.isEmpty()){ //Check to see if there are more tasks in queues
-			this.reader.tell(new Reader.ReadMessage(), this.self()); //tell reader to send more batches of passwords
+	//Hint tasks carry only their range; each worker gets the open hints once per version instead
+	private void sendOpenHints(ActorRef worker) {
+		if (this.openHints == null)
+			this.openHints = this.openHintsHashMap.keySet().stream().map(ByteBuffer::array).toArray(byte[][]::new);
+		Integer version = this.workerHintsVersions.put(worker, this.openHintsVersion);
+		if (version == null || version != this.openHintsVersion)
+			worker.tell(new OpenHintsMessage(this.openHintsVersion, this.openHints), this.self());
+	}
+
+	private void newOpenHintsVersion() {
+		if (this.openHints == null)
+			return; //no worker got the current version yet, so it may still change
+		this.openHints = null;
+		this.openHintsVersion++;
+		this.staleHints = 0;
+	}
+
+	//Returns true if the task was in flight, i.e., it was not completed before
+	private boolean taskDone(long taskID){
+		this.taskAssignees.remove(taskID);
+		return this.tasksInFlight.remove(taskID) != null;
+	}
+
+	private void handle(Worker.WorkRequestMessage message) {
+		for (int i = 0; i < message.getNumberOfTasks(); i++)
+			this.idleWorkers.add(this.sender());
+		this.dispatch();
+	}
+
+	private void handle(Worker.TasksStolenMessage message) {
+		//Stolen tasks are lost if the thief terminates, not if the worker that gave them away does
+		ActorRef thief = message.getThief();
+		boolean thiefAlive = this.workers.contains(thief);
+		for (long taskID : message.getTaskIDs()) {
+			if (!this.tasksInFlight.containsKey(taskID)) //completed or requeued already
+				continue;
+			if (thiefAlive) {
+				this.taskAssignees.put(taskID, thief);
+			} else {
+				this.requeuedTasks.add(this.tasksInFlight.remove(taskID));
+				this.taskAssignees.remove(taskID);
+			}
 		}
+		if (!thiefAlive)
+			this.dispatch();
+	}
+
+	private void handle(Worker.HintsCompleteMessage message) {
+		this.taskDone(message.getTaskID());
+		this.readNextBatchIfNeeded();
+	}
 
+	private void handle(Worker.DecryptedHint message) { //11. Master receives a hint decrypted from a worker; the worker keeps cracking its combination and tells us when it is free
+		byte[] encrypted = message.getEncryptedHint();
+		String decrypted = message.getDecryptedHint();
 
+		List<Integer> IDs = this.openHintsHashMap.remove(ByteBuffer.wrap(encrypted));
+		if (IDs == null) //already decrypted by another worker
+			return;
+		//Decrypted hints stay in the workers' snapshots, whose matches we ignore; only once they are half of it, the workers get a smaller one
+		if (this.openHints != null && 2 * ++this.staleHints > this.openHints.length)
+			this.newOpenHintsVersion();
+
+		for (int ID : IDs) {
+			Password password = this.ID_PasswordHashMap.get(ID);
+			password.addDecryptedHint(encrypted, decrypted);
+			this.log().info("Password hint decrypted from ID: " + ID + " | decrypted hint: " + decrypted);
+
+			//check if all hints from ID are cracked
+			if (password.checkAllDecryptedHintsTrue()) {
+				//send decrypt password messages to workers, one per range of candidates, as soon as workers request them
+				this.passwordsToCrack.add(password);
+				this.openPasswordRangesHashMap.put(ID, 1);
+				this.log().info("Added Password Cracking work for ID" + ID + " with Password object: " + password.toString());
+			}
+		}
+		this.dispatch(); //12. send password cracking
 	}
 
 	
@@ -318,73 +443,62 @@ public class Master extends AbstractLoggingActor {
 	protected void handle(RegistrationMessage message) { //5. Master receives message and starts watching it
 		this.context().watch(this.sender());
 		this.workers.add(this.sender()); //add worker to the worker arraylist from the Master
-		this.workerOccupied.add(false);
-		//System.out.println("workerOccupied size: " + workerOccupied);
+		if (this.passwordLength != -1)
+			this.sender().tell(new CrackingParametersMessage(this.charactersInPassword, this.passwordLength), this.self());
 //		this.log().info("Registered {}", this.sender());
+		//The worker asks for its first tasks with a WorkRequestMessage
 	}
 
 
 	private void handle(Worker.PasswordCompleteMessage message) {
 		int id = message.getID();
-		ActorRef messageSender = this.sender();
 		String decryptedPassword = message.getDecryptedPassword();
-		for (int i = 0; i < workers.size(); i++) {
-			if(messageSender.equals(workers.get(i))){
-				if(this.ID_PasswordHashMap.containsKey(id)){
-					if(!decryptedPassword.equals("")){
-						ID_PasswordHashMap.get(id).setDecryptedPassword(decryptedPassword);
-						this.log().info("Decrypted Password from " + ID_PasswordHashMap.get(id).getName() + " with ID " + ID_PasswordHashMap.get(id).getID() + ": " + decryptedPassword);
-						//Send solution to the collector
-						this.collector.tell(new Collector.CollectMessage("Decrypted Password from " + ID_PasswordHashMap.get(id).getName() + " with ID " + ID_PasswordHashMap.get(id).getID() + ": " + decryptedPassword), this.self());
-						this.collector.tell(new Collector.PrintMessage(), this.self());
-						break;
-					}
-				}
-				//System.out.println("Worker is available");
-				this.workerOccupied.set(i, false); //Set available
-			}
-
-		}
-
-		sendDecryptPasswordMessage();
-		sendDecryptHintMessage();
 
-		if(passwordCrackingQueue.isEmpty() && hintCrackingQueue.isEmpty()){ //Check to see if there are more tasks in queues
-			this.reader.tell(new Reader.ReadMessage(), this.self()); //tell reader to send more batches of passwords
+		if(this.ID_PasswordHashMap.containsKey(id) && !decryptedPassword.equals("")){
+			ID_PasswordHashMap.get(id).setDecryptedPassword(decryptedPassword);
+			this.log().info("Decrypted Password from " + ID_PasswordHashMap.get(id).getName() + " with ID " + ID_PasswordHashMap.get(id).getID() + ": " + decryptedPassword);
+			//Send solution to the collector
+			this.collector.tell(new Collector.CollectMessage("Decrypted Password from " + ID_PasswordHashMap.get(id).getName() + " with ID " + ID_PasswordHashMap.get(id).getID() + ": " + decryptedPassword), this.self());
+			this.collector.tell(new Collector.PrintMessage(), this.self());
 		}
+		//Close the range only after storing its result, so that the last range of a password sees whether it was cracked
+		if (this.taskDone(message.getTaskID()))
+			this.passwordRangeDone(id);
 
+		this.readNextBatchIfNeeded();
 	}
 
 
 	
+	private void passwordRangeDone(int id) {
+		int openRanges = this.openPasswordRangesHashMap.merge(id, -1, Integer::sum);
+		if (openRanges == 0) {
+			this.openPasswordRangesHashMap.remove(id);
+			if (this.ID_PasswordHashMap.get(id).getDecryptedPassword().equals(""))
+				this.log().info("No password found for ID " + id);
+		}
+	}
+
 	protected void handle(Terminated message) {
 		this.context().unwatch(message.getActor());
 		this.workers.remove(message.getActor());
+		this.workerHintsVersions.remove(message.getActor());
+		this.idleWorkers.removeIf(worker -> worker.equals(message.getActor()));
 //		this.log().info("Unregistered {}", message.getActor());
-	}
 
-	//Character combinations for password hints
-	//https://www.geeksforgeeks.org/heaps-algorithm-for-generating-permutations/
-	//https://www.geeksforgeeks.org/print-all-combinations-of-given-length/
-	private void getCharacterCombinations(char[] possibleCharacters, int passwordLength, List<char[]> dataList) {
-		char[] combination = new char[possibleCharacters.length - 1];
-		for (int i = 0; i < possibleCharacters.length; i++) {
-			int combination_index = 0;
-			for (int j = 0; j < possibleCharacters.length; j++) {
-				if (j != i) {
-					combination[combination_index++] = possibleCharacters[j];
-				}
-			}
-			if (combination.length == passwordLength) {
-
-				dataList.add(combination.clone());
-			} else {
-				getCharacterCombinations(combination, passwordLength, dataList);
-			}
+		//Hand the tasks of the terminated worker out again
+		List<Long> lostTaskIDs = new ArrayList<>();
+		this.taskAssignees.forEach((taskID, worker) -> {
+			if (worker.equals(message.getActor()))
+				lostTaskIDs.add(taskID);
+		});
+		for (long taskID : lostTaskIDs) {
+			this.requeuedTasks.add(this.tasksInFlight.remove(taskID));
+			this.taskAssignees.remove(taskID);
 		}
+		this.dispatch();
 	}
 
-
  	//https://projectlombok.org/features/Data
 	@Getter @Setter @ToString @NoArgsConstructor
 	//needs to be static to serialize with kryo
@@ -393,13 +507,13 @@ public class Master extends AbstractLoggingActor {
 		private int ID;
 		private String name;
 		private int passwordLength;
-		private String encryptedPassword;
+		@ToString.Exclude private byte[] encryptedPassword;
 		private String decryptedPassword;
-		private String[] hintsEncryptedArray;
+		@ToString.Exclude private byte[][] hintsEncryptedArray;
 		private String[] hintsDecryptedArray;
 		private char[] possibleCharacters;
 
-		public Password(int ID, String name, String encryptedPassword, String[] hintsEncryptedArray, char[] alphabet, int pwLength){
+		public Password(int ID, String name, byte[] encryptedPassword, byte[][] hintsEncryptedArray, char[] alphabet, int pwLength){
 			this.ID = ID;
 			this.name = name;
 			this.encryptedPassword = encryptedPassword;
@@ -427,24 +541,37 @@ public class Master extends AbstractLoggingActor {
 			 return hintsDecryptedArray[index];
 		}
 
-		public String getHintsEncryptedArrayWithIndex(int index){
+		public byte[] getHintsEncryptedArrayWithIndex(int index){
 			return hintsEncryptedArray[index];
 		}
 
-		public int getIndexOFHintsEncryptedArrayElement(String stringElement){
+		public int getIndexOFHintsEncryptedArrayElement(byte[] digest){
 			for (int i = 0; i < hintsEncryptedArray.length; i++) {
-				if(stringElement.equals(hintsEncryptedArray[i])){
+				if(Arrays.equals(digest, hintsEncryptedArray[i])){
 					return i;
 				}
 			}
 			return -1;
 		}
 
-		public void addDecryptedHint(String encrypted, String decrypted){
+		public void addDecryptedHint(byte[] encrypted, String decrypted){
 			int index = getIndexOFHintsEncryptedArrayElement(encrypted);
 			setHintsDecryptedArrayWithIndex(index, decrypted);
 		}
 
+		//The password consists only of the characters that occur in all decrypted hints
+		public char[] getPasswordCharacters(){
+			StringBuilder passwordCharacters = new StringBuilder();
+			for (char character : this.possibleCharacters) {
+				boolean inAllHints = true;
+				for (String hint : this.hintsDecryptedArray)
+					inAllHints &= hint.indexOf(character) >= 0;
+				if (inAllHints)
+					passwordCharacters.append(character);
+			}
+			return passwordCharacters.toString().toCharArray();
+		}
+
 		//create method to check if all hintsDecryptedArray are different than '' (empty)
 		public boolean checkAllDecryptedHintsTrue(){
 			for (int i = 0; i < hintsDecryptedArray.length; i++) {
@@ -1,25 +1,43 @@
 package de.hpi.ddm.actors;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Optional;
 
 import com.opencsv.CSVReader;
 
+import akka.NotUsed;
 import akka.actor.AbstractLoggingActor;
+import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.stream.ActorAttributes;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import de.hpi.ddm.configuration.ConfigurationSingleton;
 import de.hpi.ddm.configuration.DatasetDescriptorSingleton;
+import de.hpi.ddm.structures.MappedCSVReader;
+import de.hpi.ddm.structures.PasswordRecord;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 public class Reader extends AbstractLoggingActor {
 
 	////////////////////////
 	// Actor Construction //
 	////////////////////////
-	
+
 	public static final String DEFAULT_NAME = "reader";
 
+	public static final String IO_DISPATCHER = "akka.stream.default-blocking-io-dispatcher";
+
 	public static Props props() {
 		return Props.create(Reader.class);
 	}
@@ -32,17 +50,41 @@ public class Reader extends AbstractLoggingActor {
 	public static class ReadMessage implements Serializable {
 		private static final long serialVersionUID = -3254147511955012292L;
 	}
-	
+
+	// The following messages are exchanged between the CSV stream and the reader itself
+
+	@Data @NoArgsConstructor
+	private static class StreamInitializedMessage implements Serializable {
+		private static final long serialVersionUID = 4311725325406512317L;
+	}
+
+	@Data @NoArgsConstructor
+	private static class StreamAckMessage implements Serializable {
+		private static final long serialVersionUID = -6421733046101624783L;
+	}
+
+	@Data @NoArgsConstructor
+	private static class StreamCompletedMessage implements Serializable {
+		private static final long serialVersionUID = -2276510364306284916L;
+	}
+
+	@Data @NoArgsConstructor @AllArgsConstructor
+	private static class StreamFailedMessage implements Serializable {
+		private static final long serialVersionUID = 5830127720413358619L;
+		private Throwable cause;
+	}
+
 	/////////////////
 	// Actor State //
 	/////////////////
-	
-	private CSVReader reader;
-	
-	private int bufferSize;
-	
-	private List<String[]> buffer;
-	
+
+	private Materializer materializer;
+
+	private final Deque<List<PasswordRecord>> batches = new ArrayDeque<>();	// Batches that were read ahead but not yet requested by the master
+	private ActorRef stream;											// The stream waiting for the ack of the last batch; null if it may send already
+	private ActorRef requester;											// The master waiting for a batch; null if no batch was requested
+	private boolean streamCompleted = false;
+
 	/////////////////////
 	// Actor Lifecycle //
 	/////////////////////
@@ -50,17 +92,44 @@ public class Reader extends AbstractLoggingActor {
 	@Override
 	public void preStart() throws Exception {
 		Reaper.watchWithDefaultReaper(this);
-		
-		this.reader = DatasetDescriptorSingleton.get().createCSVReader();
-		this.bufferSize = ConfigurationSingleton.get().getBufferSize();
-		this.buffer = new ArrayList<>(this.bufferSize);
-		
-		this.read();
+
+		this.materializer = ActorMaterializer.create(this.context());
+
+		// The input is read as a stream of batches: the blocking CSV parsing runs on the IO dispatcher and is driven by the demand
+		// of this actor, which acks a batch only once the master took it. Together with the one batch buffered in the stream,
+		// the next batches are always read ahead while the workers crack the current one.
+		int bufferSize = ConfigurationSingleton.get().getBufferSize();
+		this.records()
+				.grouped(bufferSize)
+				.withAttributes(ActorAttributes.dispatcher(IO_DISPATCHER))
+				.buffer(1, OverflowStrategy.backpressure())
+				.runWith(Sink.actorRefWithAck(this.self(), new StreamInitializedMessage(), new StreamAckMessage(),
+						new StreamCompletedMessage(), StreamFailedMessage::new), this.materializer);
 	}
 
-	@Override
-	public void postStop() throws Exception {
-		this.reader.close();
+	private Source<PasswordRecord, NotUsed> records() {
+		if (DatasetDescriptorSingleton.get().isReaderMemoryMapped())
+			return Source.<PasswordRecord, MappedCSVReader>unfoldResource(
+					() -> DatasetDescriptorSingleton.get().createMappedCSVReader(),
+					reader -> reader.next() ? Optional.of(PasswordRecord.of(reader)) : Optional.empty(),
+					MappedCSVReader::close);
+
+		Source<String[], NotUsed> lines = Source.<String[], CSVReader>unfoldResource(
+				() -> DatasetDescriptorSingleton.get().createCSVReader(),
+				reader -> Optional.ofNullable(reader.readNext()),
+				CSVReader::close);
+
+		// The memory-mapped reader skips these lines itself
+		if (DatasetDescriptorSingleton.get().isReaderSkipDifferingLines())
+			lines = lines.statefulMapConcat(() -> {
+				int[] firstLength = { -1 };
+				return line -> {
+					if (firstLength[0] < 0)
+						firstLength[0] = line.length;
+					return (line.length == firstLength[0]) ? Collections.singletonList(line) : Collections.emptyList();
+				};
+			});
+		return lines.map(PasswordRecord::of);
 	}
 
 	////////////////////
@@ -71,21 +140,56 @@ public class Reader extends AbstractLoggingActor {
 	public Receive createReceive() {
 		return receiveBuilder()
 				.match(ReadMessage.class, this::handle)
+				.match(StreamInitializedMessage.class, this::handle)
+				.match(List.class, this::handle)
+				.match(StreamCompletedMessage.class, this::handle)
+				.match(StreamFailedMessage.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
 	}
 
-	private void handle(ReadMessage message) throws Exception {
-		this.sender().tell(new Master.BatchMessage(new ArrayList<>(this.buffer)), this.self()); //8. Reader sends master a BatchMessage with work
-		
-		this.read();
+	private void handle(ReadMessage message) {
+		this.requester = this.sender();
+		this.deliver();
+	}
+
+	private void handle(StreamInitializedMessage message) {
+		this.sender().tell(new StreamAckMessage(), this.self());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void handle(List<?> batch) {
+		this.batches.add((List<PasswordRecord>) batch);
+		this.stream = this.sender();
+		this.deliver();
 	}
-	
-	private void read() throws Exception {
-		this.buffer.clear();
-		
-		String[] line;
-		while ((this.buffer.size() < this.bufferSize) && ((line = this.reader.readNext()) != null))
-			this.buffer.add(line);
+
+	private void handle(StreamCompletedMessage message) {
+		this.streamCompleted = true;
+		this.deliver();
+	}
+
+	private void handle(StreamFailedMessage message) {
+		this.log().error(message.getCause(), "Reading the input failed");
+		this.handle(new StreamCompletedMessage());
+	}
+
+	private void deliver() {
+		if (this.requester == null)
+			return;
+
+		if (!this.batches.isEmpty())
+			this.requester.tell(new Master.BatchMessage(this.batches.poll()), this.self()); //8. Reader sends master a BatchMessage with work
+		else if (this.streamCompleted)
+			this.requester.tell(new Master.BatchMessage(new ArrayList<>()), this.self());
+		else
+			return;
+		this.requester = null;
+
+		// Request the next batch from the stream as soon as the last one is handed over
+		if (this.stream != null) {
+			this.stream.tell(new StreamAckMessage(), this.self());
+			this.stream = null;
+		}
 	}
 }
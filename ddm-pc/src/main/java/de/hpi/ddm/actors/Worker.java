@@ -1,12 +1,15 @@
 package de.hpi.ddm.actors;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
+import akka.actor.ActorSelection;
 import akka.actor.PoisonPill;
 import akka.actor.Props;
 import akka.cluster.Cluster;
@@ -15,7 +18,18 @@ import akka.cluster.ClusterEvent.MemberRemoved;
 import akka.cluster.ClusterEvent.MemberUp;
 import akka.cluster.Member;
 import akka.cluster.MemberStatus;
+import akka.pattern.Patterns;
 import de.hpi.ddm.MasterSystem;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.cracking.CrackingPoolSingleton;
+import de.hpi.ddm.cracking.HintCombinations;
+import de.hpi.ddm.cracking.PermutationSpace;
+import de.hpi.ddm.cracking.ProductSpace;
+import de.hpi.ddm.cracking.RangeSearch;
+import de.hpi.ddm.cracking.SearchContext;
+import de.hpi.ddm.cracking.SearchSpace;
+import de.hpi.ddm.structures.DigestSet;
+import de.hpi.ddm.structures.HashEngine;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -32,12 +46,10 @@ public class Worker extends AbstractLoggingActor {
 		return Props.create(Worker.class);
 	}
 
-	private boolean stop;
-	private String decryptedPassword;
-
 	public Worker() {
 		this.cluster = Cluster.get(this.context().system());
-		this.decryptedPassword = "";
+		this.prefetchWindow = Math.max(1, ConfigurationSingleton.get().getPrefetchWindow());
+		this.nextVictim = index(this.self());
 	}
 	
 	////////////////////
@@ -45,25 +57,64 @@ public class Worker extends AbstractLoggingActor {
 	////////////////////
 
 
-	@AllArgsConstructor
-	public static class WorkerAvailableMessageToMaster implements Serializable{}
+	//Workers pull tasks: they ask the master for a number of further tasks
+	@Data
+	@AllArgsConstructor @NoArgsConstructor
+	public static class WorkRequestMessage implements Serializable {
+		private int numberOfTasks;
+	}
+
+	@Data
+	@AllArgsConstructor @NoArgsConstructor
+	public static class HintsCompleteMessage implements Serializable {
+		private long taskID;
+	}
 
 	@Data
 	@AllArgsConstructor @NoArgsConstructor
 	public static class DecryptedHint implements Serializable {
-		private int ID;
-		private String encryptedHint;
+		private byte[] encryptedHint;
 		private String decryptedHint;
 	}
 
 	@Data
 	@AllArgsConstructor @NoArgsConstructor
 	public static class PasswordCompleteMessage implements Serializable {
+		private long taskID;
 		private int ID;
-		private String encryptedPassword;
 		private String decryptedPassword;
 	}
 
+	//Sent by the cracking pool to the worker itself when the search of the current task has finished
+	@Data
+	@AllArgsConstructor @NoArgsConstructor
+	private static class SearchCompletedMessage implements Serializable {
+		private Object result; //message for the master
+		private Throwable cause; //null if the search did not fail
+	}
+
+	//Sent to another worker of the same node by a worker that ran out of tasks
+	@Data @NoArgsConstructor
+	public static class StealRequestMessage implements Serializable {
+	}
+
+	//Tasks taken from the backlog of another worker of the same node; empty if that worker has none to give away
+	@Data
+	@AllArgsConstructor @NoArgsConstructor
+	public static class StolenTasksMessage implements Serializable {
+		private List<Master.CrackingTask> tasks;
+		private ActorRef master;
+		private Master.OpenHintsMessage openHints; //the open hints of the giving worker, which the stolen hint tasks may need; null if it has none
+	}
+
+	//Sent to the master by a worker that gave tasks away, so that they are handed out again only if the thief terminates
+	@Data
+	@AllArgsConstructor @NoArgsConstructor
+	public static class TasksStolenMessage implements Serializable {
+		private long[] taskIDs;
+		private ActorRef thief;
+	}
+
 	/////////////////
 	// Actor State //
 	/////////////////
@@ -72,8 +123,26 @@ public class Worker extends AbstractLoggingActor {
 	private Member masterSystem;
 	private final Cluster cluster;
 	private ActorRef master;
-	private String hint;
-	private int ID;
+
+	//The character combinations of the hint tasks, which refer to them by index
+	private List<char[]> hintCombinations;
+
+	//Tasks are prefetched so that the worker never idles during the round trip to the master
+	private final int prefetchWindow; //number of tasks requested from the master at the same time
+	private final Deque<Master.CrackingTask> backlog = new ArrayDeque<>(); //tasks received but not started yet
+	private final Set<Long> stolenTaskIDs = new HashSet<>(); //tasks that were not requested from the master by this worker
+	private Master.CrackingTask currentTask;
+
+	//The latest open hints from the master; hint tasks carry only the version that they need
+	private Master.OpenHintsMessage openHints;
+	private DigestSet openHintDigests;
+
+	//An idle worker asks one sibling after the other for tasks, so that a single steal does not drain all of their backlogs
+	private int nextVictim; //index of the sibling that is asked next
+	private int stealAttempts = 0; //siblings asked since this worker ran out of tasks
+
+	//The search of the current task; it runs on the node's cracking pool so that one task uses all cores
+	private SearchContext search;
 
 
 	/////////////////////
@@ -90,6 +159,9 @@ public class Worker extends AbstractLoggingActor {
 	@Override
 	public void postStop() {
 		this.cluster.unsubscribe(this.self());
+
+		if (this.search != null)
+			this.search.cancel();
 	}
 
 	////////////////////
@@ -102,8 +174,12 @@ public class Worker extends AbstractLoggingActor {
 				.match(CurrentClusterState.class, this::handle)
 				.match(MemberUp.class, this::handle)
 				.match(MemberRemoved.class, this::handle)
-				.match(Master.DecryptHintMessage.class, this::handle)
-				.match(Master.GoCrackPasswordMessage.class, this::handle)
+				.match(Master.CrackingParametersMessage.class, this::handle)
+				.match(Master.OpenHintsMessage.class, this::handle)
+				.match(Master.CrackingTask.class, this::handle)
+				.match(SearchCompletedMessage.class, this::handle)
+				.match(StealRequestMessage.class, this::handle)
+				.match(StolenTasksMessage.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
 	}
@@ -123,9 +199,9 @@ public class Worker extends AbstractLoggingActor {
 		if ((this.masterSystem == null) && member.hasRole(MasterSystem.MASTER_ROLE)) {
 			this.masterSystem = member;
 			
-			this.getContext()
-				.actorSelection(member.address() + "/user/" + Master.DEFAULT_NAME)
-				.tell(new Master.RegistrationMessage(), this.self()); //4.Send message to Master
+			ActorSelection master = this.getContext().actorSelection(member.address() + "/user/" + Master.DEFAULT_NAME);
+			master.tell(new Master.RegistrationMessage(), this.self()); //4.Send message to Master
+			master.tell(new WorkRequestMessage(this.prefetchWindow), this.self()); //and fill the prefetch window
 		}
 	}
 	
@@ -134,191 +210,159 @@ public class Worker extends AbstractLoggingActor {
 			this.self().tell(PoisonPill.getInstance(), ActorRef.noSender());
 	}
 
-	private void handle(Master.DecryptHintMessage message) { //10. Worker receives decryptHintMessage message and starts  decrypting
-		//System.out.println("Got message!!!");
-		this.master = this.sender();
-		this.ID = message.getID();
-		this.hint = message.getHint();
-
-		this.log().info("Started decrypting hint");
+	private void handle(Master.CrackingParametersMessage message) {
+		this.hintCombinations = HintCombinations.of(message.getPasswordCharacters(), message.getPasswordLength());
+	}
 
-		//System.out.println(this.hint);
+	private void handle(Master.OpenHintsMessage message) {
+		//A stolen set may be newer than the one from the master, which is sent before the next hint task only
+		if (this.openHints != null && this.openHints.getVersion() >= message.getVersion())
+			return;
+		this.openHints = message;
+		this.openHintDigests = new DigestSet(message.getHints());
+	}
 
-		List<String> allPermutations = new ArrayList<>(); //Not needed unless we want to see permutations checked
-		this.stop = false;
-		heapPermutation(message.getHintCharacterCombination(), message.getHintCharacterCombination().length, allPermutations);
-		//this.log().info("Size of permutations tried: " + allPermutations.size());
+	private void handle(Master.CrackingTask task) {
+		this.master = this.sender();
+		this.backlog.add(task);
+		this.startNextTask();
+	}
 
-		this.master.tell(new WorkerAvailableMessageToMaster(), this.self()); //tell master it is free
+	private void startNextTask() {
+		if (this.currentTask != null || this.backlog.isEmpty())
+			return;
 
-		//here
-		//System.out.println(this.hint);
-		//System.out.println(hash(new String(message.getHintCharacterCombination())));
+		this.currentTask = this.backlog.poll();
+		if (this.currentTask instanceof Master.DecryptHintMessage)
+			this.start((Master.DecryptHintMessage) this.currentTask);
+		else
+			this.start((Master.GoCrackPasswordMessage) this.currentTask);
 	}
 
-	private void handle(Master.GoCrackPasswordMessage message) { //13. Here worker receives a password to crack
-		//see how to get characters from the hints!
-		//Master should send all hints (so the password object) through here so the worker can work on the password
-		this.ID = message.getPassword().getID(); //Fields are obtained in this way
+	private void start(Master.DecryptHintMessage message) { //10. Worker starts decrypting a hint task
+		final ActorRef master = this.master;
+		final ActorRef self = this.self();
+		if (this.openHints == null || this.openHints.getVersion() < message.getHintsVersion()) {
+			this.log().error("Missing open hints of version " + message.getHintsVersion() + " for task " + message.getTaskID());
+			this.handle(new Master.OpenHintsMessage(message.getHintsVersion(), new byte[0][]));
+		}
+		final byte[][] hints = this.openHints.getHints();
+		DigestSet hintDigests = this.openHintDigests;
+		char[] combination = this.hintCombinations.get(message.getCombinationIndex());
 
+		this.log().info("Started decrypting hints for combination " + new String(combination) + " in [" + message.getFrom() + ", " + message.getTo() + ")");
 
-		String encrypted = message.getPassword().getEncryptedPassword(); //This we should change
-		//System.out.println("encryptedPassword: " + encrypted);
+		//Each permutation is hashed once and matched against all unresolved hints; hits are reported right away from the pool threads
+		this.search = new SearchContext(hintDigests, (index, candidate) ->
+			master.tell(new DecryptedHint(hints[index], new String(candidate, StandardCharsets.US_ASCII)), self));
 
+		SearchSpace space = new PermutationSpace(HashEngine.toSymbols(combination));
+		final long taskID = message.getTaskID();
+		this.crack(new RangeSearch(this.search, space, message.getFrom(), message.getTo()), () -> new HintsCompleteMessage(taskID));
+	}
 
-		String[] hints = message.getPassword().getHintsDecryptedArray().clone();
-		char[] alphabet = message.getPassword().getPossibleCharacters().clone();
+	private void start(Master.GoCrackPasswordMessage message) { //13. Here worker starts cracking a range of a password
+		final long taskID = message.getTaskID();
+		final int ID = message.getPasswordID();
+		final byte[] encrypted = message.getEncryptedPassword();
 
+		char[] set = message.getPasswordCharacters();
+		int k = message.getPasswordLength();
 
-		char[] set = getMissingCharactersofHint(hints, alphabet);
-		int k = message.getPassword().getPasswordLength();
-		int n = set.length;
+		final AtomicReference<String> decryptedPassword = new AtomicReference<>("");
+		this.search = new SearchContext(new DigestSet(new byte[][] { encrypted }), (index, candidate) ->
+			decryptedPassword.set(new String(candidate, StandardCharsets.US_ASCII)));
 
-		printAllKLengthRec(set, "", n,k,encrypted);
-		if(!this.decryptedPassword.equals("")) {
-			this.master.tell(new PasswordCompleteMessage(this.ID, encrypted, this.decryptedPassword), this.self());
-			return;
-		}
-		this.log().info("No password found");
-		this.master.tell(new PasswordCompleteMessage(this.ID, encrypted, this.decryptedPassword), this.self());
+		SearchSpace space = new ProductSpace(HashEngine.toSymbols(set), k);
+		this.crack(new RangeSearch(this.search, space, message.getFrom(), message.getTo()), () -> new PasswordCompleteMessage(taskID, ID, decryptedPassword.get()));
 	}
 
-	private char[] getMissingCharactersofHint (String[] hints, char[] alphabet){
+	private void crack(ForkJoinTask<?> task, Supplier<Object> result) {
+		CompletableFuture<SearchCompletedMessage> completion = CompletableFuture
+				.runAsync(task::invoke, CrackingPoolSingleton.get())
+				.handle((done, cause) -> new SearchCompletedMessage(result.get(), cause));
+		Patterns.pipe(completion, this.context().dispatcher()).to(this.self());
+	}
 
-		List<Character> alphabetList = new ArrayList<Character>();
-		for (char c : alphabet) {
-			alphabetList.add(c);
-		}
+	private void handle(SearchCompletedMessage message) {
+		if (message.getCause() != null)
+			this.log().error(message.getCause(), "Cracking failed");
+		if ((message.getResult() instanceof PasswordCompleteMessage) && ((PasswordCompleteMessage) message.getResult()).getDecryptedPassword().isEmpty())
+			this.log().info("No password found for ID " + ((PasswordCompleteMessage) message.getResult()).getID() + " in this range");
 
+		this.master.tell(message.getResult(), this.self());
+		if (!this.stolenTaskIDs.remove(this.currentTask.getTaskID()))
+			this.master.tell(new WorkRequestMessage(1), this.self()); //refill the prefetch window
 
-		for (String hintString : hints) {
-			//System.out.println(hintString);
-			List<Character> newAlphabet =  new ArrayList<Character>();
-			String tempHint = hintString; // HJKGDEFBIC
-			for (int i = 0; i < tempHint.length(); i++) {
-				//System.out.println(tempHint.charAt(i));
-				char hintChar =tempHint.charAt(i); //H J K
-				for (int k = 0; k < alphabetList.size(); k++) {
-					char alphChar = alphabetList.get(k);   //A
-					//System.out.println("Alphabet letter: " + alphChar);
-					if(alphChar == hintChar) {
-						//System.out.println("YES!");
-						//if the hintchar is not in the alphabet
-						if(alphabetList.contains(hintChar)) {
-							//System.out.println("MORE YES");
-							newAlphabet.add(hintChar);
-						}
-					}
-				}
-			}
-			alphabetList = newAlphabet;
-		}
+		this.search = null;
+		this.currentTask = null;
+		this.startNextTask();
 
-		String returnstring = "";
-		for (int j = 0; j < alphabetList.size(); j++) {
-			//System.out.println(alphabetList.get(j));
-			returnstring = returnstring +alphabetList.get(j);
+		if (this.currentTask == null) { //out of work: try to steal from the other workers on this node
+			this.stealAttempts = 0;
+			this.steal();
 		}
-		//System.out.println(returnstring);
-		char[] returnCharArray =returnstring.toCharArray();
-		return returnCharArray;
-
 	}
 
-	// Generating all possible strings of length k
-	// strings are hashed
-	// https://www.geeksforgeeks.org/print-all-combinations-of-given-length/
-
-	 void printAllKLengthRec(char[] set, String prefix, int n, int k, String encrypted)
-	{
-		String password = encrypted;
-
-		// Base case: k is 0,
-		// print prefix
-		if (k == 0)
-		{
-			String curr_hashed = hash(prefix);
-			if (curr_hashed.equals(password)){
-				this.decryptedPassword = prefix;
-				this.log().info("Found password for ID  " + this.ID + ": " + this.decryptedPassword);
-			}
+	//Ask the next sibling for tasks, until each of them was asked once
+	private void steal() {
+		int workers = ConfigurationSingleton.get().getNumWorkers();
+		if (this.stealAttempts >= workers - 1)
 			return;
-		}
-
-		// One by one add all characters
-		// from set and recursively
-		// call for k equals to k-1
-		for (int i = 0; i < n; ++i)
-		{
 
-			// Next character of input added
-			String newPrefix = prefix + set[i];
-
-			// k is decreased, because
-			// we have added a new character
-			printAllKLengthRec(set, newPrefix,
-					n, k - 1, encrypted);
-		}
+		int self = index(this.self());
+		do {
+			this.nextVictim = (this.nextVictim + 1) % workers;
+		} while (this.nextVictim == self);
+		this.stealAttempts++;
+		this.getContext().actorSelection("/user/" + DEFAULT_NAME + this.nextVictim).tell(new StealRequestMessage(), this.self());
 	}
 
-
-	private String hash(String line) {
-		try {
-			MessageDigest digest = MessageDigest.getInstance("SHA-256");
-			byte[] hashedBytes = digest.digest(String.valueOf(line).getBytes("UTF-8"));
-
-			StringBuffer stringBuffer = new StringBuffer();
-			for (int i = 0; i < hashedBytes.length; i++) {
-				stringBuffer.append(Integer.toString((hashedBytes[i] & 0xff) + 0x100, 16).substring(1));
-			}
-			return stringBuffer.toString();
-		}
-		catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
-			throw new RuntimeException(e.getMessage());
-		}
+	//Workers are named by their index on their node
+	private static int index(ActorRef worker) {
+		return Integer.parseInt(worker.path().name().substring(DEFAULT_NAME.length()));
 	}
 
-	// Generating all permutations of an array using Heap's Algorithm
-	// https://en.wikipedia.org/wiki/Heap's_algorithm
-	// https://www.geeksforgeeks.org/heaps-algorithm-for-generating-permutations/
-	//This implementation is inefficient because it calculates a permutation for each hint (instead of grouping all hints per permutation to calculate a permutation only once)
-	private void heapPermutation(char[] a, int size, List<String> l) {
-		// If size is 1, store the obtained permutation
-		if (this.stop){
+	private void handle(StealRequestMessage message) {
+		if (this.sender().equals(this.self()))
+			return;
+		if (this.backlog.isEmpty()) {
+			this.sender().tell(new StolenTasksMessage(new ArrayList<>(), this.master, this.openHints), this.self());
 			return;
 		}
 
-		if (size == 1)
-		{
-			l.add(new String(a));//add permutation to a list but instead we can hash it here
-			//Hash permutation
-			String permutationHash = hash(new String(a));
-			if(this.hint.equals(permutationHash)){
-				this.stop = true;
-				this.log().info("Hint decrypted");
-				this.master.tell(new DecryptedHint(this.ID, this.hint, new String(a)), this.self());
-
-			}
-
+		//Give away the younger half of the backlog
+		List<Master.CrackingTask> tasks = new ArrayList<>();
+		long[] taskIDs = new long[(this.backlog.size() + 1) / 2];
+		int requested = 0;
+		for (int i = 0; i < taskIDs.length; i++) {
+			Master.CrackingTask task = this.backlog.pollLast();
+			if (!this.stolenTaskIDs.remove(task.getTaskID()))
+				requested++;
+			tasks.add(task);
+			taskIDs[i] = task.getTaskID();
 		}
+		this.sender().tell(new StolenTasksMessage(tasks, this.master, this.openHints), this.self());
 
+		//The master reassigns the given away tasks to the thief and counts them against this worker's prefetch window
+		this.master.tell(new TasksStolenMessage(taskIDs, this.sender()), this.self());
+		this.master.tell(new WorkRequestMessage(requested), this.self());
+	}
 
-		for (int i = 0; i < size; i++) {
-			heapPermutation(a, size - 1, l);
-
-			// If size is odd, swap first and last element
-			if (size % 2 == 1) {
-				char temp = a[0];
-				a[0] = a[size - 1];
-				a[size - 1] = temp;
-			}
+	private void handle(StolenTasksMessage message) {
+		if (message.getOpenHints() != null)
+			this.handle(message.getOpenHints());
+		if (message.getTasks().isEmpty()) {
+			if (this.currentTask == null)
+				this.steal(); //that sibling had nothing to give away
+			return;
+		}
 
-			// If size is even, swap i-th and last element
-			else {
-				char temp = a[i];
-				a[i] = a[size - 1];
-				a[size - 1] = temp;
-			}
+		this.master = message.getMaster();
+		for (Master.CrackingTask task : message.getTasks()) {
+			this.stolenTaskIDs.add(task.getTaskID());
+			this.backlog.add(task);
 		}
+		this.startNextTask();
 	}
-}
\ No newline at end of file
+}
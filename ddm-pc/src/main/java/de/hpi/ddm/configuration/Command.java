@@ -14,5 +14,11 @@ public abstract class Command {
 
 	@Parameter(names = { "-w", "--numWorkers" }, description = "The number of workers (indexers/validators) to start locally; should be at least one if the algorithm is started standalone (otherwise there are no workers to run the discovery)", required = false)
 	int numWorkers = ConfigurationSingleton.get().getNumWorkers();
+
+	@Parameter(names = { "-ct", "--crackingThreads" }, description = "The number of threads that all local workers share to crack a single task in parallel", required = false)
+	int crackingThreads = ConfigurationSingleton.get().getCrackingThreads();
+
+	@Parameter(names = { "-pw", "--prefetchWindow" }, description = "The number of tasks that each worker requests in advance, so that it never idles during the round trip to the master", required = false)
+	int prefetchWindow = ConfigurationSingleton.get().getPrefetchWindow();
 	
 }
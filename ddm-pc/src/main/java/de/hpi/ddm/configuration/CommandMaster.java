@@ -18,6 +18,9 @@ public class CommandMaster extends Command {
 
 	@Parameter(names = { "-bs", "--bufferSize" }, description = "Buffer for input reading (the DatasetReader pre-fetches and buffers this many records)", required = false)
 	int bufferSize = ConfigurationSingleton.get().getBufferSize();
+
+	@Parameter(names = { "-ts", "--taskSize" }, description = "The number of candidates (permutations or passwords) that the master hands out per cracking task", required = false)
+	long taskSize = ConfigurationSingleton.get().getTaskSize();
 	
 	// DatasetDescriptor
 	
@@ -53,4 +56,7 @@ public class CommandMaster extends Command {
 
 	@Parameter(names = { "-rsdl", "--readerSkipDifferingLines" }, description = "True if the reader should skip lines in the input that have a different length as the first line", required = false)
 	boolean readerSkipDifferingLines = DatasetDescriptorSingleton.get().isReaderSkipDifferingLines();
+
+	@Parameter(names = { "-mm", "--readerMemoryMapped" }, description = "True if the reader should map the input file into memory and split it in place; values must not be quoted", required = false)
+	boolean readerMemoryMapped = DatasetDescriptorSingleton.get().isReaderMemoryMapped();
 }
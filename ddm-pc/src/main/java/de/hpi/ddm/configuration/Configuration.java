@@ -21,10 +21,16 @@ public class Configuration {
 	
 	private int numWorkers = 4;						// The number of workers to start locally; should be at least one if the algorithm is started standalone (otherwise there are no workers to run the application)
 	
+	private int crackingThreads = Runtime.getRuntime().availableProcessors(); // The number of threads that all local workers share to crack a single task in parallel
+	
+	private int prefetchWindow = 2;					// The number of tasks that each worker requests in advance, so that it never idles during the round trip to the master
+	
 	private boolean startPaused = false;			// Wait for some console input to start; useful, if we want to wait manually until all ActorSystems in the cluster are started (e.g. to avoid work stealing effects in performance evaluations)
 	
 	private int bufferSize = 50; 					// Buffer for input reading (the DatasetReader pre-fetches and buffers this many records)
 	
+	private long taskSize = 1 << 20;				// The number of candidates (permutations or passwords) that the master hands out per cracking task
+	
 	private static String getDefaultHost() {
         try {
             return InetAddress.getLocalHost().getHostAddress();
@@ -37,8 +43,11 @@ public class Configuration {
 		this.host = commandMaster.host;
 		this.port = commandMaster.port;
 		this.numWorkers = commandMaster.numWorkers;
+		this.crackingThreads = commandMaster.crackingThreads;
+		this.prefetchWindow = commandMaster.prefetchWindow;
 		this.startPaused = commandMaster.startPaused;
 		this.bufferSize = commandMaster.bufferSize;
+		this.taskSize = commandMaster.taskSize;
 	}
 
 	public void update(CommandSlave commandSlave) {
@@ -47,5 +56,7 @@ public class Configuration {
 		this.masterHost = commandSlave.masterhost;
 		this.masterPort = commandSlave.masterport;
 		this.numWorkers = commandSlave.numWorkers;
+		this.crackingThreads = commandSlave.crackingThreads;
+		this.prefetchWindow = commandSlave.prefetchWindow;
 	}
 }
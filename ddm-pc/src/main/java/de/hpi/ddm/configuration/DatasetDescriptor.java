@@ -16,6 +16,7 @@ import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.enums.CSVReaderNullFieldIndicator;
 
+import de.hpi.ddm.structures.MappedCSVReader;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -39,6 +40,7 @@ public class DatasetDescriptor implements Serializable {
 	private boolean valueIgnoreLeadingWhitespace = true;	// Ignore i.e. delete all whitespaces preceding any read value 
 	
 	private boolean readerSkipDifferingLines = true;		// True if the reader should skip lines in the input that have a different length as the first line
+	private boolean readerMemoryMapped = false;				// True if the reader should map the input file into memory and split it in place instead of parsing it with opencsv
 	
 	public String getDatasetPathNameEnding() {
 		String pathNameSeparator = this.datasetPath.endsWith(File.separator) ? "" : File.separator;
@@ -59,10 +61,11 @@ public class DatasetDescriptor implements Serializable {
 		this.valueStrictQuotes = commandMaster.attributeStrictQuotes;
 		this.valueIgnoreLeadingWhitespace = commandMaster.attributeIgnoreLeadingWhitespace;
 		this.readerSkipDifferingLines = commandMaster.readerSkipDifferingLines;
+		this.readerMemoryMapped = commandMaster.readerMemoryMapped;
 	}
 
 	public CSVReader createCSVReader() throws IOException {
-		Path path = Paths.get(this.datasetPath + this.datasetName + this.datasetEnding);
+		Path path = this.getDatasetFilePath();
 		
 		CSVParser parser = new CSVParserBuilder()
 				.withSeparator(this.valueSeparator)
@@ -81,4 +84,12 @@ public class DatasetDescriptor implements Serializable {
 		
 		return reader;
 	}
+
+	public MappedCSVReader createMappedCSVReader() throws IOException {
+		return new MappedCSVReader(this.getDatasetFilePath(), this.charset, this.valueSeparator, this.fileHasHeader, this.readerSkipDifferingLines);
+	}
+
+	private Path getDatasetFilePath() {
+		return Paths.get(this.datasetPath + this.datasetName + this.datasetEnding);
+	}
 }
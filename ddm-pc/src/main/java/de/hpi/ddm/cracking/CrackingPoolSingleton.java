@@ -0,0 +1,17 @@
+package de.hpi.ddm.cracking;
+
+import java.util.concurrent.ForkJoinPool;
+
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+
+public class CrackingPoolSingleton {
+
+	// Created on first use, i.e., after the configuration has been parsed
+	private static class Holder {
+		private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, ConfigurationSingleton.get().getCrackingThreads()));
+	}
+	
+	public static ForkJoinPool get() {
+		return Holder.pool;
+	}
+}
@@ -0,0 +1,44 @@
+package de.hpi.ddm.cracking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The character combinations whose permutations are searched for hints, i.e., the subsets of the password characters
+ * that have the length of a hint. Master and workers derive the same list from the password characters and password
+ * length, so tasks can refer to a combination by its index.
+ */
+public class HintCombinations {
+
+	/**
+	 * Enumerate the combinations of the given length.
+	 * @param possibleCharacters all password characters
+	 * @param passwordLength the length of the combinations
+	 * @return the combinations in a deterministic order
+	 */
+	public static List<char[]> of(char[] possibleCharacters, int passwordLength) {
+		List<char[]> combinations = new ArrayList<>();
+		collect(possibleCharacters, passwordLength, combinations);
+		return combinations;
+	}
+
+	//Character combinations for password hints
+	//https://www.geeksforgeeks.org/heaps-algorithm-for-generating-permutations/
+	//https://www.geeksforgeeks.org/print-all-combinations-of-given-length/
+	private static void collect(char[] possibleCharacters, int passwordLength, List<char[]> dataList) {
+		char[] combination = new char[possibleCharacters.length - 1];
+		for (int i = 0; i < possibleCharacters.length; i++) {
+			int combination_index = 0;
+			for (int j = 0; j < possibleCharacters.length; j++) {
+				if (j != i) {
+					combination[combination_index++] = possibleCharacters[j];
+				}
+			}
+			if (combination.length == passwordLength) {
+				dataList.add(combination.clone());
+			} else {
+				collect(combination, passwordLength, dataList);
+			}
+		}
+	}
+}
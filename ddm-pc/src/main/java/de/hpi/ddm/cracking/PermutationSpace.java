@@ -0,0 +1,95 @@
+package de.hpi.ddm.cracking;
+
+/**
+ * All permutations of n distinct symbols in lexicographic order of their symbol indexes.
+ * Ranks are numbers in the factorial number system, whose i-th digit picks the i-th symbol among the unused ones.
+ */
+public class PermutationSpace extends SearchSpace {
+
+	private static final long[] FACTORIALS = new long[21]; // 20! is the largest factorial that fits into a long
+
+	static {
+		FACTORIALS[0] = 1;
+		for (int i = 1; i < FACTORIALS.length; i++)
+			FACTORIALS[i] = FACTORIALS[i - 1] * i;
+	}
+
+	public PermutationSpace(byte[] symbols) {
+		super(symbols);
+
+		if (symbols.length >= FACTORIALS.length)
+			throw new IllegalArgumentException("A space of " + symbols.length + "! candidates cannot be indexed.");
+	}
+
+	@Override
+	public long size() {
+		return FACTORIALS[this.symbols.length];
+	}
+
+	@Override
+	public int candidateLength() {
+		return this.symbols.length;
+	}
+
+	@Override
+	public void unrank(long index, int[] digits, byte[] candidate) {
+		int n = this.symbols.length;
+		boolean[] used = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			long factorial = FACTORIALS[n - 1 - i];
+			int unusedRank = (int) (index / factorial);
+			index %= factorial;
+
+			int symbol = -1;
+			while (unusedRank >= 0)
+				if (!used[++symbol])
+					unusedRank--;
+
+			used[symbol] = true;
+			digits[i] = symbol;
+			candidate[i] = this.symbols[symbol];
+		}
+	}
+
+	@Override
+	public long rank(int[] digits) {
+		int n = this.symbols.length;
+		long rank = 0;
+		for (int i = 0; i < n; i++) {
+			int smallerUnused = 0;
+			for (int j = i + 1; j < n; j++)
+				if (digits[j] < digits[i])
+					smallerUnused++;
+			rank += smallerUnused * FACTORIALS[n - 1 - i];
+		}
+		return rank;
+	}
+
+	// https://en.wikipedia.org/wiki/Permutation#Generation_in_lexicographic_order
+	@Override
+	public boolean next(int[] digits, byte[] candidate) {
+		int i = digits.length - 2;
+		while ((i >= 0) && (digits[i] > digits[i + 1]))
+			i--;
+		if (i < 0)
+			return false;
+
+		int j = digits.length - 1;
+		while (digits[j] < digits[i])
+			j--;
+		swap(digits, i, j);
+
+		for (int left = i + 1, right = digits.length - 1; left < right; left++, right--)
+			swap(digits, left, right);
+
+		for (int k = i; k < digits.length; k++)
+			candidate[k] = this.symbols[digits[k]];
+		return true;
+	}
+
+	private static void swap(int[] array, int i, int j) {
+		int temp = array[i];
+		array[i] = array[j];
+		array[j] = temp;
+	}
+}
@@ -0,0 +1,63 @@
+package de.hpi.ddm.cracking;
+
+/**
+ * All strings of length k over a set of n symbols, ranked like the numbers of a k digit base-n counter.
+ */
+public class ProductSpace extends SearchSpace {
+
+	private final int length;
+	private final long size;
+
+	public ProductSpace(byte[] symbols, int length) {
+		super(symbols);
+		this.length = length;
+
+		long size = 1;
+		for (int i = 0; i < length; i++) {
+			if ((symbols.length != 0) && (size > Long.MAX_VALUE / symbols.length))
+				throw new IllegalArgumentException("A space of " + symbols.length + "^" + length + " candidates cannot be indexed.");
+			size *= symbols.length;
+		}
+		this.size = size;
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public int candidateLength() {
+		return this.length;
+	}
+
+	@Override
+	public void unrank(long index, int[] digits, byte[] candidate) {
+		for (int i = this.length - 1; i >= 0; i--) {
+			digits[i] = (int) (index % this.symbols.length);
+			candidate[i] = this.symbols[digits[i]];
+			index /= this.symbols.length;
+		}
+	}
+
+	@Override
+	public long rank(int[] digits) {
+		long rank = 0;
+		for (int i = 0; i < this.length; i++)
+			rank = rank * this.symbols.length + digits[i];
+		return rank;
+	}
+
+	@Override
+	public boolean next(int[] digits, byte[] candidate) {
+		for (int i = this.length - 1; i >= 0; i--) {
+			if (++digits[i] < this.symbols.length) {
+				candidate[i] = this.symbols[digits[i]];
+				return true;
+			}
+			digits[i] = 0;
+			candidate[i] = this.symbols[0];
+		}
+		return false;
+	}
+}
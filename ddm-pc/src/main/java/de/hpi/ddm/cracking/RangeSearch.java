@@ -0,0 +1,62 @@
+package de.hpi.ddm.cracking;
+
+import java.util.concurrent.RecursiveAction;
+
+import de.hpi.ddm.structures.HashEngine;
+
+/**
+ * Searches the candidates with ranks in {@code [from, to)} of a {@link SearchSpace}.
+ * The range is split in halves until it is small enough to be enumerated sequentially; each leaf unranks its first
+ * candidate into a reusable buffer and then advances it in place.
+ */
+public class RangeSearch extends RecursiveAction {
+
+	private static final long serialVersionUID = -6937201584367150542L;
+
+	private static final long LEAF_CANDIDATES = 1 << 14; // Ranges with at most this many candidates are enumerated sequentially
+
+	private final SearchContext context;
+	private final SearchSpace space;
+	private final long from;
+	private final long to;
+
+	public RangeSearch(SearchContext context, SearchSpace space) {
+		this(context, space, 0, space.size());
+	}
+
+	public RangeSearch(SearchContext context, SearchSpace space, long from, long to) {
+		this.context = context;
+		this.space = space;
+		this.from = from;
+		this.to = Math.min(to, space.size());
+	}
+
+	@Override
+	protected void compute() {
+		if (this.context.isCancelled() || (this.from >= this.to))
+			return;
+
+		if (this.to - this.from <= LEAF_CANDIDATES) {
+			this.enumerate();
+			return;
+		}
+
+		long middle = this.from + (this.to - this.from) / 2;
+		invokeAll(new RangeSearch(this.context, this.space, this.from, middle), new RangeSearch(this.context, this.space, middle, this.to));
+	}
+
+	private void enumerate() {
+		HashEngine engine = HashEngine.get();
+		int[] digits = new int[this.space.candidateLength()];
+		byte[] candidate = new byte[this.space.candidateLength()];
+
+		this.space.unrank(this.from, digits, candidate);
+		for (long index = this.from; index < this.to; index++) {
+			if (this.context.isCancelled())
+				return;
+
+			this.context.check(engine, candidate);
+			this.space.next(digits, candidate);
+		}
+	}
+}
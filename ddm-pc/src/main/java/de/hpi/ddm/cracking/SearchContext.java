@@ -0,0 +1,60 @@
+package de.hpi.ddm.cracking;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.hpi.ddm.structures.DigestSet;
+import de.hpi.ddm.structures.HashEngine;
+
+/**
+ * The state that all subtasks of one search share: the target digests, which of them have been found and whether the
+ * search has been cancelled. Subtasks run on many threads at once, so all shared state is atomic; every target is
+ * reported exactly once and the search cancels itself as soon as all targets are found.
+ */
+public class SearchContext {
+
+	public interface HitListener {
+		/**
+		 * Called once per found target, possibly from any thread of the cracking pool.
+		 * @param targetIndex the index of the found digest in the target set
+		 * @param candidate a copy of the candidate that hashes to the target
+		 */
+		void onHit(int targetIndex, byte[] candidate);
+	}
+
+	private final DigestSet targets;
+	private final AtomicIntegerArray found;
+	private final AtomicInteger open;
+	private final HitListener listener;
+	private volatile boolean cancelled;
+
+	public SearchContext(DigestSet targets, HitListener listener) {
+		this.targets = targets;
+		this.found = new AtomicIntegerArray(targets.size());
+		this.open = new AtomicInteger(targets.size());
+		this.listener = listener;
+		this.cancelled = targets.isEmpty();
+	}
+
+	/**
+	 * Hash the candidate and report it if it matches a target that has not been found yet.
+	 * @param engine the hash engine of the calling thread
+	 * @param candidate the candidate buffer
+	 */
+	public void check(HashEngine engine, byte[] candidate) {
+		int index = this.targets.indexOf(engine.hash(candidate, candidate.length));
+		if ((index >= 0) && this.found.compareAndSet(index, 0, 1)) {
+			this.listener.onHit(index, candidate.clone());
+			if (this.open.decrementAndGet() == 0)
+				this.cancel();
+		}
+	}
+
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	public void cancel() {
+		this.cancelled = true;
+	}
+}
@@ -0,0 +1,49 @@
+package de.hpi.ddm.cracking;
+
+/**
+ * An indexed search space of fixed-length candidates.
+ * Every candidate has a rank in {@code [0, size())} and is represented by its mixed-radix digits, i.e., the indexes of
+ * its symbols. Any index range can therefore be enumerated in place from a numeric offset: {@link #unrank} writes the
+ * first candidate of the range into a reusable buffer and {@link #next} advances the buffer to the following candidate.
+ */
+public abstract class SearchSpace {
+
+	protected final byte[] symbols;
+
+	protected SearchSpace(byte[] symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * @return the number of candidates in this space
+	 */
+	public abstract long size();
+
+	/**
+	 * @return the length of every candidate in this space
+	 */
+	public abstract int candidateLength();
+
+	/**
+	 * Write the candidate with the given rank into the buffers.
+	 * @param index the rank of the candidate in {@code [0, size())}
+	 * @param digits the digit buffer of length {@link #candidateLength()}
+	 * @param candidate the candidate buffer of length {@link #candidateLength()}
+	 */
+	public abstract void unrank(long index, int[] digits, byte[] candidate);
+
+	/**
+	 * Calculate the rank of the candidate with the given digits.
+	 * @param digits the digits of a candidate
+	 * @return the rank of the candidate
+	 */
+	public abstract long rank(int[] digits);
+
+	/**
+	 * Advance the buffers to the candidate with the next rank.
+	 * @param digits the digit buffer of the current candidate
+	 * @param candidate the candidate buffer of the current candidate
+	 * @return {@code false} if the current candidate was the last one; {@code true} otherwise
+	 */
+	public abstract boolean next(int[] digits, byte[] candidate);
+}
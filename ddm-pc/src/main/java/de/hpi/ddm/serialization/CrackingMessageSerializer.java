@@ -0,0 +1,183 @@
+package de.hpi.ddm.serialization;
+
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import akka.serialization.SerializerWithStringManifest;
+import de.hpi.ddm.actors.Master;
+import de.hpi.ddm.actors.Worker;
+import de.hpi.ddm.structures.HashEngine;
+
+/**
+ * A compact binary serializer for the messages that master and workers exchange per cracking task.
+ * Every message class is registered with a one character manifest and written in a fixed layout of primitive fields:
+ * digests as their 32 raw bytes, combinations by their index and passwords by their ID. This keeps the per-task
+ * messages at a few dozen bytes and avoids the reflection of the generic Kryo serializer.
+ * The bindings of the message classes to this serializer are configured in the application.conf.
+ */
+public class CrackingMessageSerializer extends SerializerWithStringManifest {
+
+	public static final int IDENTIFIER = 1733;
+
+	private static final String CRACKING_PARAMETERS = "P";
+	private static final String OPEN_HINTS = "O";
+	private static final String DECRYPT_HINT = "H";
+	private static final String CRACK_PASSWORD = "C";
+	private static final String DECRYPTED_HINT = "D";
+	private static final String PASSWORD_COMPLETE = "R";
+	private static final String HINTS_COMPLETE = "Q";
+	private static final String WORK_REQUEST = "W";
+
+	@Override
+	public int identifier() {
+		return IDENTIFIER;
+	}
+
+	@Override
+	public String manifest(Object object) {
+		if (object instanceof Master.CrackingParametersMessage)
+			return CRACKING_PARAMETERS;
+		if (object instanceof Master.OpenHintsMessage)
+			return OPEN_HINTS;
+		if (object instanceof Master.DecryptHintMessage)
+			return DECRYPT_HINT;
+		if (object instanceof Master.GoCrackPasswordMessage)
+			return CRACK_PASSWORD;
+		if (object instanceof Worker.DecryptedHint)
+			return DECRYPTED_HINT;
+		if (object instanceof Worker.PasswordCompleteMessage)
+			return PASSWORD_COMPLETE;
+		if (object instanceof Worker.HintsCompleteMessage)
+			return HINTS_COMPLETE;
+		if (object instanceof Worker.WorkRequestMessage)
+			return WORK_REQUEST;
+		throw new IllegalArgumentException("Cannot serialize " + object.getClass().getName() + " with " + CrackingMessageSerializer.class.getSimpleName());
+	}
+
+	@Override
+	public byte[] toBinary(Object object) {
+		if (object instanceof Master.CrackingParametersMessage) {
+			Master.CrackingParametersMessage message = (Master.CrackingParametersMessage) object;
+			ByteBuffer buffer = ByteBuffer.allocate(charsSize(message.getPasswordCharacters()) + 4);
+			putChars(buffer, message.getPasswordCharacters());
+			buffer.putInt(message.getPasswordLength());
+			return buffer.array();
+		}
+		if (object instanceof Master.OpenHintsMessage) {
+			Master.OpenHintsMessage message = (Master.OpenHintsMessage) object;
+			ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + message.getHints().length * HashEngine.DIGEST_LENGTH);
+			buffer.putInt(message.getVersion());
+			buffer.putInt(message.getHints().length);
+			for (byte[] hint : message.getHints())
+				buffer.put(hint, 0, HashEngine.DIGEST_LENGTH);
+			return buffer.array();
+		}
+		if (object instanceof Master.DecryptHintMessage) {
+			Master.DecryptHintMessage message = (Master.DecryptHintMessage) object;
+			ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + 4 + 8 + 8);
+			buffer.putLong(message.getTaskID());
+			buffer.putInt(message.getCombinationIndex());
+			buffer.putInt(message.getHintsVersion());
+			buffer.putLong(message.getFrom());
+			buffer.putLong(message.getTo());
+			return buffer.array();
+		}
+		if (object instanceof Master.GoCrackPasswordMessage) {
+			Master.GoCrackPasswordMessage message = (Master.GoCrackPasswordMessage) object;
+			ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + HashEngine.DIGEST_LENGTH + charsSize(message.getPasswordCharacters()) + 4 + 8 + 8);
+			buffer.putLong(message.getTaskID());
+			buffer.putInt(message.getPasswordID());
+			buffer.put(message.getEncryptedPassword(), 0, HashEngine.DIGEST_LENGTH);
+			putChars(buffer, message.getPasswordCharacters());
+			buffer.putInt(message.getPasswordLength());
+			buffer.putLong(message.getFrom());
+			buffer.putLong(message.getTo());
+			return buffer.array();
+		}
+		if (object instanceof Worker.DecryptedHint) {
+			Worker.DecryptedHint message = (Worker.DecryptedHint) object;
+			byte[] decrypted = message.getDecryptedHint().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer buffer = ByteBuffer.allocate(HashEngine.DIGEST_LENGTH + 4 + decrypted.length);
+			buffer.put(message.getEncryptedHint(), 0, HashEngine.DIGEST_LENGTH);
+			buffer.putInt(decrypted.length);
+			buffer.put(decrypted);
+			return buffer.array();
+		}
+		if (object instanceof Worker.PasswordCompleteMessage) {
+			Worker.PasswordCompleteMessage message = (Worker.PasswordCompleteMessage) object;
+			byte[] decrypted = message.getDecryptedPassword().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + 4 + decrypted.length);
+			buffer.putLong(message.getTaskID());
+			buffer.putInt(message.getID());
+			buffer.putInt(decrypted.length);
+			buffer.put(decrypted);
+			return buffer.array();
+		}
+		if (object instanceof Worker.HintsCompleteMessage)
+			return ByteBuffer.allocate(8).putLong(((Worker.HintsCompleteMessage) object).getTaskID()).array();
+		if (object instanceof Worker.WorkRequestMessage)
+			return ByteBuffer.allocate(4).putInt(((Worker.WorkRequestMessage) object).getNumberOfTasks()).array();
+		throw new IllegalArgumentException("Cannot serialize " + object.getClass().getName() + " with " + CrackingMessageSerializer.class.getSimpleName());
+	}
+
+	@Override
+	public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		switch (manifest) {
+			case CRACKING_PARAMETERS:
+				return new Master.CrackingParametersMessage(getChars(buffer), buffer.getInt());
+			case OPEN_HINTS: {
+				int version = buffer.getInt();
+				byte[][] hints = new byte[buffer.getInt()][];
+				for (int i = 0; i < hints.length; i++)
+					hints[i] = getDigest(buffer);
+				return new Master.OpenHintsMessage(version, hints);
+			}
+			case DECRYPT_HINT:
+				return new Master.DecryptHintMessage(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong());
+			case CRACK_PASSWORD:
+				return new Master.GoCrackPasswordMessage(buffer.getLong(), buffer.getInt(), getDigest(buffer), getChars(buffer), buffer.getInt(), buffer.getLong(), buffer.getLong());
+			case DECRYPTED_HINT:
+				return new Worker.DecryptedHint(getDigest(buffer), getString(buffer));
+			case PASSWORD_COMPLETE:
+				return new Worker.PasswordCompleteMessage(buffer.getLong(), buffer.getInt(), getString(buffer));
+			case HINTS_COMPLETE:
+				return new Worker.HintsCompleteMessage(buffer.getLong());
+			case WORK_REQUEST:
+				return new Worker.WorkRequestMessage(buffer.getInt());
+			default:
+				throw new NotSerializableException("Unknown manifest " + manifest + " for " + CrackingMessageSerializer.class.getSimpleName());
+		}
+	}
+
+	private static int charsSize(char[] chars) {
+		return 4 + 2 * chars.length;
+	}
+
+	private static void putChars(ByteBuffer buffer, char[] chars) {
+		buffer.putInt(chars.length);
+		for (char c : chars)
+			buffer.putChar(c);
+	}
+
+	private static char[] getChars(ByteBuffer buffer) {
+		char[] chars = new char[buffer.getInt()];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = buffer.getChar();
+		return chars;
+	}
+
+	private static byte[] getDigest(ByteBuffer buffer) {
+		byte[] digest = new byte[HashEngine.DIGEST_LENGTH];
+		buffer.get(digest);
+		return digest;
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		String string = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return string;
+	}
+}
@@ -0,0 +1,126 @@
+package de.hpi.ddm.structures;
+
+/**
+ * An open addressing hash set of 32 byte SHA-256 digests.
+ * The digests are stored as four longs each in one flat array, so lookups compare raw digest words without allocating
+ * any objects. Because SHA-256 digests are uniformly distributed, the first word of a digest is used as its hash.
+ * Every digest gets the index of its insertion, which callers use to map hits back to their own records.
+ */
+public class DigestSet {
+
+	private static final int WORDS_PER_DIGEST = HashEngine.DIGEST_LENGTH / 8;
+
+	private final long[] words;		// The digests in insertion order, four words each
+	private final int[] slots;		// The hash table: insertion index + 1 of the digest in this slot; 0 if empty
+	private final int mask;
+	private int size;
+
+	/**
+	 * Construct a new {@code DigestSet} that can hold the given number of digests.
+	 * @param capacity the maximum number of digests
+	 */
+	public DigestSet(int capacity) {
+		this.words = new long[Math.max(capacity, 1) * WORDS_PER_DIGEST];
+		this.slots = new int[Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1];
+		this.mask = this.slots.length - 1;
+	}
+
+	/**
+	 * Construct a new {@code DigestSet} that contains the given digests.
+	 * @param digests the digests to be added
+	 */
+	public DigestSet(byte[][] digests) {
+		this(digests.length);
+		for (byte[] digest : digests)
+			this.add(digest);
+	}
+
+	/**
+	 * Add the digest to this set.
+	 * @param digest a 32 byte digest
+	 * @return the index of the digest in this set; the index of the existing entry if it was added before
+	 */
+	public int add(byte[] digest) {
+		int existing = this.indexOf(digest);
+		if (existing >= 0)
+			return existing;
+		if (this.size * WORDS_PER_DIGEST == this.words.length)
+			throw new IllegalStateException("The " + DigestSet.class.getSimpleName() + " is full.");
+
+		int index = this.size++;
+		for (int w = 0; w < WORDS_PER_DIGEST; w++)
+			this.words[index * WORDS_PER_DIGEST + w] = word(digest, w);
+
+		int slot = slot(this.words[index * WORDS_PER_DIGEST]);
+		while (this.slots[slot] != 0)
+			slot = (slot + 1) & this.mask;
+		this.slots[slot] = index + 1;
+		return index;
+	}
+
+	/**
+	 * Look up the digest in this set.
+	 * @param digest a 32 byte digest
+	 * @return the index of the digest in this set or {@code -1} if it is not contained
+	 */
+	public int indexOf(byte[] digest) {
+		long first = word(digest, 0);
+		for (int slot = slot(first); this.slots[slot] != 0; slot = (slot + 1) & this.mask) {
+			int offset = (this.slots[slot] - 1) * WORDS_PER_DIGEST;
+			if ((this.words[offset] == first)
+					&& (this.words[offset + 1] == word(digest, 1))
+					&& (this.words[offset + 2] == word(digest, 2))
+					&& (this.words[offset + 3] == word(digest, 3)))
+				return this.slots[slot] - 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Test if this set contains the digest.
+	 * @param digest a 32 byte digest
+	 * @return {@code true} if the digest is contained; {@code false} otherwise
+	 */
+	public boolean contains(byte[] digest) {
+		return this.indexOf(digest) >= 0;
+	}
+
+	/**
+	 * Retrieve a copy of the digest with the given index.
+	 * @param index the index of the digest
+	 * @return a new array holding the digest
+	 */
+	public byte[] get(int index) {
+		byte[] digest = new byte[HashEngine.DIGEST_LENGTH];
+		for (int w = 0; w < WORDS_PER_DIGEST; w++) {
+			long word = this.words[index * WORDS_PER_DIGEST + w];
+			for (int b = 0; b < 8; b++)
+				digest[w * 8 + b] = (byte) (word >>> (56 - 8 * b));
+		}
+		return digest;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	private int slot(long firstWord) {
+		return (int) (firstWord ^ (firstWord >>> 32)) & this.mask;
+	}
+
+	private static long word(byte[] digest, int word) {
+		int offset = word * 8;
+		return ((digest[offset] & 0xffL) << 56)
+				| ((digest[offset + 1] & 0xffL) << 48)
+				| ((digest[offset + 2] & 0xffL) << 40)
+				| ((digest[offset + 3] & 0xffL) << 32)
+				| ((digest[offset + 4] & 0xffL) << 24)
+				| ((digest[offset + 5] & 0xffL) << 16)
+				| ((digest[offset + 6] & 0xffL) << 8)
+				| (digest[offset + 7] & 0xffL);
+	}
+}
@@ -0,0 +1,99 @@
+package de.hpi.ddm.structures;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Allocation-free SHA-256 hashing of candidate byte buffers.
+ * Every thread owns one engine with its own {@link MessageDigest} and output buffer, so hashing a candidate neither
+ * looks up a new digest nor allocates Strings, byte arrays or hex encodings.
+ * Candidates are plain byte buffers in which every character is encoded as a single (ASCII) byte.
+ */
+public class HashEngine {
+
+	public static final int DIGEST_LENGTH = 32;
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<HashEngine> ENGINES = ThreadLocal.withInitial(HashEngine::new);
+
+	private final MessageDigest digest;
+	private final byte[] output = new byte[DIGEST_LENGTH];
+
+	/**
+	 * Retrieve the engine of the calling thread.
+	 * @return the thread-local engine
+	 */
+	public static HashEngine get() {
+		return ENGINES.get();
+	}
+
+	private HashEngine() {
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Hash the first {@code length} bytes of the candidate buffer.
+	 * @param candidate the buffer holding the candidate
+	 * @param length the number of bytes of the candidate
+	 * @return the digest; the returned array is reused by the next call on this engine and must not be stored
+	 */
+	public byte[] hash(byte[] candidate, int length) {
+		this.digest.update(candidate, 0, length);
+		try {
+			this.digest.digest(this.output, 0, DIGEST_LENGTH);
+		} catch (DigestException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+		return this.output;
+	}
+
+	/**
+	 * Decode a 64 character hex string into a 32 byte digest.
+	 * @param hex the hex encoded digest
+	 * @return a new array with the decoded digest
+	 */
+	public static byte[] fromHex(CharSequence hex) {
+		if (hex.length() != 2 * DIGEST_LENGTH)
+			throw new IllegalArgumentException("Not a SHA-256 hex digest: " + hex);
+
+		byte[] digest = new byte[DIGEST_LENGTH];
+		for (int i = 0; i < DIGEST_LENGTH; i++)
+			digest[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4) | Character.digit(hex.charAt(2 * i + 1), 16));
+		return digest;
+	}
+
+	/**
+	 * Encode a 32 byte digest as a 64 character lower case hex string.
+	 * @param digest the digest to encode
+	 * @return the hex encoded digest
+	 */
+	public static String toHex(byte[] digest) {
+		char[] hex = new char[2 * digest.length];
+		for (int i = 0; i < digest.length; i++) {
+			hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+			hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Encode a character set as single-byte candidate symbols.
+	 * @param characters the characters; all must be ASCII
+	 * @return the characters as bytes
+	 */
+	public static byte[] toSymbols(char[] characters) {
+		byte[] symbols = new byte[characters.length];
+		for (int i = 0; i < characters.length; i++) {
+			if (characters[i] > 0x7f)
+				throw new IllegalArgumentException("Only ASCII characters can be hashed as single bytes: " + characters[i]);
+			symbols[i] = (byte) characters[i];
+		}
+		return symbols;
+	}
+}
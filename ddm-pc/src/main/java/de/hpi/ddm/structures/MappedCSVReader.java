@@ -0,0 +1,205 @@
+package de.hpi.ddm.structures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A reader for CSV files that maps the file into memory and splits its records in place.
+ * The reader is a cursor: {@link #next()} moves to the next record, whose fields are then accessed by index. Fields are
+ * only decoded on access, and {@link #getDigest(int, byte[])} decodes hex encoded hashes directly from the mapped bytes,
+ * so that no intermediate Strings are created. Large files are mapped in windows, which are moved along the file.
+ * Like the stream reader, it can skip records whose number of fields differs from the first record's.
+ * The separator and all line breaks must be ASCII characters; quoting and escaping of values are not supported.
+ */
+public class MappedCSVReader implements Closeable {
+
+	private static final long WINDOW_SIZE = 1L << 26;	// The maximum number of bytes that are mapped at the same time
+
+	private final FileChannel channel;
+	private final Charset charset;
+	private final byte separator;
+	private final boolean skipDifferingLines;
+	private final long windowSize;
+	private final long fileSize;
+
+	private MappedByteBuffer window;	// The mapped part of the file
+	private long windowOffset;			// The position of the window in the file
+
+	private int[] fieldStarts = new int[16];	// The window positions of the fields of the current record
+	private int[] fieldEnds = new int[16];
+	private int fieldCount;
+	private int firstFieldCount = -1;			// The number of fields of the first record after the header
+	private byte[] scratch = new byte[64];
+
+	/**
+	 * Construct a new {@code MappedCSVReader} on the given file.
+	 * @param path the file to read
+	 * @param charset the charset of the non-hash values
+	 * @param separator the value separator; must be an ASCII character
+	 * @param hasHeader {@code true} if the first record should be skipped
+	 * @param skipDifferingLines {@code true} if records with another number of fields than the first one should be skipped
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public MappedCSVReader(Path path, Charset charset, char separator, boolean hasHeader, boolean skipDifferingLines) throws IOException {
+		this(path, charset, separator, hasHeader, skipDifferingLines, WINDOW_SIZE);
+	}
+
+	MappedCSVReader(Path path, Charset charset, char separator, boolean hasHeader, boolean skipDifferingLines, long windowSize) throws IOException {
+		if (separator > 0x7f)
+			throw new IllegalArgumentException("Only ASCII value separators are supported: " + separator);
+
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.charset = charset;
+		this.separator = (byte) separator;
+		this.skipDifferingLines = skipDifferingLines;
+		this.windowSize = windowSize;
+		this.fileSize = this.channel.size();
+		this.map(0);
+
+		if (hasHeader && this.next())
+			this.firstFieldCount = -1;
+	}
+
+	/**
+	 * Move to the next record; empty lines and, if configured, records with a differing number of fields are skipped.
+	 * @return {@code true} if there is a next record; {@code false} if the end of the file is reached
+	 * @throws IOException if the next part of the file cannot be mapped
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			// Make sure that the whole record lies within the window
+			int end = this.findLineEnd(this.window.position());
+			if ((end == this.window.limit()) && (this.windowOffset + end < this.fileSize)) {
+				if (this.window.position() == 0)
+					throw new IOException("A record is longer than the mapping window of " + this.windowSize + " bytes.");
+				this.map(this.windowOffset + this.window.position());
+				continue;
+			}
+
+			int start = this.window.position();
+			if (start == this.window.limit())
+				return false;
+
+			this.window.position(Math.min(end + 1, this.window.limit()));
+			if (end > start && this.window.get(end - 1) == '\r')
+				end--;
+			if (end == start)
+				continue;
+
+			this.split(start, end);
+			if (this.firstFieldCount < 0)
+				this.firstFieldCount = this.fieldCount;
+			else if (this.skipDifferingLines && (this.fieldCount != this.firstFieldCount))
+				continue;
+			return true;
+		}
+	}
+
+	/**
+	 * @return the number of fields of the current record
+	 */
+	public int getFieldCount() {
+		return this.fieldCount;
+	}
+
+	/**
+	 * Decode a field of the current record as a String.
+	 * @param field the index of the field
+	 * @return the value of the field
+	 */
+	public String getString(int field) {
+		int length = this.fieldEnds[field] - this.fieldStarts[field];
+		if (this.scratch.length < length)
+			this.scratch = new byte[length];
+		for (int i = 0; i < length; i++)
+			this.scratch[i] = this.window.get(this.fieldStarts[field] + i);
+		return new String(this.scratch, 0, length, this.charset);
+	}
+
+	/**
+	 * Parse a field of the current record as a decimal integer.
+	 * @param field the index of the field
+	 * @return the value of the field
+	 */
+	public int getInt(int field) {
+		int start = this.fieldStarts[field];
+		int end = this.fieldEnds[field];
+		boolean negative = (start < end) && (this.window.get(start) == '-');
+		if (negative)
+			start++;
+		if (start == end)
+			throw new NumberFormatException("Field " + field + " is not a number.");
+
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = this.window.get(i) - '0';
+			if (digit < 0 || digit > 9)
+				throw new NumberFormatException("Field " + field + " is not a number.");
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decode a field of the current record that holds a hex encoded SHA-256 digest.
+	 * @param field the index of the field
+	 * @param digest the array to decode the digest into; must hold {@link HashEngine#DIGEST_LENGTH} bytes
+	 * @return the given array
+	 */
+	public byte[] getDigest(int field, byte[] digest) {
+		int start = this.fieldStarts[field];
+		if (this.fieldEnds[field] - start != 2 * HashEngine.DIGEST_LENGTH)
+			throw new IllegalArgumentException("Field " + field + " is not a SHA-256 hex digest: " + this.getString(field));
+
+		for (int i = 0; i < HashEngine.DIGEST_LENGTH; i++) {
+			int high = Character.digit(this.window.get(start + 2 * i), 16);
+			int low = Character.digit(this.window.get(start + 2 * i + 1), 16);
+			if (high < 0 || low < 0)
+				throw new IllegalArgumentException("Field " + field + " is not a SHA-256 hex digest: " + this.getString(field));
+			digest[i] = (byte) ((high << 4) | low);
+		}
+		return digest;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.window = null;
+		this.channel.close();
+	}
+
+	private void map(long offset) throws IOException {
+		this.windowOffset = offset;
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(this.windowSize, this.fileSize - offset));
+	}
+
+	private int findLineEnd(int from) {
+		int limit = this.window.limit();
+		for (int i = from; i < limit; i++)
+			if (this.window.get(i) == '\n')
+				return i;
+		return limit;
+	}
+
+	private void split(int start, int end) {
+		this.fieldCount = 0;
+		int fieldStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || this.window.get(i) == this.separator) {
+				if (this.fieldCount == this.fieldStarts.length) {
+					this.fieldStarts = Arrays.copyOf(this.fieldStarts, 2 * this.fieldCount);
+					this.fieldEnds = Arrays.copyOf(this.fieldEnds, 2 * this.fieldCount);
+				}
+				this.fieldStarts[this.fieldCount] = fieldStart;
+				this.fieldEnds[this.fieldCount] = i;
+				this.fieldCount++;
+				fieldStart = i + 1;
+			}
+		}
+	}
+}
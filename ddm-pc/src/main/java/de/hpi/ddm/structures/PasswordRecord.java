@@ -0,0 +1,53 @@
+package de.hpi.ddm.structures;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One record of the password file with its hashes decoded into 32 byte digests.
+ * The record layout is: ID, name, password characters, password length, password hash, hint hashes.
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class PasswordRecord implements Serializable {
+
+	private static final long serialVersionUID = -7404183962377390851L;
+
+	private static final int HINTS_OFFSET = 5;
+
+	private int ID;
+	private String name;
+	private String passwordCharacters;
+	private int passwordLength;
+	private byte[] password;
+	private byte[][] hints;
+
+	/**
+	 * Create a record from the values of a parsed CSV line.
+	 * @param line the values of the line
+	 * @return the new record
+	 */
+	public static PasswordRecord of(String[] line) {
+		byte[][] hints = new byte[line.length - HINTS_OFFSET][];
+		for (int i = 0; i < hints.length; i++)
+			hints[i] = HashEngine.fromHex(line[HINTS_OFFSET + i]);
+
+		return new PasswordRecord(Integer.parseInt(line[0]), line[1], line[2], Integer.parseInt(line[3]), HashEngine.fromHex(line[4]), hints);
+	}
+
+	/**
+	 * Create a record from the current record of a memory-mapped CSV file; the hashes are decoded directly from the file.
+	 * @param reader the reader positioned on the record
+	 * @return the new record
+	 */
+	public static PasswordRecord of(MappedCSVReader reader) {
+		byte[][] hints = new byte[reader.getFieldCount() - HINTS_OFFSET][];
+		for (int i = 0; i < hints.length; i++)
+			hints[i] = reader.getDigest(HINTS_OFFSET + i, new byte[HashEngine.DIGEST_LENGTH]);
+
+		return new PasswordRecord(reader.getInt(0), reader.getString(1), reader.getString(2), reader.getInt(3),
+				reader.getDigest(4, new byte[HashEngine.DIGEST_LENGTH]), hints);
+	}
+}
@@ -0,0 +1,78 @@
+package de.hpi.ddm.cracking;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import de.hpi.ddm.structures.DigestSet;
+import de.hpi.ddm.structures.HashEngine;
+
+public class RangeSearchTest {
+
+	private static final byte[] SYMBOLS = HashEngine.toSymbols("ABCDEFGH".toCharArray());
+
+	// Counts how often each candidate is checked instead of hashing it
+	static class CountingContext extends SearchContext {
+
+		private final SearchSpace space;
+		private final AtomicIntegerArray checks;
+
+		CountingContext(SearchSpace space) {
+			super(new DigestSet(new byte[][] { new byte[HashEngine.DIGEST_LENGTH] }), (index, candidate) -> {});
+			this.space = space;
+			this.checks = new AtomicIntegerArray((int) space.size());
+		}
+
+		@Override
+		public void check(HashEngine engine, byte[] candidate) {
+			int[] digits = new int[candidate.length];
+			for (int i = 0; i < candidate.length; i++)
+				digits[i] = Arrays.binarySearch(SYMBOLS, candidate[i]);
+			this.checks.incrementAndGet((int) this.space.rank(digits));
+		}
+
+		void assertCheckedOnce() {
+			for (int rank = 0; rank < this.checks.length(); rank++)
+				assertEquals("Checks of rank " + rank, 1, this.checks.get(rank));
+		}
+	}
+
+	@Test
+	public void testWholeSpaceIsSearchedOnce() {
+		for (SearchSpace space : spaces()) {
+			CountingContext context = new CountingContext(space);
+			ForkJoinPool.commonPool().invoke(new RangeSearch(context, space));
+			context.assertCheckedOnce();
+		}
+	}
+
+	@Test
+	public void testArbitraryRangesCoverSpaceOnce() {
+		Random random = new Random(42);
+		for (SearchSpace space : spaces()) {
+			for (int round = 0; round < 5; round++) {
+				// Split the space at random boundaries, including empty ranges and a last range that reaches past the end
+				long[] boundaries = new long[2 + random.nextInt(20)];
+				for (int i = 1; i < boundaries.length - 1; i++)
+					boundaries[i] = (long) (random.nextDouble() * space.size());
+				boundaries[boundaries.length - 1] = space.size() + random.nextInt(1000);
+				Arrays.sort(boundaries);
+
+				CountingContext context = new CountingContext(space);
+				for (int i = 0; i < boundaries.length - 1; i++)
+					ForkJoinPool.commonPool().invoke(new RangeSearch(context, space, boundaries[i], boundaries[i + 1]));
+				context.assertCheckedOnce();
+			}
+		}
+	}
+
+	private static SearchSpace[] spaces() {
+		// Both spaces are larger than a leaf, so the searches split their ranges
+		return new SearchSpace[] { new PermutationSpace(SYMBOLS), new ProductSpace(Arrays.copyOf(SYMBOLS, 4), 9) };
+	}
+}
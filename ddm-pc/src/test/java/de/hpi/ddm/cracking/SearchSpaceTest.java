@@ -0,0 +1,120 @@
+package de.hpi.ddm.cracking;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.hpi.ddm.structures.HashEngine;
+
+public class SearchSpaceTest {
+
+	private static final byte[] SYMBOLS = HashEngine.toSymbols("ABCDE".toCharArray());
+
+	@Test
+	public void testPermutationSpaceMatchesBruteForce() {
+		for (int n = 1; n <= SYMBOLS.length; n++) {
+			byte[] symbols = new byte[n];
+			System.arraycopy(SYMBOLS, 0, symbols, 0, n);
+
+			List<String> expected = new ArrayList<>();
+			permutations(symbols, new boolean[n], new StringBuilder(), expected);
+
+			this.assertSpace(new PermutationSpace(symbols), expected);
+		}
+	}
+
+	@Test
+	public void testProductSpaceMatchesBruteForce() {
+		for (int n = 1; n <= 3; n++) {
+			for (int length = 1; length <= 5; length++) {
+				byte[] symbols = new byte[n];
+				System.arraycopy(SYMBOLS, 0, symbols, 0, n);
+
+				List<String> expected = new ArrayList<>();
+				products(symbols, length, new StringBuilder(), expected);
+
+				this.assertSpace(new ProductSpace(symbols, length), expected);
+			}
+		}
+	}
+
+	// Every rank must unrank to the brute-force candidate with the same position and rank back to itself, and next()
+	// must walk from the first to the last candidate without duplicates or gaps
+	private void assertSpace(SearchSpace space, List<String> expected) {
+		assertEquals(expected.size(), space.size());
+		assertEquals(expected.size(), new HashSet<>(expected).size());
+
+		int[] digits = new int[space.candidateLength()];
+		byte[] candidate = new byte[space.candidateLength()];
+		for (int rank = 0; rank < expected.size(); rank++) {
+			space.unrank(rank, digits, candidate);
+			assertEquals(expected.get(rank), new String(candidate));
+			assertEquals(rank, space.rank(digits));
+		}
+
+		Set<String> enumerated = new HashSet<>();
+		space.unrank(0, digits, candidate);
+		for (int rank = 0; rank < expected.size(); rank++) {
+			assertEquals(expected.get(rank), new String(candidate));
+			assertTrue(enumerated.add(new String(candidate)));
+			assertEquals(rank < expected.size() - 1, space.next(digits, candidate));
+		}
+		assertEquals(expected.size(), enumerated.size());
+	}
+
+	@Test
+	public void testNextFromAnyRank() {
+		SearchSpace space = new PermutationSpace(SYMBOLS);
+		int[] digits = new int[space.candidateLength()];
+		byte[] candidate = new byte[space.candidateLength()];
+		int[] expectedDigits = new int[space.candidateLength()];
+		byte[] expectedCandidate = new byte[space.candidateLength()];
+
+		for (long rank = 0; rank < space.size() - 1; rank++) {
+			space.unrank(rank, digits, candidate);
+			assertTrue(space.next(digits, candidate));
+			space.unrank(rank + 1, expectedDigits, expectedCandidate);
+			assertArrayEquals(expectedDigits, digits);
+			assertArrayEquals(expectedCandidate, candidate);
+		}
+
+		space.unrank(space.size() - 1, digits, candidate);
+		assertFalse(space.next(digits, candidate));
+	}
+
+	private static void permutations(byte[] symbols, boolean[] used, StringBuilder prefix, List<String> permutations) {
+		if (prefix.length() == symbols.length) {
+			permutations.add(prefix.toString());
+			return;
+		}
+		for (int i = 0; i < symbols.length; i++) {
+			if (used[i])
+				continue;
+			used[i] = true;
+			prefix.append((char) symbols[i]);
+			permutations(symbols, used, prefix, permutations);
+			prefix.setLength(prefix.length() - 1);
+			used[i] = false;
+		}
+	}
+
+	private static void products(byte[] symbols, int length, StringBuilder prefix, List<String> products) {
+		if (prefix.length() == length) {
+			products.add(prefix.toString());
+			return;
+		}
+		for (byte symbol : symbols) {
+			prefix.append((char) symbol);
+			products(symbols, length, prefix, products);
+			prefix.setLength(prefix.length() - 1);
+		}
+	}
+}
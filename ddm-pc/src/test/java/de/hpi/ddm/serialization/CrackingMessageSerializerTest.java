@@ -0,0 +1,132 @@
+package de.hpi.ddm.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.NotSerializableException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.ActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.testkit.javadsl.TestKit;
+import de.hpi.ddm.actors.Master;
+import de.hpi.ddm.actors.Worker;
+import de.hpi.ddm.structures.HashEngine;
+
+public class CrackingMessageSerializerTest {
+
+	static ActorSystem system;
+	static Serialization serialization;
+
+	@BeforeClass
+	public static void setUp() {
+		// The bindings of the application.conf, but without the cluster
+		Config config = ConfigFactory.parseString("akka.actor.provider = local")
+				.withFallback(ConfigFactory.load("application"));
+		system = ActorSystem.create("CrackingMessageSerializerTest", config);
+		serialization = SerializationExtension.get(system);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestKit.shutdownActorSystem(system);
+	}
+
+	@Test
+	public void testEveryBoundMessageIsCovered() {
+		Set<String> bound = new HashSet<>();
+		Config bindings = system.settings().config().getConfig("akka.actor.serialization-bindings");
+		bindings.root().forEach((className, serializer) -> {
+			if ("cracking".equals(serializer.unwrapped()))
+				bound.add(className);
+		});
+
+		Set<String> covered = new HashSet<>();
+		for (Object message : messages())
+			covered.add(message.getClass().getName());
+		assertEquals(bound, covered);
+	}
+
+	@Test
+	public void testRoundTrip() throws NotSerializableException {
+		for (Object message : messages()) {
+			Serializer serializer = serialization.findSerializerFor(message);
+			assertTrue(message.getClass().getName(), serializer instanceof CrackingMessageSerializer);
+
+			CrackingMessageSerializer cracking = (CrackingMessageSerializer) serializer;
+			Object copy = cracking.fromBinary(cracking.toBinary(message), cracking.manifest(message));
+			assertEquals(message.getClass(), copy.getClass());
+			assertEqualMessages(message, copy);
+		}
+	}
+
+	@Test(expected = NotSerializableException.class)
+	public void testUnknownManifest() throws NotSerializableException {
+		new CrackingMessageSerializer().fromBinary(new byte[0], "?");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnboundMessage() {
+		new CrackingMessageSerializer().toBinary(new Master.StartMessage());
+	}
+
+	private static Object[] messages() {
+		byte[][] hints = { digest(1), digest(2), digest(3) };
+		return new Object[] {
+				new Master.CrackingParametersMessage("ABCDEFGHIJK".toCharArray(), 10),
+				new Master.OpenHintsMessage(5, hints),
+				new Master.OpenHintsMessage(0, new byte[0][]),
+				new Master.DecryptHintMessage(7L, 3, 5, 1000L, 2000L),
+				new Master.DecryptHintMessage(8L, 0, 0, 0L, 1L),
+				new Master.GoCrackPasswordMessage(9L, 42, digest(4), "ABC".toCharArray(), 10, Long.MAX_VALUE - 5, Long.MAX_VALUE),
+				new Worker.DecryptedHint(digest(5), "ÄBCDEFGHIJ"),
+				new Worker.PasswordCompleteMessage(10L, 42, "ABCABCABCA"),
+				new Worker.PasswordCompleteMessage(11L, 43, ""),
+				new Worker.HintsCompleteMessage(12L),
+				new Worker.WorkRequestMessage(4)
+		};
+	}
+
+	// Task messages have no equals, because they are compared by their IDs only
+	private static void assertEqualMessages(Object expected, Object actual) {
+		if (expected instanceof Master.DecryptHintMessage) {
+			Master.DecryptHintMessage e = (Master.DecryptHintMessage) expected;
+			Master.DecryptHintMessage a = (Master.DecryptHintMessage) actual;
+			assertEquals(e.getTaskID(), a.getTaskID());
+			assertEquals(e.getCombinationIndex(), a.getCombinationIndex());
+			assertEquals(e.getFrom(), a.getFrom());
+			assertEquals(e.getTo(), a.getTo());
+			assertEquals(e.getHintsVersion(), a.getHintsVersion());
+		} else if (expected instanceof Master.GoCrackPasswordMessage) {
+			Master.GoCrackPasswordMessage e = (Master.GoCrackPasswordMessage) expected;
+			Master.GoCrackPasswordMessage a = (Master.GoCrackPasswordMessage) actual;
+			assertEquals(e.getTaskID(), a.getTaskID());
+			assertEquals(e.getPasswordID(), a.getPasswordID());
+			assertArrayEquals(e.getEncryptedPassword(), a.getEncryptedPassword());
+			assertArrayEquals(e.getPasswordCharacters(), a.getPasswordCharacters());
+			assertEquals(e.getPasswordLength(), a.getPasswordLength());
+			assertEquals(e.getFrom(), a.getFrom());
+			assertEquals(e.getTo(), a.getTo());
+		} else {
+			assertEquals(expected, actual);
+		}
+	}
+
+	private static byte[] digest(int seed) {
+		byte[] digest = new byte[HashEngine.DIGEST_LENGTH];
+		for (int i = 0; i < digest.length; i++)
+			digest[i] = (byte) (seed * 31 + i * 17);
+		return digest;
+	}
+}
@@ -0,0 +1,97 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class DigestSetTest {
+
+	@Test
+	public void testAddAndLookup() {
+		byte[][] digests = new byte[1000][];
+		for (int i = 0; i < digests.length; i++)
+			digests[i] = sha256(Integer.toString(i));
+
+		DigestSet set = new DigestSet(digests);
+		assertEquals(digests.length, set.size());
+		for (int i = 0; i < digests.length; i++) {
+			assertEquals(i, set.indexOf(digests[i]));
+			assertArrayEquals(digests[i], set.get(i));
+		}
+
+		byte[] missing = sha256("missing");
+		assertFalse(set.contains(missing));
+		assertEquals(-1, set.indexOf(missing));
+	}
+
+	@Test
+	public void testDuplicatesKeepTheirIndex() {
+		DigestSet set = new DigestSet(3);
+		byte[] digest = digest(1, 2);
+
+		assertEquals(0, set.add(digest));
+		assertEquals(1, set.add(digest(3, 4)));
+		assertEquals(0, set.add(digest.clone()));
+		assertEquals(2, set.size());
+	}
+
+	@Test
+	public void testCollidingDigestsAreProbed() {
+		// All digests share the first word, so they hash to the same slot and differ only in a later word
+		DigestSet set = new DigestSet(64);
+		for (int i = 0; i < 64; i++)
+			assertEquals(i, set.add(digest(7, i)));
+
+		for (int i = 0; i < 64; i++)
+			assertEquals(i, set.indexOf(digest(7, i)));
+		assertFalse(set.contains(digest(7, 64)));
+		assertFalse(set.contains(digest(8, 0)));
+	}
+
+	@Test
+	public void testProbingWrapsAround() {
+		// A full table whose first slot is taken by the last digests forces the probe sequence past the end of the table
+		DigestSet set = new DigestSet(4);
+		long lastSlot = 7; // 4 digests get a table of 8 slots
+		for (int i = 0; i < 4; i++)
+			set.add(digest(lastSlot, i));
+
+		for (int i = 0; i < 4; i++)
+			assertEquals(i, set.indexOf(digest(lastSlot, i)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFullSet() {
+		DigestSet set = new DigestSet(2);
+		set.add(digest(1, 1));
+		set.add(digest(1, 2));
+		set.add(digest(1, 3));
+	}
+
+	@Test
+	public void testEmptySet() {
+		DigestSet set = new DigestSet(new byte[0][]);
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(digest(0, 0)));
+	}
+
+	private static byte[] sha256(String candidate) {
+		byte[] bytes = candidate.getBytes(StandardCharsets.US_ASCII);
+		return HashEngine.get().hash(bytes, bytes.length).clone();
+	}
+
+	// A digest whose first word is the given value and whose last word is the given discriminator
+	private static byte[] digest(long first, long last) {
+		byte[] digest = new byte[HashEngine.DIGEST_LENGTH];
+		for (int b = 0; b < 8; b++) {
+			digest[b] = (byte) (first >>> (56 - 8 * b));
+			digest[HashEngine.DIGEST_LENGTH - 8 + b] = (byte) (last >>> (56 - 8 * b));
+		}
+		return digest;
+	}
+}
@@ -0,0 +1,102 @@
+package de.hpi.ddm.structures;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the former String based hashing path of the Worker with the allocation-free {@link HashEngine}.
+ * Both variants hash the next permutation of a 10 character candidate and test it against a set of target hashes.
+ * Run via the main method from the IDE or, after {@code mvn test-compile}, with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main HashEngineBenchmark -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashEngineBenchmark {
+
+	private static final int NUM_TARGETS = 900;
+
+	private char[] chars;
+	private byte[] bytes;
+	private Set<String> targetStrings;
+	private DigestSet targetDigests;
+	private int position;
+
+	@Setup
+	public void setUp() {
+		this.chars = "ABCDEFGHIJ".toCharArray();
+		this.bytes = HashEngine.toSymbols(this.chars);
+		this.targetStrings = new HashSet<>();
+		this.targetDigests = new DigestSet(NUM_TARGETS);
+		for (int i = 0; i < NUM_TARGETS; i++) {
+			String target = legacyHash("target" + i);
+			this.targetStrings.add(target);
+			this.targetDigests.add(HashEngine.fromHex(target));
+		}
+	}
+
+	@Benchmark
+	public boolean legacyStringHashing() {
+		this.swap();
+		return this.targetStrings.contains(legacyHash(new String(this.chars)));
+	}
+
+	@Benchmark
+	public boolean hashEngine() {
+		this.swap();
+		return this.targetDigests.contains(HashEngine.get().hash(this.bytes, this.bytes.length));
+	}
+
+	private void swap() {
+		int i = this.position;
+		int j = (i + 1) % this.chars.length;
+		char c = this.chars[i]; this.chars[i] = this.chars[j]; this.chars[j] = c;
+		byte b = this.bytes[i]; this.bytes[i] = this.bytes[j]; this.bytes[j] = b;
+		this.position = j;
+	}
+
+	// The hashing as previously implemented in Worker.hash(String)
+	private static String legacyHash(String line) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hashedBytes = digest.digest(String.valueOf(line).getBytes("UTF-8"));
+
+			StringBuffer stringBuffer = new StringBuffer();
+			for (int i = 0; i < hashedBytes.length; i++) {
+				stringBuffer.append(Integer.toString((hashedBytes[i] & 0xff) + 0x100, 16).substring(1));
+			}
+			return stringBuffer.toString();
+		}
+		catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(HashEngineBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build()).run();
+	}
+}
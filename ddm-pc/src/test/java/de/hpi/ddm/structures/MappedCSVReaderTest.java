@@ -0,0 +1,135 @@
+package de.hpi.ddm.structures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCSVReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecordsAcrossSmallWindows() throws IOException {
+		// Records of random length in windows of a few records, so that many records cross a window boundary
+		Random random = new Random(42);
+		List<String[]> records = new ArrayList<>();
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			String[] record = { Integer.toString(i), randomString(random, 1 + random.nextInt(40)), randomString(random, random.nextInt(5)) };
+			records.add(record);
+			content.append(String.join(";", record)).append(random.nextBoolean() ? "\r\n" : "\n");
+			if (random.nextInt(10) == 0)
+				content.append("\n"); // empty lines are skipped
+		}
+		Path file = this.write(content.toString());
+
+		for (long windowSize : new long[] { 64, 100, 257, 4096 }) {
+			try (MappedCSVReader reader = new MappedCSVReader(file, StandardCharsets.UTF_8, ';', false, false, windowSize)) {
+				for (String[] record : records) {
+					assertTrue(reader.next());
+					assertEquals(record.length, reader.getFieldCount());
+					assertEquals(Integer.parseInt(record[0]), reader.getInt(0));
+					assertEquals(record[1], reader.getString(1));
+					assertEquals(record[2], reader.getString(2));
+				}
+				assertFalse(reader.next());
+			}
+		}
+	}
+
+	@Test
+	public void testRecordsAcrossDefaultWindow() throws IOException {
+		// The file is a little larger than one 64 MB window, so one record is split between the first and the second window
+		Path file = this.folder.newFile().toPath();
+		String padding = randomString(new Random(42), 57);
+		long size = 0;
+		int records = 0;
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+			while (size < (1L << 26) + 1000) {
+				String line = records + ";" + padding + "\n";
+				writer.write(line);
+				size += line.length();
+				records++;
+			}
+		}
+
+		try (MappedCSVReader reader = new MappedCSVReader(file, StandardCharsets.US_ASCII, ';', false, false)) {
+			for (int i = 0; i < records; i++) {
+				assertTrue(reader.next());
+				assertEquals(2, reader.getFieldCount());
+				assertEquals(i, reader.getInt(0));
+				if ((i & 0xfff) == 0 || i == records - 1)
+					assertEquals(padding, reader.getString(1));
+			}
+			assertFalse(reader.next());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testRecordLongerThanWindow() throws IOException {
+		Path file = this.write("1;" + randomString(new Random(42), 100) + "\n2;b\n");
+		try (MappedCSVReader reader = new MappedCSVReader(file, StandardCharsets.UTF_8, ';', false, false, 64)) {
+			reader.next();
+		}
+	}
+
+	@Test
+	public void testSkipDifferingLines() throws IOException {
+		Path file = this.write("ID;Name\n1;a;x\n2;b\n3;c;y\n4;d;z;w\n");
+
+		List<Integer> skipped = new ArrayList<>();
+		try (MappedCSVReader reader = new MappedCSVReader(file, StandardCharsets.UTF_8, ';', true, true)) {
+			while (reader.next())
+				skipped.add(reader.getInt(0));
+		}
+		assertEquals(2, skipped.size());
+		assertEquals(1, (int) skipped.get(0));
+		assertEquals(3, (int) skipped.get(1));
+
+		List<Integer> kept = new ArrayList<>();
+		try (MappedCSVReader reader = new MappedCSVReader(file, StandardCharsets.UTF_8, ';', true, false)) {
+			while (reader.next())
+				kept.add(reader.getInt(0));
+		}
+		assertEquals(4, kept.size());
+	}
+
+	@Test
+	public void testDigest() throws IOException {
+		byte[] digest = HashEngine.get().hash("abc".getBytes(StandardCharsets.US_ASCII), 3).clone();
+		Path file = this.write("1;" + HashEngine.toHex(digest) + "\n");
+
+		try (MappedCSVReader reader = new MappedCSVReader(file, StandardCharsets.UTF_8, ';', false, true)) {
+			assertTrue(reader.next());
+			assertArrayEquals(digest, reader.getDigest(1, new byte[HashEngine.DIGEST_LENGTH]));
+		}
+	}
+
+	private Path write(String content) throws IOException {
+		Path file = this.folder.newFile().toPath();
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static String randomString(Random random, int length) {
+		StringBuilder string = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			string.append((char) ('a' + random.nextInt(26)));
+		return string.toString();
+	}
+}